@@ -0,0 +1,54 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It runs the JMH suite with the GC profiler attached, so every result carries its allocation rate (gc.alloc.rate.norm is
+ * bytes allocated per operation), and writes JSON results that can be compared against the committed baseline.json of this module. The baseline was
+ * recorded with -f 3 on top of the benchmarks' own warmup and measurement settings; pass the same to compare timings against it. Any regular JMH
+ * command-line option may be passed and takes precedence over these defaults.
+ * @author Jason Rose
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+    // main class only
+  }
+
+  public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+    final CommandLineOptions commandLine = new CommandLineOptions(args);
+    final ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+    if( commandLine.getIncludes().isEmpty() ) {
+      builder.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+    }
+    if( !commandLine.getResultFormat().hasValue() ) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+    if( !commandLine.getResult().hasValue() ) {
+      builder.result("benchmark-results.json");
+    }
+    new Runner(builder.build()).run();
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.serialization.Codec;
+import com.praxissoftware.rest.serialization.binary.BinaryCodec;
+import com.praxissoftware.rest.serialization.json.JsonCodec;
+
+/**
+ * Compares the JSON and binary codecs encoding a BasicRepresentation with N links to a discarding stream, and decoding it back. The encoded sizes are
+ * printed during setup.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  @Param({ "json", "binary" })
+  private String format;
+
+  @Param({ "10", "100", "1000" })
+  private int links;
+
+  private final OutputStream sink = new OutputStream() {
+    @Override
+    public void write(final int b) {
+      // discard
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      // discard
+    }
+  };
+  private Codec codec;
+  private BasicRepresentation representation;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() {
+    codec = "json".equals(format) ? new JsonCodec() : new BinaryCodec();
+    representation = new BasicRepresentation();
+    for( int i = 0; i < links; i++ ) {
+      representation.getLinks().add(new Link.Builder().href(URI.create("http://example.com/widgets/" + i)).rel("item").type("application/json").build());
+    }
+    representation.put("count", Integer.valueOf(links));
+    encoded = codec.encode(representation);
+    System.out.println(format + " encoding of " + links + " links: " + encoded.length + " bytes");
+  }
+
+  @Benchmark
+  public void encode() throws IOException {
+    codec.encode(representation, sink);
+  }
+
+  @Benchmark
+  public BasicRepresentation decode() throws IOException {
+    return codec.decode(encoded, new BasicRepresentation());
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.ContentDigest;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.serialization.json.JsonEncoder;
+
+/**
+ * Compares computing an ETag for a BasicRepresentation with N shared Links by serializing and hashing it against ContentDigest.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentDigestBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  private int links;
+
+  private final JsonEncoder encoder = new JsonEncoder();
+  private BasicRepresentation representation;
+  private int counter;
+
+  @Setup
+  public void setUp() {
+    representation = new BasicRepresentation();
+    for( int i = 0; i < links; i++ ) {
+      representation.getLinks().add(new Link.Builder().href("http://example.com/widgets/" + i).rel("item").type("application/json").build());
+    }
+  }
+
+  @Benchmark
+  public HashCode serializeAndHash() {
+    representation.put("count", Integer.valueOf(counter++));
+    return Hashing.murmur3_128().hashBytes(encoder.encode(representation));
+  }
+
+  @Benchmark
+  public HashCode digest() {
+    representation.put("count", Integer.valueOf(counter++));
+    return ContentDigest.of(representation);
+  }
+}
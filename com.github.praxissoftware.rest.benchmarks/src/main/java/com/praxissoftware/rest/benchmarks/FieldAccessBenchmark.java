@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.praxissoftware.rest.core.AbstractMapEntity;
+import com.praxissoftware.rest.core.Field;
+import com.praxissoftware.rest.core.FieldOrder;
+import com.praxissoftware.rest.core.Link;
+
+/**
+ * Compares reading well-known fields by String key, through getAndCoerce(), against reading them through a Field.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessBenchmark {
+
+  private static final Field<String> NAME = Field.of("field7", String.class);
+
+  private Link link;
+  private Entity entity;
+  private String key;
+
+  @Setup
+  public void setUp() {
+    link = new Link.Builder().href("/orders/1").rel("self").type("application/json").title("Order").length("1024").build();
+    entity = new Entity();
+    for( int i = 0; i < 16; i++ ) {
+      entity.put("field" + i, "value" + i);
+    }
+    // a key built at run time, as a mapper reading names from a schema would have, rather than an interned literal
+    key = new StringBuilder("field").append(7).toString();
+  }
+
+  @Benchmark
+  public int linkByKey() {
+    final String rel = link.getAndCoerce("rel");
+    final String type = link.getAndCoerce("type");
+    final String length = link.getAndCoerce("length");
+    return rel.length() + type.length() + length.length();
+  }
+
+  @Benchmark
+  public int linkByField() {
+    return link.get(Link.REL).length() + link.get(Link.TYPE).length() + link.get(Link.LENGTH).length();
+  }
+
+  @Benchmark
+  public long linkLengthParsed() {
+    return link.get(Link.LENGTH_IN_BYTES).longValue();
+  }
+
+  @Benchmark
+  public int orderedEntityByKey() {
+    final String value = entity.getAndCoerce(key);
+    return value.length();
+  }
+
+  @Benchmark
+  public int orderedEntityByField() {
+    return entity.get(NAME).length();
+  }
+
+  public static final class Entity extends AbstractMapEntity {
+    public Entity() {
+      super(FieldOrder.INSERTION);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.GenerateEntity;
+import com.praxissoftware.rest.core.Representation;
+import com.praxissoftware.rest.serialization.json.JsonEncoder;
+
+/**
+ * Compares a generated, field-backed entity against the same fields in a map-backed BasicRepresentation: filling it, reading every field back, and encoding
+ * it as JSON.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldEntityBenchmark {
+
+  @GenerateEntity
+  public interface Order extends Representation {
+    String getId();
+
+    void setId(String id);
+
+    String getCustomer();
+
+    void setCustomer(String customer);
+
+    String getStatus();
+
+    void setStatus(String status);
+
+    long getTotal();
+
+    void setTotal(long total);
+
+    int getItemCount();
+
+    void setItemCount(int itemCount);
+
+    boolean isPaid();
+
+    void setPaid(boolean paid);
+  }
+
+  private final JsonEncoder encoder = new JsonEncoder();
+  private OrderEntity generated;
+  private BasicRepresentation mapped;
+
+  @Setup
+  public void setUp() {
+    generated = fillGenerated();
+    mapped = fillMapped();
+  }
+
+  @Benchmark
+  public OrderEntity fillGenerated() {
+    final OrderEntity order = new OrderEntity();
+    order.setId("o-1042");
+    order.setCustomer("c-77");
+    order.setStatus("shipped");
+    order.setTotal(125000L);
+    order.setItemCount(3);
+    order.setPaid(true);
+    return order;
+  }
+
+  @Benchmark
+  public BasicRepresentation fillMapped() {
+    final BasicRepresentation order = new BasicRepresentation(8);
+    order.put("id", "o-1042");
+    order.put("customer", "c-77");
+    order.put("status", "shipped");
+    order.putLong("total", 125000L);
+    order.putInt("itemCount", 3);
+    order.putBoolean("paid", true);
+    return order;
+  }
+
+  @Benchmark
+  public long readGenerated() {
+    return generated.getId().length() + generated.getCustomer().length() + generated.getStatus().length() + generated.getTotal()
+        + generated.getItemCount() + (generated.isPaid() ? 1 : 0) + generated.getLinks().size();
+  }
+
+  @Benchmark
+  public long readMapped() {
+    final String id = mapped.getAndCoerce("id");
+    final String customer = mapped.getAndCoerce("customer");
+    final String status = mapped.getAndCoerce("status");
+    return id.length() + customer.length() + status.length() + mapped.getLong("total") + mapped.getInt("itemCount") + (mapped.getBoolean("paid") ? 1 : 0)
+        + mapped.getLinks().size();
+  }
+
+  @Benchmark
+  public byte[] encodeGenerated() {
+    return encoder.encode(generated);
+  }
+
+  @Benchmark
+  public byte[] encodeMapped() {
+    return encoder.encode(mapped);
+  }
+}
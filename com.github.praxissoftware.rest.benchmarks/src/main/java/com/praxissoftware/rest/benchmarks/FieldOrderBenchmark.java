@@ -0,0 +1,104 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.AbstractMapEntity;
+import com.praxissoftware.rest.core.FieldOrder;
+
+/**
+ * Compares filling, reading and iterating entities in each FieldOrder against the TreeMap that sorted sources used to get.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldOrderBenchmark {
+
+  @Param({ "hashed", "tree", "insertion", "sorted" })
+  private String order;
+
+  @Param({ "8", "64" })
+  private int size;
+
+  private Map<String, Object> source;
+  private Entity entity;
+  private String presentKey;
+
+  @Setup
+  public void setUp() {
+    source = Maps.newHashMap();
+    for( int i = 0; i < size; i++ ) {
+      source.put("field" + i, Long.valueOf(i));
+    }
+    entity = fill();
+    presentKey = "field" + (size / 2);
+  }
+
+  @Benchmark
+  public Entity fill() {
+    final Entity target;
+    if( "tree".equals(order) ) {
+      target = new Entity(AbstractMapEntity.adopt(Maps.<String, Object> newTreeMap()));
+    } else {
+      target = new Entity(FieldOrder.valueOf(order.toUpperCase()));
+    }
+    target.putAll(source);
+    return target;
+  }
+
+  @Benchmark
+  public Object get() {
+    return entity.get(presentKey);
+  }
+
+  @Benchmark
+  public long iterate() {
+    long sum = 0;
+    for( final Map.Entry<String, Object> entry : entity.entrySet() ) {
+      sum += entry.getKey().length() + ((Long) entry.getValue()).longValue();
+    }
+    return sum;
+  }
+
+  public static final class Entity extends AbstractMapEntity {
+    public Entity(final FieldOrder order) {
+      super(order);
+    }
+
+    public Entity(final AbstractMapEntity.Adopted source) {
+      super(source);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.serialization.json.JsonEncoder;
+
+/**
+ * Measures streaming a BasicRepresentation with N links as JSON to a discarding stream.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonEncoderBenchmark {
+
+  @Param({ "1", "100", "1000" })
+  private int links;
+
+  private final JsonEncoder encoder = new JsonEncoder();
+  private final OutputStream sink = new OutputStream() {
+    @Override
+    public void write(final int b) {
+      // discard
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      // discard
+    }
+  };
+  private BasicRepresentation representation;
+
+  @Setup
+  public void setUp() {
+    representation = new BasicRepresentation();
+    for( int i = 0; i < links; i++ ) {
+      representation.getLinks().add(new Link.Builder().href(URI.create("http://example.com/widgets/" + i)).rel("item").type("application/json").build());
+    }
+    representation.put("count", Integer.valueOf(links));
+  }
+
+  @Benchmark
+  public void encodeRepresentation() throws IOException {
+    encoder.encode(representation, sink);
+  }
+}
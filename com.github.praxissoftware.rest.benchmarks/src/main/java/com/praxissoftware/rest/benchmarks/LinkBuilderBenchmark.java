@@ -0,0 +1,115 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.LinkInterner;
+import com.praxissoftware.rest.core.UriTemplate;
+
+/**
+ * Measures the cost of building Links, with and without a seed map, and with parsed, raw and templated hrefs, and
+ * of building a page of links one at a time or in a batch. Page benchmarks report the cost per link.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBuilderBenchmark {
+
+  private static final int PAGE = 1000;
+
+  private final URI href = URI.create("http://example.com/widgets/42");
+  private final LinkInterner interner = LinkInterner.weak();
+  private final UriTemplate template = UriTemplate.compile("http://example.com/widgets/{id}");
+  private int id;
+  private final Map<String, Object> seed = ImmutableMap.<String, Object> of("profile", "urn:widget", "deprecation", "none");
+
+  @Benchmark
+  public Link hrefAndRel() {
+    return new Link.Builder().href(href).rel("self").build();
+  }
+
+  @Benchmark
+  public Link allFields() {
+    return new Link.Builder().href(href).rel("self").type("application/json").title("Widget 42").hrefLang("en-US").length("1024").build();
+  }
+
+  @Benchmark
+  public Link interned() {
+    return new Link.Builder().interner(interner).href(href).rel("self").type("application/json").build();
+  }
+
+  @Benchmark
+  public Link withSeedMap() {
+    return new Link.Builder(seed).href(href).rel("self").type("application/json").build();
+  }
+
+  @Benchmark
+  public Link parsedHref() {
+    return new Link.Builder().href(URI.create("http://example.com/widgets/" + id++)).rel("item").build();
+  }
+
+  @Benchmark
+  public Link rawHref() {
+    return new Link.Builder().href("http://example.com/widgets/" + id++).rel("item").build();
+  }
+
+  @Benchmark
+  public Link templatedHref() {
+    return new Link.Builder().href(template, id++).rel("item").build();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAGE)
+  public List<Link> pageWithBuilders() {
+    final List<Link> links = Lists.newArrayList();
+    for( int i = 0; i < PAGE; i++ ) {
+      links.add(new Link.Builder(seed).href(template, i).rel("item").type("application/json").build());
+    }
+    return links;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAGE)
+  public List<Link> pageWithBatchBuilder() {
+    final Link.BatchBuilder batch = new Link.BatchBuilder(new Link.Builder(seed).rel("item").type("application/json").build(), PAGE);
+    for( int i = 0; i < PAGE; i++ ) {
+      batch.href(template, i);
+    }
+    return batch.build();
+  }
+}
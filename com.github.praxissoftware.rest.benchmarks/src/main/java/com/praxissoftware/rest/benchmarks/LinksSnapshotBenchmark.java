@@ -0,0 +1,86 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+
+/**
+ * Compares the two defensive copies an async response pipeline makes of a representation's links against two snapshots of them, each followed by the
+ * append that makes the copies necessary in the first place.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinksSnapshotBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  private int links;
+
+  private BasicRepresentation representation;
+  private Link extra;
+
+  @Setup
+  public void setUp() {
+    representation = new BasicRepresentation();
+    for( int i = 0; i < links; i++ ) {
+      representation.getLinks().add(new Link.Builder().href("http://example.com/widgets/" + i).rel("item").build());
+    }
+    extra = new Link.Builder().href("http://example.com/widgets/extra").rel("item").build();
+  }
+
+  @Benchmark
+  public int copyTwice() {
+    final List<Link> first = ImmutableList.copyOf(representation.getLinks());
+    final List<Link> second = ImmutableList.copyOf(representation.getLinks());
+    appendAndRemove();
+    return first.size() + second.size();
+  }
+
+  @Benchmark
+  public int snapshotTwice() {
+    final List<Link> first = representation.snapshotLinks();
+    final List<Link> second = representation.snapshotLinks();
+    appendAndRemove();
+    return first.size() + second.size();
+  }
+
+  private void appendAndRemove() {
+    final List<Link> list = representation.getLinks();
+    list.add(extra);
+    list.remove(list.size() - 1);
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.AbstractMapEntity;
+
+/**
+ * Measures construction, access and comparison of AbstractMapEntity instances of varying size.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapEntityBenchmark {
+
+  @Param({ "8", "64", "512" })
+  private int size;
+
+  private Map<String, Object> hashSource;
+  private SortedMap<String, Object> sortedSource;
+  private Map<String, Object> immutableSource;
+  private Entity entity;
+  private Entity equalEntity;
+  private String presentKey;
+  private int counter;
+
+  @Setup
+  public void setUp() {
+    hashSource = Maps.newHashMap();
+    sortedSource = Maps.newTreeMap();
+    for( int i = 0; i < size; i++ ) {
+      hashSource.put("field" + i, Long.valueOf(i));
+      sortedSource.put("field" + i, Long.valueOf(i));
+    }
+    immutableSource = ImmutableMap.copyOf(hashSource);
+    entity = new Entity(hashSource);
+    equalEntity = new Entity(hashSource);
+    presentKey = "field" + (size / 2);
+  }
+
+  @Benchmark
+  public Entity constructFromHashMap() {
+    return new Entity(hashSource);
+  }
+
+  @Benchmark
+  public Entity constructFromSortedMap() {
+    return new Entity(sortedSource);
+  }
+
+  @Benchmark
+  public Entity constructFromImmutableMap() {
+    return new Entity(immutableSource);
+  }
+
+  @Benchmark
+  public Entity constructAdopted() {
+    final Map<String, Object> map = Maps.newHashMapWithExpectedSize(size);
+    map.putAll(hashSource);
+    return new Entity(AbstractMapEntity.adopt(map));
+  }
+
+  @Benchmark
+  public Object get() {
+    return entity.get(presentKey);
+  }
+
+  @Benchmark
+  public Long getAndCoerce() {
+    return entity.getAndCoerce(presentKey);
+  }
+
+  @Benchmark
+  public Object put() {
+    return entity.put(presentKey, (Object) Long.valueOf(counter++ & 0xfff));
+  }
+
+  @Benchmark
+  public void putLong() {
+    entity.putLong(presentKey, counter++ & 0xfff);
+  }
+
+  @Benchmark
+  public long getLong() {
+    return entity.getLong(presentKey);
+  }
+
+  @Benchmark
+  public Entity putAll() {
+    final Entity target = new Entity();
+    target.putAll(hashSource);
+    return target;
+  }
+
+  @Benchmark
+  public Entity putAllPresized() {
+    final Entity target = new Entity(size);
+    target.putAll(hashSource);
+    return target;
+  }
+
+  @Benchmark
+  public int hashCodeOf() {
+    return entity.hashCode();
+  }
+
+  @Benchmark
+  public boolean equalsOf() {
+    return entity.equals(equalEntity);
+  }
+
+  public static final class Entity extends AbstractMapEntity {
+    public Entity() {
+      super();
+    }
+
+    public Entity(final Map<String, Object> source) {
+      super(source);
+    }
+
+    public Entity(final AbstractMapEntity.Adopted source) {
+      super(source);
+    }
+
+    public Entity(final int expectedSize) {
+      super(expectedSize);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.serialization.json.JsonEncoder;
+import com.praxissoftware.rest.serialization.json.ParallelJsonEncoder;
+
+/**
+ * Compares encoding a report-sized BasicRepresentation, with N links and N embedded entities, on one thread and on four.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelJsonEncoderBenchmark {
+
+  @Param({ "1000", "20000" })
+  private int size;
+
+  private final JsonEncoder encoder = new JsonEncoder();
+  private final OutputStream sink = new OutputStream() {
+    @Override
+    public void write(final int b) {
+      // discard
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) {
+      // discard
+    }
+  };
+  private ExecutorService executor;
+  private ParallelJsonEncoder parallelEncoder;
+  private BasicRepresentation representation;
+
+  @Setup
+  public void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+    parallelEncoder = new ParallelJsonEncoder(executor, 500);
+    representation = new BasicRepresentation();
+    final List<Object> rows = Lists.newArrayList();
+    for( int i = 0; i < size; i++ ) {
+      representation.getLinks().add(new Link.Builder().href("http://example.com/widgets/" + i).rel("item").build());
+      rows.add(ImmutableMap.of("id", Integer.valueOf(i), "name", "Widget \"" + i + "\"", "price", Double.valueOf(i * 1.25), "tags", Lists.newArrayList("a", "b")));
+    }
+    representation.put("rows", rows);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void sequential() throws IOException {
+    encoder.encode(representation, sink);
+  }
+
+  @Benchmark
+  public void parallel() throws IOException {
+    parallelEncoder.encode(representation, sink);
+  }
+}
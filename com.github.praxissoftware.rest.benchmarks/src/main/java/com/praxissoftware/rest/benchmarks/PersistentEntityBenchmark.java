@@ -0,0 +1,84 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.AbstractImmutableMapEntity;
+import com.praxissoftware.rest.core.PersistentMapEntity;
+
+/**
+ * Measures deriving a copy of an immutable entity with one more field, by copying versus by structural sharing.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistentEntityBenchmark {
+
+  private static final class Entity extends AbstractImmutableMapEntity {
+    Entity(final Map<String, Object> source) {
+      super(source);
+    }
+  }
+
+  @Param({ "8", "64", "512" })
+  private int size;
+
+  private Entity copied;
+  private PersistentMapEntity persistent;
+  private int step;
+
+  @Setup
+  public void setUp() {
+    final Map<String, Object> source = Maps.newHashMap();
+    for( int i = 0; i < size; i++ ) {
+      source.put("field" + i, Integer.valueOf(i));
+    }
+    copied = new Entity(source);
+    persistent = PersistentMapEntity.copyOf(source);
+  }
+
+  @Benchmark
+  public Entity copyWith() {
+    final Map<String, Object> next = Maps.newHashMap(copied);
+    next.put("decoration", Integer.valueOf(step++ & 127));
+    return new Entity(ImmutableMap.copyOf(next));
+  }
+
+  @Benchmark
+  public PersistentMapEntity persistentWith() {
+    return persistent.with("decoration", Integer.valueOf(step++ & 127));
+  }
+}
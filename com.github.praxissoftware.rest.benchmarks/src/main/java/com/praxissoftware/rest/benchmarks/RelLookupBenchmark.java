@@ -0,0 +1,81 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+
+/**
+ * Compares finding the "next" link of a collection page, which comes after its items, by scanning the links against the rel index of a LinkList.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelLookupBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  private int links;
+
+  private BasicRepresentation representation;
+  private String rel;
+
+  @Setup
+  public void setUp() {
+    representation = new BasicRepresentation();
+    final List<Link> list = representation.getLinks();
+    list.add(new Link.Builder().href("http://example.com/widgets").rel("self").build());
+    for( int i = 0; i < links; i++ ) {
+      list.add(new Link.Builder().href("http://example.com/widgets/" + i).rel("item").build());
+    }
+    list.add(new Link.Builder().href("http://example.com/widgets?page=2").rel("next").build());
+    // a rel read off the wire rather than the literal the links were built with
+    rel = new String("next");
+  }
+
+  @Benchmark
+  public Link scan() {
+    for( final Link link : representation.getLinks() ) {
+      if( rel.equals(link.getRel()) ) {
+        return link;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public Link indexed() {
+    return representation.getLink(rel);
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.benchmarks;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+
+/**
+ * Measures building a BasicRepresentation that carries N links, the shape of a typical collection response.
+ * @author Jason Rose
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepresentationBenchmark {
+
+  @Param({ "1", "10", "100", "1000" })
+  private int links;
+
+  private URI[] hrefs;
+
+  @Setup
+  public void setUp() {
+    hrefs = new URI[links];
+    for( int i = 0; i < links; i++ ) {
+      hrefs[i] = URI.create("http://example.com/widgets/" + i);
+    }
+  }
+
+  @Benchmark
+  public BasicRepresentation buildWithLinks() {
+    final BasicRepresentation representation = new BasicRepresentation();
+    final List<Link> list = representation.getLinks();
+    for( int i = 0; i < links; i++ ) {
+      list.add(new Link.Builder().href(hrefs[i]).rel("item").type("application/json").build());
+    }
+    representation.put("count", Integer.valueOf(links));
+    return representation;
+  }
+}
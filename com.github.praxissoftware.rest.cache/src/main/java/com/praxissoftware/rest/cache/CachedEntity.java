@@ -0,0 +1,42 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.cache;
+
+import com.praxissoftware.rest.core.AbstractMapEntity;
+
+/**
+ * A read-only view of an entity in an OffHeapCache. Fields are decoded from the cache's buffer when they're read, and never all at once; nested maps and lists
+ * are views too, while Links are decoded into ordinary Links. Any attempt to modify the entity throws UnsupportedOperationException, and reading it after it's
+ * been evicted throws IllegalStateException.
+ * @author Jason Rose
+ */
+public final class CachedEntity extends AbstractMapEntity {
+
+  private final RecordMap record;
+
+  CachedEntity(final RecordMap record) {
+    super(adopt(record));
+    this.record = record;
+  }
+
+  /**
+   * Returns whether the entity has been evicted from the cache, which makes the view unreadable.
+   * @return True if the entity has been evicted.
+   */
+  public boolean isEvicted() {
+    return !record.entry().live;
+  }
+}
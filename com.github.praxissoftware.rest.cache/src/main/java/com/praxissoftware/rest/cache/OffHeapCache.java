@@ -0,0 +1,427 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.cache;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * A cache of entities stored outside the Java heap, in a direct buffer or a memory-mapped file, in the compact binary encoding of Records. Only a small index
+ * entry per key lives on the heap, so a large cache doesn't weigh on the old generation; get() returns a read-only view that decodes fields as they're read.
+ * <p>
+ * The buffer is a circular log of blocks whose total size is the byte budget. New entities are appended at the clock hand; to make room, the hand sweeps the
+ * blocks in its way, evicting the ones that haven't been read since its last pass and moving the others behind it (CLOCK with second chance). A file-backed
+ * cache is recovered from the file when it's reopened, so it survives restarts.
+ * <p>
+ * The cache is thread-safe. Views stay valid while their entity is cached, even if it's moved, and throw IllegalStateException once it's been evicted.
+ * @author Jason Rose
+ */
+public final class OffHeapCache implements Closeable {
+
+  private static final int LIVE = 0x4c495645;
+  private static final int DEAD = 0x44454144;
+  private static final int FREE = 0x46524545;
+  /** Block layout: int tag, int length, long sequence number, then the string key and the record. FREE blocks only have the tag and length. */
+  private static final int KEY = 16;
+
+  /**
+   * The heap-side index entry of a cached entity.
+   */
+  static final class Entry {
+    final String key;
+    /** The distance from the start of the block to the record. */
+    final int header;
+    final int length;
+    /** Changed under the write lock. */
+    int block;
+    volatile boolean live = true;
+    volatile boolean referenced;
+
+    Entry(final String key, final int header, final int length, final int block) {
+      this.key = key;
+      this.header = header;
+      this.length = length;
+      this.block = block;
+    }
+  }
+
+  private final ByteBuffer arena;
+  private final int capacity;
+  private final RandomAccessFile file;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Entry> index = Maps.newHashMap();
+  private final RecordWriter writer = new RecordWriter();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private long evictions;
+  private long usedBytes;
+  private long sequence;
+  private int head;
+  private boolean closed;
+
+  private OffHeapCache(final ByteBuffer arena, final RandomAccessFile file) {
+    this.arena = arena;
+    capacity = arena.capacity();
+    this.file = file;
+  }
+
+  /**
+   * Creates a cache in a direct buffer.
+   * @param budget The size of the buffer, in bytes.
+   * @return The cache.
+   */
+  public static OffHeapCache direct(final int budget) {
+    final OffHeapCache cache = new OffHeapCache(ByteBuffer.allocateDirect(checkBudget(budget)), null);
+    cache.writeFree(0, cache.capacity);
+    return cache;
+  }
+
+  /**
+   * Opens a cache in a memory-mapped file, recovering the entities already in it.
+   * @param path The file. It's created if it doesn't exist, and resized to the budget.
+   * @param budget The size of the file, in bytes.
+   * @return The cache.
+   * @throws IOException If the file can't be mapped.
+   */
+  public static OffHeapCache mapped(final File path, final int budget) throws IOException {
+    final RandomAccessFile file = new RandomAccessFile(path, "rw");
+    try {
+      final int capacity = checkBudget(budget);
+      file.setLength(capacity);
+      final OffHeapCache cache = new OffHeapCache(file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity), file);
+      cache.recover();
+      return cache;
+    } catch( final IOException e ) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Stores the entity under the key, replacing any entity already stored under it and evicting others as needed to stay within the budget.
+   * @param key The key.
+   * @param entity The entity. Its values may be Strings, Numbers, Booleans, URIs, Maps (including Links and other entities), Iterables and arrays.
+   * @throws IllegalArgumentException If the encoded entity is larger than the budget, or holds a value of another type.
+   */
+  public void put(final String key, final Map<String, ? extends Object> entity) {
+    Preconditions.checkNotNull(key);
+    Preconditions.checkNotNull(entity);
+    final Lock write = lock.writeLock();
+    write.lock();
+    try {
+      checkOpen();
+      final ByteBuffer record = writer.write(entity);
+      final byte[] keyBytes = key.getBytes(Charsets.UTF_8);
+      final int header = KEY + 4 + keyBytes.length;
+      final int length = align(header + record.remaining());
+      Preconditions.checkArgument(length <= capacity, "entity of %s bytes exceeds the budget of %s bytes", length, capacity);
+      final Entry previous = index.remove(key);
+      if( previous != null ) {
+        release(previous);
+        arena.putInt(previous.block, DEAD);
+      }
+      final int block = allocate(length);
+      arena.putInt(block, LIVE);
+      arena.putInt(block + 4, length);
+      arena.putLong(block + 8, sequence++);
+      final ByteBuffer target = arena.duplicate();
+      target.position(block + KEY);
+      target.putInt(keyBytes.length);
+      target.put(keyBytes);
+      target.put(record);
+      index.put(key, new Entry(key, header, length, block));
+      usedBytes += length;
+    } finally {
+      write.unlock();
+    }
+  }
+
+  /**
+   * Returns a read-only view of the entity stored under the key.
+   * @param key The key.
+   * @return The view, or null if no entity is cached under the key.
+   */
+  public CachedEntity get(final String key) {
+    final Lock read = lock.readLock();
+    read.lock();
+    try {
+      checkOpen();
+      final Entry entry = index.get(key);
+      if( entry == null ) {
+        misses.incrementAndGet();
+        return null;
+      }
+      entry.referenced = true;
+      hits.incrementAndGet();
+      return new CachedEntity(new RecordMap(this, entry, 0));
+    } finally {
+      read.unlock();
+    }
+  }
+
+  /**
+   * Removes the entity stored under the key.
+   * @param key The key.
+   * @return True if an entity was removed.
+   */
+  public boolean remove(final String key) {
+    final Lock write = lock.writeLock();
+    write.lock();
+    try {
+      checkOpen();
+      final Entry entry = index.remove(key);
+      if( entry == null ) {
+        return false;
+      }
+      release(entry);
+      arena.putInt(entry.block, DEAD);
+      return true;
+    } finally {
+      write.unlock();
+    }
+  }
+
+  /**
+   * Writes the changes to a file-backed cache's file.
+   */
+  public void force() {
+    if( arena instanceof MappedByteBuffer ) {
+      final Lock read = lock.readLock();
+      read.lock();
+      try {
+        ((MappedByteBuffer) arena).force();
+      } finally {
+        read.unlock();
+      }
+    }
+  }
+
+  /**
+   * Closes the cache, writing a file-backed cache's changes to its file. Views of its entities become invalid.
+   * @throws IOException If the file can't be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    final Lock write = lock.writeLock();
+    write.lock();
+    try {
+      if( closed ) {
+        return;
+      }
+      closed = true;
+      for( final Entry entry : index.values() ) {
+        entry.live = false;
+      }
+      index.clear();
+      if( file != null ) {
+        ((MappedByteBuffer) arena).force();
+        file.close();
+      }
+    } finally {
+      write.unlock();
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getEvictionCount() {
+    final Lock read = lock.readLock();
+    read.lock();
+    try {
+      return evictions;
+    } finally {
+      read.unlock();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of bytes taken by cached entities, including their block headers and padding.
+   * @return The number of bytes in use.
+   */
+  public long getUsedBytes() {
+    final Lock read = lock.readLock();
+    read.lock();
+    try {
+      return usedBytes;
+    } finally {
+      read.unlock();
+    }
+  }
+
+  public int size() {
+    final Lock read = lock.readLock();
+    read.lock();
+    try {
+      return index.size();
+    } finally {
+      read.unlock();
+    }
+  }
+
+  ByteBuffer arena() {
+    return arena;
+  }
+
+  Lock readLock() {
+    return lock.readLock();
+  }
+
+  /**
+   * Returns the absolute position of the entry's record. Callers hold the read lock.
+   * @throws IllegalStateException If the entry has been evicted.
+   */
+  int record(final Entry entry) {
+    Preconditions.checkState(entry.live, "the cached entity %s has been evicted", entry.key);
+    return entry.block + entry.header;
+  }
+
+  /**
+   * Claims a block of the given length at the clock hand, sweeping the blocks in the way: referenced ones move behind the hand, the others are evicted.
+   */
+  private int allocate(final int length) {
+    int scan = head;
+    while( scan - head < length ) {
+      if( scan == capacity ) {
+        // no room before the end of the buffer: leave the tail free and start over at the beginning
+        if( head < capacity ) {
+          writeFree(head, capacity - head);
+        }
+        head = 0;
+        scan = 0;
+        continue;
+      }
+      final int size = arena.getInt(scan + 4);
+      if( arena.getInt(scan) == LIVE ) {
+        final Entry entry = index.get(Records.readString(arena, scan + KEY));
+        if( entry != null && entry.block == scan ) {
+          if( entry.referenced ) {
+            entry.referenced = false;
+            move(entry, head);
+            head += size;
+          } else {
+            index.remove(entry.key);
+            release(entry);
+            evictions++;
+          }
+        }
+      }
+      scan += size;
+    }
+    final int block = head;
+    head += length;
+    if( scan > head ) {
+      writeFree(head, scan - head);
+    }
+    return block;
+  }
+
+  private void move(final Entry entry, final int to) {
+    final int from = entry.block;
+    if( from != to ) {
+      // the target is behind the source, so a forward copy never overwrites bytes it hasn't copied yet
+      for( int i = 0; i < entry.length; i += 8 ) {
+        arena.putLong(to + i, arena.getLong(from + i));
+      }
+      entry.block = to;
+    }
+  }
+
+  private void release(final Entry entry) {
+    entry.live = false;
+    usedBytes -= entry.length;
+  }
+
+  private void writeFree(final int block, final int length) {
+    arena.putInt(block, FREE);
+    arena.putInt(block + 4, length);
+  }
+
+  /**
+   * Rebuilds the index from the blocks of a mapped file. Anything after the first block that isn't well-formed is treated as free space, and the clock hand
+   * resumes after the most recently written block.
+   */
+  private void recover() {
+    int position = 0;
+    long newest = -1;
+    while( position <= capacity - 8 ) {
+      final int tag = arena.getInt(position);
+      final int size = arena.getInt(position + 4);
+      if( tag != LIVE && tag != DEAD && tag != FREE || size < 8 || size % 8 != 0 || size > capacity - position ) {
+        break;
+      }
+      if( tag == LIVE ) {
+        final String key = Records.readString(arena, position + KEY);
+        final Entry previous = index.put(key, new Entry(key, KEY + Records.stringSize(arena, position + KEY), size, position));
+        if( previous != null ) {
+          index.put(key, previous);
+          arena.putInt(position, DEAD);
+        } else {
+          usedBytes += size;
+          final long written = arena.getLong(position + 8);
+          if( written >= newest ) {
+            newest = written;
+            head = position + size;
+          }
+        }
+      }
+      position += size;
+    }
+    if( position < capacity ) {
+      writeFree(position, capacity - position);
+    }
+    sequence = newest + 1;
+  }
+
+  private void checkOpen() {
+    Preconditions.checkState(!closed, "the cache is closed");
+  }
+
+  /**
+   * Returns the budget rounded down to the block alignment.
+   */
+  private static int checkBudget(final int budget) {
+    Preconditions.checkArgument(budget >= 64, "budget must be at least 64 bytes: %s", budget);
+    return budget & ~7;
+  }
+
+  private static int align(final int length) {
+    return length + 7 & ~7;
+  }
+}
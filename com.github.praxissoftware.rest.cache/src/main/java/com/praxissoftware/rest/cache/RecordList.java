@@ -0,0 +1,67 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.cache;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A read-only List view of a list record in an OffHeapCache, which decodes elements as they're read.
+ * @author Jason Rose
+ */
+final class RecordList extends AbstractList<Object> implements RandomAccess {
+
+  private final RecordMap owner;
+  private final ByteBuffer buffer;
+  /** The position of the list within its record. */
+  private final int base;
+
+  RecordList(final RecordMap owner, final ByteBuffer buffer, final int base) {
+    this.owner = owner;
+    this.buffer = buffer;
+    this.base = base;
+  }
+
+  @Override
+  public Object get(final int index) {
+    final Lock lock = owner.cache().readLock();
+    lock.lock();
+    try {
+      final int record = owner.cache().record(owner.entry());
+      final int list = record + base;
+      final int count = buffer.getInt(list);
+      if( index < 0 || index >= count ) {
+        throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+      }
+      return owner.decode(buffer, record, list + buffer.getInt(list + 4 + 4 * index), false);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    final Lock lock = owner.cache().readLock();
+    lock.lock();
+    try {
+      return buffer.getInt(owner.cache().record(owner.entry()) + base);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.UnmodifiableIterator;
+import com.praxissoftware.rest.core.Link;
+
+/**
+ * A read-only Map view of a map record in an OffHeapCache. Lookups binary-search the record's hash table and decode only the value they return; nested maps
+ * and lists are returned as views as well, while Links are decoded whole. Entries iterate in hash order.
+ * @author Jason Rose
+ */
+final class RecordMap extends AbstractMap<String, Object> {
+
+  private final OffHeapCache cache;
+  private final OffHeapCache.Entry entry;
+  /** The position of the map within its record. */
+  private final int base;
+
+  RecordMap(final OffHeapCache cache, final OffHeapCache.Entry entry, final int base) {
+    this.cache = cache;
+    this.entry = entry;
+    this.base = base;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    return new AbstractSet<Map.Entry<String, Object>>() {
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        return new UnmodifiableIterator<Map.Entry<String, Object>>() {
+          private final int size = size();
+          private int index;
+
+          @Override
+          public boolean hasNext() {
+            return index < size;
+          }
+
+          @Override
+          public Map.Entry<String, Object> next() {
+            if( index == size ) {
+              throw new NoSuchElementException();
+            }
+            final Lock lock = cache.readLock();
+            lock.lock();
+            try {
+              final ByteBuffer buffer = cache.arena();
+              final int record = cache.record(entry);
+              final int map = record + base;
+              final int position = map + buffer.getInt(map + 8 + 8 * index++);
+              return Maps.immutableEntry(Records.readString(buffer, position), decode(buffer, record, position + Records.stringSize(buffer, position), false));
+            } finally {
+              lock.unlock();
+            }
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return RecordMap.this.size();
+      }
+    };
+  }
+
+  @Override
+  public Object get(final Object key) {
+    if( !(key instanceof String) ) {
+      return null;
+    }
+    final Lock lock = cache.readLock();
+    lock.lock();
+    try {
+      final ByteBuffer buffer = cache.arena();
+      final int record = cache.record(entry);
+      final int position = find(buffer, record + base, (String) key);
+      return position < 0 ? null : decode(buffer, record, position, false);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    final Lock lock = cache.readLock();
+    lock.lock();
+    try {
+      return cache.arena().getInt(cache.record(entry) + base);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the position of the value of the key in the map at the position, or -1 if the key is absent.
+   */
+  static int find(final ByteBuffer buffer, final int map, final String key) {
+    final int hash = key.hashCode();
+    int low = 0;
+    int high = buffer.getInt(map) - 1;
+    while( low <= high ) {
+      final int middle = low + high >>> 1;
+      final int found = buffer.getInt(map + 4 + 8 * middle);
+      if( found < hash ) {
+        low = middle + 1;
+      } else if( found > hash || middle > low && buffer.getInt(map + 4 + 8 * (middle - 1)) == hash ) {
+        // keep looking to the left for the first entry with the hash
+        high = middle - 1;
+      } else {
+        final int count = buffer.getInt(map);
+        for( int i = middle; i < count && buffer.getInt(map + 4 + 8 * i) == hash; i++ ) {
+          final int position = map + buffer.getInt(map + 8 + 8 * i);
+          if( Records.stringEquals(buffer, position, key) ) {
+            return position + Records.stringSize(buffer, position);
+          }
+        }
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the value at the position. Maps and lists become views unless eager is set, as it is within Links, which must not refer to the cache.
+   */
+  Object decode(final ByteBuffer buffer, final int record, final int position, final boolean eager) {
+    final byte tag = buffer.get(position);
+    final int body = position + 1;
+    switch( tag ) {
+    case Records.NULL:
+      return null;
+    case Records.STRING:
+      return Records.readString(buffer, body);
+    case Records.INT:
+      return Integer.valueOf(buffer.getInt(body));
+    case Records.LONG:
+      return Long.valueOf(buffer.getLong(body));
+    case Records.DOUBLE:
+      return Double.valueOf(buffer.getDouble(body));
+    case Records.TRUE:
+      return Boolean.TRUE;
+    case Records.FALSE:
+      return Boolean.FALSE;
+    case Records.URI:
+      return URI.create(Records.readString(buffer, body));
+    case Records.BIG_INTEGER:
+      return new BigInteger(Records.readString(buffer, body));
+    case Records.BIG_DECIMAL:
+      return new BigDecimal(Records.readString(buffer, body));
+    case Records.LINK:
+      return decodeLink(buffer, record, body);
+    case Records.MAP:
+      return eager ? decodeMap(buffer, record, body) : new RecordMap(cache, entry, body - record);
+    case Records.LIST:
+      return eager ? decodeList(buffer, record, body) : new RecordList(this, buffer, body - record);
+    default:
+      throw new IllegalStateException("corrupt record: unknown tag " + tag);
+    }
+  }
+
+  private Map<String, Object> decodeMap(final ByteBuffer buffer, final int record, final int map) {
+    final int count = buffer.getInt(map);
+    final Map<String, Object> result = Maps.newHashMapWithExpectedSize(count);
+    for( int i = 0; i < count; i++ ) {
+      final int position = map + buffer.getInt(map + 8 + 8 * i);
+      result.put(Records.readString(buffer, position), decode(buffer, record, position + Records.stringSize(buffer, position), true));
+    }
+    return result;
+  }
+
+  private List<Object> decodeList(final ByteBuffer buffer, final int record, final int list) {
+    final int count = buffer.getInt(list);
+    final List<Object> result = Lists.newArrayListWithCapacity(count);
+    for( int i = 0; i < count; i++ ) {
+      result.add(decode(buffer, record, list + buffer.getInt(list + 4 + 4 * i), true));
+    }
+    return result;
+  }
+
+  /**
+   * Decodes a Link. Well-known members given as Strings go through the builder's setters, the href staying unparsed; any other member, including a well-known
+   * one of another type such as a numeric length, is passed in the builder's map as it was stored.
+   */
+  private Link decodeLink(final ByteBuffer buffer, final int record, final int map) {
+    final int count = buffer.getInt(map);
+    String href = null;
+    String rel = null;
+    String type = null;
+    String title = null;
+    String hrefLang = null;
+    String length = null;
+    Map<String, Object> members = null;
+    for( int i = 0; i < count; i++ ) {
+      final int position = map + buffer.getInt(map + 8 + 8 * i);
+      final String key = Records.readString(buffer, position);
+      final Object value = decode(buffer, record, position + Records.stringSize(buffer, position), true);
+      final String string = value instanceof String ? (String) value : null;
+      if( string != null && "href".equals(key) ) {
+        href = string;
+      } else if( string != null && "rel".equals(key) ) {
+        rel = string;
+      } else if( string != null && "type".equals(key) ) {
+        type = string;
+      } else if( string != null && "title".equals(key) ) {
+        title = string;
+      } else if( string != null && "hrefLang".equals(key) ) {
+        hrefLang = string;
+      } else if( string != null && "length".equals(key) ) {
+        length = string;
+      } else {
+        if( members == null ) {
+          members = Maps.newHashMap();
+        }
+        members.put(key, value);
+      }
+    }
+    final Link.Builder builder = members == null ? new Link.Builder() : new Link.Builder(members);
+    return builder.href(href).rel(rel).type(type).title(title).hrefLang(hrefLang).length(length).build();
+  }
+
+  OffHeapCache cache() {
+    return cache;
+  }
+
+  OffHeapCache.Entry entry() {
+    return entry;
+  }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.praxissoftware.rest.core.Link;
+
+/**
+ * Encodes entities into the record format of Records, in a reusable heap buffer.
+ * @author Jason Rose
+ */
+final class RecordWriter {
+
+  private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+  /**
+   * Encodes the entity, replacing the previous record.
+   * @param entity The entity.
+   * @return The record, as a buffer from its start to its end.
+   * @throws IllegalArgumentException If the entity holds a value of an unsupported type.
+   */
+  ByteBuffer write(final Map<?, ?> entity) {
+    buffer.clear();
+    writeMap(entity);
+    final ByteBuffer record = buffer.duplicate();
+    record.flip();
+    return record;
+  }
+
+  private void writeMap(final Map<?, ?> map) {
+    final int base = buffer.position();
+    final long[] table = new long[map.size()];
+    ensure(4 + 8 * table.length);
+    buffer.position(base + 4 + 8 * table.length);
+    final boolean link = map instanceof Link;
+    int count = 0;
+    for( final Map.Entry<?, ?> entry : map.entrySet() ) {
+      final String key = String.valueOf(entry.getKey());
+      final int offset = buffer.position() - base;
+      if( link && "href".equals(key) ) {
+        // keep the href raw, so neither writing nor reading it parses a URI
+        writeString(key);
+        writeTag(Records.STRING);
+        writeString(((Link) map).getRawHref());
+      } else {
+        final Object value = entry.getValue();
+        if( value == null ) {
+          continue;
+        }
+        writeString(key);
+        writeValue(value);
+      }
+      table[count++] = (long) key.hashCode() << 32 | offset & 0xffffffffL;
+    }
+    Arrays.sort(table, 0, count);
+    buffer.putInt(base, count);
+    for( int i = 0; i < count; i++ ) {
+      buffer.putInt(base + 4 + 8 * i, (int) (table[i] >> 32));
+      buffer.putInt(base + 8 + 8 * i, (int) table[i]);
+    }
+  }
+
+  private void writeList(final Collection<?> list) {
+    final int base = buffer.position();
+    ensure(4 + 4 * list.size());
+    buffer.putInt(list.size());
+    buffer.position(base + 4 + 4 * list.size());
+    int index = 0;
+    for( final Object element : list ) {
+      buffer.putInt(base + 4 + 4 * index++, buffer.position() - base);
+      writeValue(element);
+    }
+  }
+
+  private void writeValue(final Object value) {
+    if( value == null ) {
+      writeTag(Records.NULL);
+    } else if( value instanceof String ) {
+      writeTag(Records.STRING);
+      writeString((String) value);
+    } else if( value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+      writeTag(Records.INT);
+      ensure(4);
+      buffer.putInt(((Number) value).intValue());
+    } else if( value instanceof Long ) {
+      writeTag(Records.LONG);
+      ensure(8);
+      buffer.putLong(((Long) value).longValue());
+    } else if( value instanceof Double || value instanceof Float ) {
+      writeTag(Records.DOUBLE);
+      ensure(8);
+      buffer.putDouble(((Number) value).doubleValue());
+    } else if( value instanceof Boolean ) {
+      writeTag(((Boolean) value).booleanValue() ? Records.TRUE : Records.FALSE);
+    } else if( value instanceof URI ) {
+      writeTag(Records.URI);
+      writeString(value.toString());
+    } else if( value instanceof BigInteger ) {
+      writeTag(Records.BIG_INTEGER);
+      writeString(value.toString());
+    } else if( value instanceof BigDecimal ) {
+      writeTag(Records.BIG_DECIMAL);
+      writeString(value.toString());
+    } else if( value instanceof Map ) {
+      writeTag(value instanceof Link ? Records.LINK : Records.MAP);
+      writeMap((Map<?, ?>) value);
+    } else if( value instanceof Collection ) {
+      writeTag(Records.LIST);
+      writeList((Collection<?>) value);
+    } else if( value instanceof Iterable ) {
+      writeTag(Records.LIST);
+      writeList(Lists.newArrayList((Iterable<?>) value));
+    } else if( value instanceof Object[] ) {
+      writeTag(Records.LIST);
+      writeList(Arrays.asList((Object[]) value));
+    } else {
+      throw new IllegalArgumentException("unsupported value type: " + value.getClass().getName());
+    }
+  }
+
+  private void writeTag(final byte tag) {
+    ensure(1);
+    buffer.put(tag);
+  }
+
+  private void writeString(final String string) {
+    final int length = string.length();
+    ensure(4 + length);
+    final int start = buffer.position();
+    buffer.putInt(length);
+    for( int i = 0; i < length; i++ ) {
+      final char c = string.charAt(i);
+      if( c >= 0x80 ) {
+        buffer.position(start);
+        final byte[] bytes = string.getBytes(Charsets.UTF_8);
+        ensure(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        return;
+      }
+      buffer.put((byte) c);
+    }
+  }
+
+  private void ensure(final int bytes) {
+    if( buffer.remaining() < bytes ) {
+      final ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+      buffer.flip();
+      grown.put(buffer);
+      buffer = grown;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.cache;
+
+import java.nio.ByteBuffer;
+
+import com.google.common.base.Charsets;
+
+/**
+ * The binary record format of cached entities. All offsets are relative to the start of the structure that holds them, so records can be moved as a whole.
+ * <ul>
+ * <li>map: int count, then count pairs of (int key hash, int entry offset) sorted by hash, then the entries. An entry is a string key followed by a value.</li>
+ * <li>list: int count, then count int element offsets, then the elements, which are values.</li>
+ * <li>value: a tag byte, followed by a string, a map or a list body, or a fixed-size primitive.</li>
+ * <li>string: int length, then that many bytes of UTF-8.</li>
+ * </ul>
+ * @author Jason Rose
+ */
+final class Records {
+
+  static final byte NULL = 0;
+  static final byte STRING = 1;
+  static final byte INT = 2;
+  static final byte LONG = 3;
+  static final byte DOUBLE = 4;
+  static final byte TRUE = 5;
+  static final byte FALSE = 6;
+  static final byte URI = 7;
+  static final byte BIG_INTEGER = 8;
+  static final byte BIG_DECIMAL = 9;
+  static final byte MAP = 10;
+  static final byte LINK = 11;
+  static final byte LIST = 12;
+
+  private Records() {
+  }
+
+  /**
+   * Decodes the string at the position. ASCII, the common case for keys and hrefs, is decoded without an intermediate byte array.
+   */
+  static String readString(final ByteBuffer buffer, final int position) {
+    final int length = buffer.getInt(position);
+    final int start = position + 4;
+    final char[] chars = new char[length];
+    for( int i = 0; i < length; i++ ) {
+      final byte b = buffer.get(start + i);
+      if( b < 0 ) {
+        final byte[] bytes = new byte[length];
+        for( int j = 0; j < length; j++ ) {
+          bytes[j] = buffer.get(start + j);
+        }
+        return new String(bytes, Charsets.UTF_8);
+      }
+      chars[i] = (char) b;
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Returns whether the string at the position equals the key, without decoding it if both are ASCII.
+   */
+  static boolean stringEquals(final ByteBuffer buffer, final int position, final String key) {
+    final int length = buffer.getInt(position);
+    if( length < key.length() ) {
+      return false;
+    }
+    final int start = position + 4;
+    for( int i = 0; i < length; i++ ) {
+      final byte b = buffer.get(start + i);
+      if( b < 0 ) {
+        return readString(buffer, position).equals(key);
+      }
+      if( i >= key.length() || key.charAt(i) != b ) {
+        return false;
+      }
+    }
+    return length == key.length();
+  }
+
+  /**
+   * Returns the size of the string at the position, including its length prefix.
+   */
+  static int stringSize(final ByteBuffer buffer, final int position) {
+    return 4 + buffer.getInt(position);
+  }
+}
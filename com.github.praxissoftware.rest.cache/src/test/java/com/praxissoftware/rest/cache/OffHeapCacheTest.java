@@ -0,0 +1,163 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+
+public class OffHeapCacheTest {
+
+  private static BasicRepresentation representation(final int links) {
+    final BasicRepresentation rep = new BasicRepresentation();
+    for( int i = 0; i < links; i++ ) {
+      rep.getLinks().add(new Link.Builder(ImmutableMap.of("profile", "urn:x")).href("/widgets/" + i).rel("item").title("Widget \u00e9 " + i).build());
+    }
+    rep.put("count", Integer.valueOf(links));
+    rep.put("total", Long.valueOf(1L << 40));
+    rep.put("ratio", Double.valueOf(0.5));
+    rep.put("active", Boolean.TRUE);
+    rep.put("price", new BigDecimal("1.10"));
+    rep.put("self", URI.create("/widgets"));
+    rep.put("nested", ImmutableMap.of("tags", ImmutableList.of("a", "b"), "deep", ImmutableMap.of("x", 1)));
+    return rep;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    final OffHeapCache cache = OffHeapCache.direct(1 << 16);
+    final BasicRepresentation rep = representation(10);
+    cache.put("/widgets", rep);
+    final CachedEntity cached = cache.get("/widgets");
+    Assert.assertEquals(rep, cached);
+    Assert.assertEquals(cached, rep);
+    Assert.assertEquals(rep.hashCode(), cached.hashCode());
+    Assert.assertEquals(Integer.valueOf(10), cached.get("count"));
+    Assert.assertEquals(ImmutableList.of("a", "b"), ((Map<?, ?>) cached.get("nested")).get("tags"));
+    final List<?> links = (List<?>) cached.get("links");
+    Assert.assertEquals("/widgets/3", ((Link) links.get(3)).getRawHref());
+    Assert.assertNull(cached.get("missing"));
+    Assert.assertEquals(1, cache.getHitCount());
+    Assert.assertNull(cache.get("/other"));
+    Assert.assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void testLinkWithNumericLength() {
+    final OffHeapCache cache = OffHeapCache.direct(1 << 12);
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.getLinks().add(new Link.Builder(ImmutableMap.of("length", Long.valueOf(2048))).href("/file").rel("enclosure").build());
+    cache.put("/file", rep);
+    final Link link = (Link) ((List<?>) cache.get("/file").get("links")).get(0);
+    Assert.assertEquals(Long.valueOf(2048), link.get("length"));
+    Assert.assertEquals("/file", link.getRawHref());
+    Assert.assertEquals(rep.getLinks().get(0), link);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testViewIsReadOnly() {
+    final OffHeapCache cache = OffHeapCache.direct(1 << 12);
+    cache.put("k", ImmutableMap.of("a", "b"));
+    cache.get("k").put("c", "d");
+  }
+
+  @Test
+  public void testEvictionStaysWithinBudget() {
+    final OffHeapCache cache = OffHeapCache.direct(1 << 14);
+    for( int i = 0; i < 1000; i++ ) {
+      cache.put("k" + i, representation(2));
+      Assert.assertTrue(cache.getUsedBytes() <= cache.getCapacity());
+    }
+    Assert.assertTrue(cache.getEvictionCount() > 0);
+    Assert.assertEquals(representation(2), cache.get("k999"));
+    Assert.assertNull(cache.get("k0"));
+  }
+
+  @Test
+  public void testClockKeepsReferencedEntries() {
+    final OffHeapCache cache = OffHeapCache.direct(1 << 14);
+    cache.put("hot", representation(3));
+    final CachedEntity view = cache.get("hot");
+    for( int i = 0; i < 1000; i++ ) {
+      cache.put("cold" + i, ImmutableMap.of("i", i));
+      Assert.assertNotNull(cache.get("hot"));
+    }
+    Assert.assertFalse(view.isEvicted());
+    Assert.assertEquals(representation(3), view);
+  }
+
+  @Test
+  public void testEvictedViewsFail() {
+    final OffHeapCache cache = OffHeapCache.direct(1 << 12);
+    cache.put("k", ImmutableMap.of("a", "b"));
+    final CachedEntity view = cache.get("k");
+    cache.remove("k");
+    Assert.assertTrue(view.isEvicted());
+    try {
+      view.get("a");
+      Assert.fail();
+    } catch( final IllegalStateException e ) {
+      // pass
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEntityLargerThanBudget() {
+    OffHeapCache.direct(64).put("k", representation(10));
+  }
+
+  @Test
+  public void testMappedCacheSurvivesReopening() throws IOException {
+    final File file = File.createTempFile("cache", ".bin");
+    file.deleteOnExit();
+    final Map<String, Object> expected = Maps.newHashMap();
+    OffHeapCache cache = OffHeapCache.mapped(file, 1 << 14);
+    for( int i = 0; i < 300; i++ ) {
+      cache.put("k" + i, ImmutableMap.of("i", i));
+    }
+    cache.remove("k299");
+    for( int i = 0; i < 299; i++ ) {
+      if( cache.get("k" + i) != null ) {
+        expected.put("k" + i, ImmutableMap.of("i", i));
+      }
+    }
+    cache.close();
+    cache = OffHeapCache.mapped(file, 1 << 14);
+    try {
+      Assert.assertEquals(expected.size(), cache.size());
+      for( final Map.Entry<String, Object> entry : expected.entrySet() ) {
+        Assert.assertEquals(entry.getValue(), cache.get(entry.getKey()));
+      }
+      Assert.assertNull(cache.get("k299"));
+      cache.put("k300", ImmutableMap.of("i", 300));
+      Assert.assertEquals(ImmutableMap.of("i", 300), cache.get("k300"));
+    } finally {
+      cache.close();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+
+/**
+ * This subclass of AbstractMapEntity delegates to a ConcurrentHashMap, so several threads can read and enrich the same entity without external locking. On top
+ * of the ConcurrentMap operations it offers atomic compute() and merge().
+ * @author Jason Rose
+ */
+public abstract class AbstractConcurrentMapEntity extends AbstractMapEntity implements ConcurrentMap<String, Object> {
+
+  private final ConcurrentHashMap<String, Object> map;
+
+  public AbstractConcurrentMapEntity() {
+    this(new ConcurrentHashMap<String, Object>());
+  }
+
+  /**
+   * Creates an entity holding a copy of the source's entries. Null values are skipped, as put() would.
+   * @param source The entries to copy.
+   */
+  public AbstractConcurrentMapEntity(final Map<String, Object> source) {
+    this(copyOf(source));
+  }
+
+  private AbstractConcurrentMapEntity(final ConcurrentHashMap<String, Object> map) {
+    super(adopt(map));
+    this.map = map;
+  }
+
+  /**
+   * Atomically replaces the value of the key with the result of the function. The function receives the current value, or null if there is none, and returns
+   * the new value, or null to remove the key. Under contention the function may be applied more than once, so it should be free of side effects.
+   * @param key The key whose value to compute.
+   * @param function Computes the new value from the current one.
+   * @return The new value, or null if the key was removed.
+   */
+  public Object compute(final String key, final Function<Object, ?> function) {
+    Preconditions.checkNotNull(key);
+    while( true ) {
+      final Object current = map.get(key);
+      final Object computed = function.apply(current);
+      if( current == null ) {
+        if( computed == null || map.putIfAbsent(key, computed) == null ) {
+          return computed;
+        }
+      } else if( computed == null ) {
+        if( map.remove(key, current) ) {
+          return null;
+        }
+      } else if( map.replace(key, current, computed) ) {
+        return computed;
+      }
+    }
+  }
+
+  /**
+   * Atomically stores the value if the key has none, and otherwise replaces the current value with the result of the function, which receives the current value
+   * and returns the merged one, or null to remove the key. Under contention the function may be applied more than once.
+   * @param key The key whose value to merge.
+   * @param value The value to store if the key has none.
+   * @param function Merges the current value with the new one.
+   * @return The new value, or null if the key was removed.
+   */
+  public Object merge(final String key, final Object value, final Function<Object, ?> function) {
+    Preconditions.checkNotNull(value);
+    return compute(key, new Function<Object, Object>() {
+      @Override
+      public Object apply(final Object current) {
+        return current == null ? value : function.apply(current);
+      }
+    });
+  }
+
+  @Override
+  public Object putIfAbsent(final String key, final Object value) {
+    return map.putIfAbsent(key, value);
+  }
+
+  @Override
+  public boolean remove(final Object key, final Object value) {
+    return map.remove(key, value);
+  }
+
+  @Override
+  public Object replace(final String key, final Object value) {
+    return map.replace(key, value);
+  }
+
+  @Override
+  public boolean replace(final String key, final Object oldValue, final Object newValue) {
+    return map.replace(key, oldValue, newValue);
+  }
+
+  private static ConcurrentHashMap<String, Object> copyOf(final Map<String, Object> source) {
+    final ConcurrentHashMap<String, Object> copy = new ConcurrentHashMap<String, Object>(Math.max(16, source.size() * 4 / 3 + 1));
+    for( final Map.Entry<String, Object> entry : source.entrySet() ) {
+      if( entry.getValue() != null ) {
+        copy.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return copy;
+  }
+}
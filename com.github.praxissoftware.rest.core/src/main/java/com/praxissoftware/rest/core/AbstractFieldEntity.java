@@ -0,0 +1,332 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+
+/**
+ * A map entity whose well-known keys are stored in Java fields, as a POJO would store them, and whose other keys go to an overflow map created on first use.
+ * The Map view sees both, so such an entity can be used wherever a Representation or a Map is expected. Subclasses are generated from interfaces marked
+ * with GenerateEntity; each one maps its schema's slots to its fields through getSlot() and setSlot(), and writes its fields in order through accept(), which
+ * the encoders use instead of the Map view.
+ * <p>
+ * Like other map entities, the Map view holds no nulls: putting null removes the key. A field of a primitive type is absent until it's set, and reads as zero
+ * or false through its getter while absent.
+ * @author Jason Rose
+ */
+public abstract class AbstractFieldEntity extends AbstractMap<String, Object> {
+
+  /**
+   * The well-known keys of a generated entity class, shared by all of its instances.
+   * @author Jason Rose
+   */
+  public static final class Schema {
+    private final KeySchema keys;
+
+    private Schema(final KeySchema keys) {
+      this.keys = keys;
+    }
+
+    /**
+     * Creates a schema whose slots are numbered in the order of the keys.
+     * @param keys The keys, at most 64 of them.
+     * @return The schema.
+     */
+    public static Schema of(final String... keys) {
+      Preconditions.checkArgument(keys.length <= Long.SIZE, "too many fields: %s", keys.length);
+      return new Schema(new KeySchema(keys));
+    }
+  }
+
+  private final KeySchema schema;
+  /** One bit per slot, set while the slot's field holds a value. */
+  private long present;
+  private Map<String, Object> overflow;
+  private Set<Map.Entry<String, Object>> entrySet;
+
+  protected AbstractFieldEntity(final Schema schema) {
+    this.schema = schema.keys;
+  }
+
+  /**
+   * Passes each present field to the visitor, in schema order, followed by the overflow entries.
+   * @param visitor The visitor to pass the fields to.
+   * @throws IOException If the visitor fails.
+   */
+  public abstract void accept(FieldVisitor visitor) throws IOException;
+
+  /**
+   * Returns the value of a slot's field, boxed if it's a primitive. Only called for present slots.
+   * @param slot The slot index.
+   * @return The field's value.
+   */
+  protected abstract Object getSlot(int slot);
+
+  /**
+   * Stores a value in a slot's field, or resets the field if the value is null. Presence is tracked by the caller.
+   * @param slot The slot index.
+   * @param value The value, or null.
+   * @throws ClassCastException If the value can't be stored in the field.
+   */
+  protected abstract void setSlot(int slot, Object value);
+
+  /**
+   * Passes the overflow entries to the visitor. Generated accept() methods call this last.
+   * @param visitor The visitor to pass the entries to.
+   * @throws IOException If the visitor fails.
+   */
+  protected final void acceptOverflow(final FieldVisitor visitor) throws IOException {
+    if( overflow != null ) {
+      for( final Map.Entry<String, Object> entry : overflow.entrySet() ) {
+        visitor.visit(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Returns whether a slot's field holds a value.
+   * @param slot The slot index.
+   * @return Whether the slot's field holds a value.
+   */
+  protected final boolean isPresent(final int slot) {
+    return (present & 1L << slot) != 0;
+  }
+
+  /**
+   * Marks a slot's field as holding a value or not. Generated setters call this.
+   * @param slot The slot index.
+   * @param value Whether the slot's field holds a value.
+   */
+  protected final void setPresent(final int slot, final boolean value) {
+    if( value ) {
+      present |= 1L << slot;
+    } else {
+      present &= ~(1L << slot);
+    }
+  }
+
+  @Override
+  public void clear() {
+    for( int i = 0; i < schema.size(); i++ ) {
+      if( isPresent(i) ) {
+        setSlot(i, null);
+      }
+    }
+    present = 0;
+    if( overflow != null ) {
+      overflow.clear();
+    }
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    final int slot = schema.indexOf(key);
+    if( slot >= 0 ) {
+      return isPresent(slot);
+    }
+    return overflow != null && overflow.containsKey(key);
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    Set<Map.Entry<String, Object>> result = entrySet;
+    if( result == null ) {
+      result = new EntrySet();
+      entrySet = result;
+    }
+    return result;
+  }
+
+  @Override
+  public Object get(final Object key) {
+    final int slot = schema.indexOf(key);
+    if( slot >= 0 ) {
+      return isPresent(slot) ? getSlot(slot) : null;
+    }
+    return overflow == null ? null : overflow.get(key);
+  }
+
+  /**
+   * Returns the value of a field, checked against the field's type or converted to it. A field of the schema is read from its slot.
+   * @param field The field to read.
+   * @return The value, or null if the field has none.
+   * @throws ClassCastException If the value isn't of the field's type and the field has no converter, or the converter can't convert it.
+   */
+  public <T> T get(final Field<T> field) {
+    final int slot = field.slotIn(schema);
+    final Object value;
+    if( slot >= 0 ) {
+      value = isPresent(slot) ? getSlot(slot) : null;
+    } else {
+      value = overflow == null ? null : overflow.get(field.getName());
+    }
+    return AbstractMapEntity.checkedCast(field, value);
+  }
+
+  @Override
+  public Object put(final String key, final Object value) {
+    Preconditions.checkNotNull(key);
+    final int slot = schema.indexOf(key);
+    if( slot < 0 ) {
+      if( value == null ) {
+        return overflow == null ? null : overflow.remove(key);
+      }
+      if( overflow == null ) {
+        overflow = Maps.newHashMap();
+      }
+      return overflow.put(key, value);
+    }
+    final Object previous = isPresent(slot) ? getSlot(slot) : null;
+    setSlot(slot, value);
+    setPresent(slot, value != null);
+    return previous;
+  }
+
+  @Override
+  public Object remove(final Object key) {
+    final int slot = schema.indexOf(key);
+    if( slot < 0 ) {
+      return overflow == null ? null : overflow.remove(key);
+    }
+    return put(schema.keyAt(slot), null);
+  }
+
+  @Override
+  public int size() {
+    return Long.bitCount(present) + (overflow == null ? 0 : overflow.size());
+  }
+
+  private final class SlotEntry implements Map.Entry<String, Object> {
+    private final int slot;
+
+    SlotEntry(final int slot) {
+      this.slot = slot;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      if( !(object instanceof Map.Entry) ) {
+        return false;
+      }
+      final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+      final Object value = getValue();
+      return getKey().equals(entry.getKey()) && (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+    }
+
+    @Override
+    public String getKey() {
+      return schema.keyAt(slot);
+    }
+
+    @Override
+    public Object getValue() {
+      return isPresent(slot) ? getSlot(slot) : null;
+    }
+
+    @Override
+    public int hashCode() {
+      final Object value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public Object setValue(final Object value) {
+      Preconditions.checkNotNull(value);
+      return put(getKey(), value);
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+      return new Iterator<Map.Entry<String, Object>>() {
+        private int next = advance(0);
+        private int last = -1;
+        private Iterator<Map.Entry<String, Object>> rest;
+
+        @Override
+        public boolean hasNext() {
+          return next < schema.size() || rest().hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+          if( next < schema.size() ) {
+            last = next;
+            next = advance(next + 1);
+            return new SlotEntry(last);
+          }
+          if( !rest().hasNext() ) {
+            throw new NoSuchElementException();
+          }
+          last = -1;
+          return rest.next();
+        }
+
+        @Override
+        public void remove() {
+          if( last >= 0 ) {
+            Preconditions.checkState(isPresent(last));
+            put(schema.keyAt(last), null);
+          } else {
+            Preconditions.checkState(rest != null);
+            rest.remove();
+          }
+        }
+
+        private int advance(final int from) {
+          int i = from;
+          while( i < schema.size() && !isPresent(i) ) {
+            i++;
+          }
+          return i;
+        }
+
+        private Iterator<Map.Entry<String, Object>> rest() {
+          if( rest == null ) {
+            rest = overflow == null ? Iterators.<Map.Entry<String, Object>> emptyIterator() : overflow.entrySet().iterator();
+          }
+          return rest;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return AbstractFieldEntity.this.size();
+    }
+
+    @Override
+    public void clear() {
+      AbstractFieldEntity.this.clear();
+    }
+  }
+}
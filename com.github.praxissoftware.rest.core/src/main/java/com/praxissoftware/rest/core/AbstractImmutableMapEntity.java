@@ -15,18 +15,116 @@
  */
 package com.praxissoftware.rest.core;
 
+import java.util.Arrays;
 import java.util.Map;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 
 /**
- * This subclass of AbstractMapEntity delegates to an ImmutableMap, so any calls to modify the map will fail.
+ * This subclass of AbstractMapEntity delegates to an ImmutableMap, so any calls to modify the map will fail. Since the entries never change, the hash code is
+ * computed once and cached, and so are the forms serializers encode it to; values are expected to be immutable as well.
  * @author Jason Rose
  * 
  */
 public abstract class AbstractImmutableMapEntity extends AbstractMapEntity {
 
+  /**
+   * The cached hash code, or 0 if it hasn't been computed yet. Racy single-check, as in String: every thread computes the same value.
+   */
+  private int hash;
+
+  /**
+   * Encoded forms cached by serializers, as alternating format keys and forms. Copy-on-write; a racing update may drop another thread's form, which only costs
+   * encoding it again.
+   */
+  private volatile Object[] encodedForms;
+
   public AbstractImmutableMapEntity(final Map<String, Object> source) {
     super(ImmutableMap.copyOf(source));
   }
+
+  AbstractImmutableMapEntity(final CompactMap fields) {
+    super(adopt(fields));
+  }
+
+  AbstractImmutableMapEntity(final PersistentMap fields) {
+    super(adopt(fields));
+  }
+
+  /**
+   * Compares this entity to another Map, short-circuiting on identity, on mismatched cached hash codes and on mismatched sizes before comparing entries.
+   */
+  @Override
+  public boolean equals(final Object object) {
+    if( object == this ) {
+      return true;
+    }
+    if( !(object instanceof Map) ) {
+      return false;
+    }
+    if( object instanceof AbstractImmutableMapEntity ) {
+      final int otherHash = ((AbstractImmutableMapEntity) object).hash;
+      if( hash != 0 && otherHash != 0 && hash != otherHash ) {
+        return false;
+      }
+    }
+    if( size() != ((Map<?, ?>) object).size() ) {
+      return false;
+    }
+    return super.equals(object);
+  }
+
+  /**
+   * Returns the form a serializer cached for this entity under the given format key, such as its encoded bytes.
+   * @param format The serializer's format key.
+   * @return The cached form, or null if there isn't one.
+   */
+  public final Object getEncodedForm(final Object format) {
+    final Object[] forms = encodedForms;
+    if( forms != null ) {
+      for( int i = 0; i < forms.length; i += 2 ) {
+        if( forms[i] == format ) {
+          return forms[i + 1];
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Caches a form of this entity under the given format key, replacing any earlier one. Since the entity never changes, serializers may reuse the form for as
+   * long as the entity lives, such as splicing its encoded bytes into every response that includes it.
+   * @param format The serializer's format key, compared by identity.
+   * @param form The form to cache.
+   */
+  public final void setEncodedForm(final Object format, final Object form) {
+    Preconditions.checkNotNull(format);
+    Preconditions.checkNotNull(form);
+    final Object[] forms = encodedForms;
+    if( forms != null ) {
+      for( int i = 0; i < forms.length; i += 2 ) {
+        if( forms[i] == format ) {
+          final Object[] updated = forms.clone();
+          updated[i + 1] = form;
+          encodedForms = updated;
+          return;
+        }
+      }
+    }
+    final Object[] updated = forms == null ? new Object[2] : Arrays.copyOf(forms, forms.length + 2);
+    updated[updated.length - 2] = format;
+    updated[updated.length - 1] = form;
+    encodedForms = updated;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = hash;
+    if( result == 0 ) {
+      result = super.hashCode();
+      hash = result;
+    }
+    return result;
+  }
 }
@@ -15,16 +15,28 @@
  */
 package com.praxissoftware.rest.core;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.SortedMap;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 
 /**
  * An AbstractMapEntity is a bean that presents the API of a Map. It allows libraries to interact with subclasses either as the subclass type or as a Map type to facilitate reuse.
+ * <p>
+ * Numeric and boolean fields can be stored and read without boxing through putLong(), putInt(), putDouble(), putBoolean() and getLong(), getInt(),
+ * getDouble(), getBoolean(). Entities backed by a plain HashMap keep such values unboxed in a side table, and the Map view boxes them on the way out;
+ * entities with ordered or immutable maps simply store them boxed, so their order and immutability are unaffected. Map.put() is untouched, so a boxed value
+ * keeps its exact type.
  * 
  * @see <a href="http://www.infoq.com/presentations/Simple-Made-Easy">Data is data</a>
  * @author Jason Rose
@@ -32,50 +44,164 @@ import com.google.common.collect.Maps;
  */
 public abstract class AbstractMapEntity implements Map<String, Object> {
 
+  /**
+   * A map whose ownership is being handed to an entity.
+   * @see AbstractMapEntity#adopt(Map)
+   */
+  public static final class Adopted {
+    private final Map<String, Object> map;
+
+    private Adopted(final Map<String, Object> map) {
+      this.map = Preconditions.checkNotNull(map);
+    }
+  }
+
   private final Map<String, Object> delegate;
+  /** Whether the delegate is unordered, so unboxed values may live in a side table without changing iteration order. */
+  private final boolean unordered;
+  /** The unboxed values. A key is either here or in the delegate, never both. Created on first use. */
+  private PrimitiveStore primitives;
+  private Map<String, Object> merged;
 
   public AbstractMapEntity() {
-    this(Maps.<String, Object> newHashMap());
+    delegate = Maps.newHashMap();
+    unordered = true;
+    record(EntitySource.EMPTY, 0);
+  }
+
+  /**
+   * Creates an empty entity whose map is sized to hold the expected number of entries without rehashing.
+   * @param expectedSize The number of entries the entity is expected to hold.
+   */
+  public AbstractMapEntity(final int expectedSize) {
+    delegate = Maps.newHashMapWithExpectedSize(expectedSize);
+    unordered = true;
+    record(EntitySource.EMPTY, 0);
+  }
+
+  /**
+   * Creates an empty entity whose fields iterate, and serialize, in the given order.
+   * @param order The order of the entity's fields.
+   */
+  public AbstractMapEntity(final FieldOrder order) {
+    delegate = order.newMap(0);
+    unordered = order == FieldOrder.HASHED;
+    record(EntitySource.EMPTY, 0);
+  }
+
+  /**
+   * Creates an entity with a copy of the source's fields, which iterate, and serialize, in the given order. In insertion order, the copy keeps the source's
+   * iteration order.
+   * @param order The order of the entity's fields.
+   * @param source The fields to copy.
+   */
+  public AbstractMapEntity(final FieldOrder order, final Map<String, Object> source) {
+    delegate = order.newMap(source.size());
+    delegate.putAll(source);
+    unordered = order == FieldOrder.HASHED;
+    record(EntitySource.ORDERED_COPY, delegate.size());
   }
 
+  /**
+   * Creates an entity with a copy of the source's fields. The copy is a TreeMap if the source is sorted and a HashMap otherwise, unless the source is an
+   * ImmutableMap, which is used as is. Use the constructors that take a FieldOrder for a predictable order without the cost of a TreeMap.
+   * @param source The fields to copy.
+   */
   public AbstractMapEntity(final Map<String, Object> source) {
+    final EntitySource kind;
     if( source instanceof ImmutableMap ) {
       delegate = source;
+      kind = EntitySource.SHARED;
     } else if( source instanceof SortedMap ) {
       delegate = Maps.newTreeMap((SortedMap<String, Object>) source);
+      kind = EntitySource.SORTED_COPY;
     } else {
       delegate = Maps.newHashMap(source);
+      kind = EntitySource.HASH_COPY;
     }
+    unordered = delegate.getClass() == HashMap.class;
+    record(kind, delegate.size());
+  }
+
+  /**
+   * Creates an entity that delegates to the adopted map itself rather than to a defensive copy of it.
+   * @param source The map to delegate to.
+   * @see #adopt(Map)
+   */
+  public AbstractMapEntity(final Adopted source) {
+    delegate = source.map;
+    unordered = delegate.getClass() == HashMap.class;
+    record(EntitySource.ADOPTED, delegate.size());
+  }
+
+  /**
+   * Hands ownership of the map to the entity being constructed, so the entity uses it without copying: <code>super(adopt(map))</code>. The caller must not
+   * keep or share any reference to the map afterwards, and the map should not hold null values, since the entity will never see them put.
+   * @param map The map to hand over.
+   * @return The map, marked for adoption.
+   */
+  public static Adopted adopt(final Map<String, Object> map) {
+    return new Adopted(map);
+  }
+
+  private static void record(final EntitySource source, final int size) {
+    final EntityMetrics metrics = EntityInstrumentation.current();
+    if( metrics != null ) {
+      metrics.entityCreated(source, size);
+    }
+  }
+
+  /**
+   * Returns the map this entity delegates to, for subclasses in this package that know its concrete type. Unboxed values are not in it.
+   * @return The delegate map.
+   */
+  Map<String, Object> delegate() {
+    return delegate;
   }
 
   @Override
   public void clear() {
     delegate.clear();
+    if( primitives != null ) {
+      primitives.clear();
+    }
   }
 
   @Override
   public boolean containsKey(final Object arg0) {
-    return delegate.containsKey(arg0);
+    return primitiveIndex(arg0) >= 0 || delegate.containsKey(arg0);
   }
 
   @Override
   public boolean containsValue(final Object arg0) {
-    return delegate.containsValue(arg0);
+    return delegate.containsValue(arg0) || hasPrimitives() && view().containsValue(arg0);
   }
 
   @Override
   public Set<Map.Entry<String, Object>> entrySet() {
-    return delegate.entrySet();
+    return view().entrySet();
   }
 
   @Override
   public boolean equals(final Object object) {
-    return delegate.equals(object);
+    return hasPrimitives() ? view().equals(object) : delegate.equals(object);
   }
 
   @Override
   public Object get(final Object arg0) {
-    return delegate.get(arg0);
+    final int index = primitiveIndex(arg0);
+    return index >= 0 ? primitives.box(index) : delegate.get(arg0);
+  }
+
+  /**
+   * Returns the value of a field, checked against the field's type or converted to it. Schema-backed entities read it straight from its slot, and entities
+   * in a FieldOrder find it with the field's precomputed hash.
+   * @param field The field to read.
+   * @return The value, or null if the field has none.
+   * @throws ClassCastException If the value isn't of the field's type and the field has no converter, or the converter can't convert it.
+   */
+  public <T> T get(final Field<T> field) {
+    return checkedCast(field, fieldValue(field));
   }
 
   /**
@@ -88,19 +214,109 @@ public abstract class AbstractMapEntity implements Map<String, Object> {
     return (T) get(key);
   }
 
+  /**
+   * Returns the boolean value of the key without boxing it.
+   * @param key The key to look for a value to.
+   * @return The value of the key.
+   * @throws NullPointerException If the key has no value.
+   * @throws ClassCastException If the value isn't a Boolean.
+   */
+  public boolean getBoolean(final String key) {
+    return booleanValue(key, false, true);
+  }
+
+  /**
+   * Returns the boolean value of the key without boxing it.
+   * @param key The key to look for a value to.
+   * @param defaultValue The value to return if the key has no value.
+   * @return The value of the key, or the default.
+   * @throws ClassCastException If the value isn't a Boolean.
+   */
+  public boolean getBoolean(final String key, final boolean defaultValue) {
+    return booleanValue(key, defaultValue, false);
+  }
+
+  /**
+   * Returns the numeric value of the key as a double, without boxing it.
+   * @param key The key to look for a value to.
+   * @return The value of the key.
+   * @throws NullPointerException If the key has no value.
+   * @throws ClassCastException If the value isn't a Number.
+   */
+  public double getDouble(final String key) {
+    return doubleValue(key, 0, true);
+  }
+
+  /**
+   * Returns the numeric value of the key as a double, without boxing it.
+   * @param key The key to look for a value to.
+   * @param defaultValue The value to return if the key has no value.
+   * @return The value of the key, or the default.
+   * @throws ClassCastException If the value isn't a Number.
+   */
+  public double getDouble(final String key, final double defaultValue) {
+    return doubleValue(key, defaultValue, false);
+  }
+
+  /**
+   * Returns the numeric value of the key as an int, without boxing it.
+   * @param key The key to look for a value to.
+   * @return The value of the key.
+   * @throws NullPointerException If the key has no value.
+   * @throws ClassCastException If the value isn't a Number.
+   * @throws IllegalArgumentException If the value doesn't fit in an int.
+   */
+  public int getInt(final String key) {
+    return Ints.checkedCast(longValue(key, 0, true));
+  }
+
+  /**
+   * Returns the numeric value of the key as an int, without boxing it.
+   * @param key The key to look for a value to.
+   * @param defaultValue The value to return if the key has no value.
+   * @return The value of the key, or the default.
+   * @throws ClassCastException If the value isn't a Number.
+   * @throws IllegalArgumentException If the value doesn't fit in an int.
+   */
+  public int getInt(final String key, final int defaultValue) {
+    return Ints.checkedCast(longValue(key, defaultValue, false));
+  }
+
+  /**
+   * Returns the numeric value of the key as a long, without boxing it.
+   * @param key The key to look for a value to.
+   * @return The value of the key.
+   * @throws NullPointerException If the key has no value.
+   * @throws ClassCastException If the value isn't a Number.
+   */
+  public long getLong(final String key) {
+    return longValue(key, 0, true);
+  }
+
+  /**
+   * Returns the numeric value of the key as a long, without boxing it.
+   * @param key The key to look for a value to.
+   * @param defaultValue The value to return if the key has no value.
+   * @return The value of the key, or the default.
+   * @throws ClassCastException If the value isn't a Number.
+   */
+  public long getLong(final String key, final long defaultValue) {
+    return longValue(key, defaultValue, false);
+  }
+
   @Override
   public int hashCode() {
-    return delegate.hashCode();
+    return hasPrimitives() ? view().hashCode() : delegate.hashCode();
   }
 
   @Override
   public boolean isEmpty() {
-    return delegate.isEmpty();
+    return size() == 0;
   }
 
   @Override
   public Set<String> keySet() {
-    return delegate.keySet();
+    return view().keySet();
   }
 
   @Override
@@ -109,13 +325,82 @@ public abstract class AbstractMapEntity implements Map<String, Object> {
     if( value == null ) {
       output = remove(key);
     } else {
-      output = delegate.put(key, value);
+      final Object primitive = removePrimitive(key);
+      final Object previous = delegate.put(key, value);
+      output = primitive != null ? primitive : previous;
     }
     return output;
   }
 
+  /**
+   * Stores the value of a field. The compiler checks the value against the field's type.
+   * @param field The field to store the value under.
+   * @param value The value, or null to remove the field.
+   * @return The previous value of the field's key, unchecked.
+   */
+  public <T> Object put(final Field<T> field, final T value) {
+    return put(field.getName(), (Object) value);
+  }
+
+  /**
+   * Stores a boolean value without boxing it. The previous value isn't returned, since that would mean boxing it. The Map view shows it as a Boolean.
+   * @param key The key to store the value under.
+   * @param value The value.
+   */
+  public void putBoolean(final String key, final boolean value) {
+    if( unordered ) {
+      putPrimitive(key, value ? 1 : 0, PrimitiveStore.BOOLEAN);
+    } else {
+      put(key, (Object) Boolean.valueOf(value));
+    }
+  }
+
+  /**
+   * Stores a double value without boxing it. The previous value isn't returned, since that would mean boxing it. The Map view shows it as a Double.
+   * @param key The key to store the value under.
+   * @param value The value.
+   */
+  public void putDouble(final String key, final double value) {
+    if( unordered ) {
+      putPrimitive(key, Double.doubleToRawLongBits(value), PrimitiveStore.DOUBLE);
+    } else {
+      put(key, (Object) Double.valueOf(value));
+    }
+  }
+
+  /**
+   * Stores an int value without boxing it. The previous value isn't returned, since that would mean boxing it. The Map view shows it as an Integer.
+   * @param key The key to store the value under.
+   * @param value The value.
+   */
+  public void putInt(final String key, final int value) {
+    if( unordered ) {
+      putPrimitive(key, value, PrimitiveStore.INT);
+    } else {
+      put(key, (Object) Integer.valueOf(value));
+    }
+  }
+
+  /**
+   * Stores a long value without boxing it. The previous value isn't returned, since that would mean boxing it. The Map view shows it as a Long.
+   * @param key The key to store the value under.
+   * @param value The value.
+   */
+  public void putLong(final String key, final long value) {
+    if( unordered ) {
+      putPrimitive(key, value, PrimitiveStore.LONG);
+    } else {
+      put(key, (Object) Long.valueOf(value));
+    }
+  }
+
   @Override
   public void putAll(final Map<? extends String, ? extends Object> arg0) {
+    // ordered delegates never hold unboxed values, so they can take the whole map at once
+    if( delegate instanceof OrderedArrayMap ) {
+      ((OrderedArrayMap) delegate).putAllRemovingNulls(arg0);
+      return;
+    }
     for( final Map.Entry<? extends String, ? extends Object> entry : arg0.entrySet() ) {
       put(entry.getKey(), entry.getValue());
     }
@@ -123,21 +408,284 @@ public abstract class AbstractMapEntity implements Map<String, Object> {
 
   @Override
   public Object remove(final Object arg0) {
-    return delegate.remove(arg0);
+    final Object primitive = removePrimitive(arg0);
+    return primitive != null ? primitive : delegate.remove(arg0);
   }
 
   @Override
   public int size() {
-    return delegate.size();
+    return primitives == null ? delegate.size() : delegate.size() + primitives.size();
   }
 
   @Override
   public String toString() {
-    return delegate.toString();
+    return hasPrimitives() ? view().toString() : delegate.toString();
   }
 
   @Override
   public Collection<Object> values() {
-    return delegate.values();
+    return view().values();
+  }
+
+  private boolean booleanValue(final String key, final boolean defaultValue, final boolean required) {
+    final int index = primitiveIndex(key);
+    if( index >= 0 ) {
+      if( primitives.kindAt(index) != PrimitiveStore.BOOLEAN ) {
+        throw wrongType(key, primitives.box(index), "Boolean");
+      }
+      return primitives.valueAt(index) != 0;
+    }
+    final Object value = delegate.get(key);
+    if( value instanceof Boolean ) {
+      return ((Boolean) value).booleanValue();
+    }
+    checkMissing(key, value, "Boolean", required);
+    return defaultValue;
+  }
+
+  private double doubleValue(final String key, final double defaultValue, final boolean required) {
+    final int index = primitiveIndex(key);
+    if( index >= 0 ) {
+      final long bits = primitives.valueAt(index);
+      switch( primitives.kindAt(index) ) {
+      case PrimitiveStore.DOUBLE:
+        return Double.longBitsToDouble(bits);
+      case PrimitiveStore.BOOLEAN:
+        throw wrongType(key, primitives.box(index), "Number");
+      default:
+        return bits;
+      }
+    }
+    final Object value = delegate.get(key);
+    if( value instanceof Number ) {
+      return ((Number) value).doubleValue();
+    }
+    checkMissing(key, value, "Number", required);
+    return defaultValue;
+  }
+
+  private long longValue(final String key, final long defaultValue, final boolean required) {
+    final int index = primitiveIndex(key);
+    if( index >= 0 ) {
+      final long bits = primitives.valueAt(index);
+      switch( primitives.kindAt(index) ) {
+      case PrimitiveStore.DOUBLE:
+        return (long) Double.longBitsToDouble(bits);
+      case PrimitiveStore.BOOLEAN:
+        throw wrongType(key, primitives.box(index), "Number");
+      default:
+        return bits;
+      }
+    }
+    final Object value = delegate.get(key);
+    if( value instanceof Number ) {
+      return ((Number) value).longValue();
+    }
+    checkMissing(key, value, "Number", required);
+    return defaultValue;
+  }
+
+  /**
+   * Throws unless the value is missing and a default may be used instead.
+   */
+  private void checkMissing(final String key, final Object value, final String expected, final boolean required) {
+    if( value != null ) {
+      throw wrongType(key, value, expected);
+    }
+    if( required ) {
+      throw new NullPointerException("no value for " + key);
+    }
+  }
+
+  /**
+   * Returns the value as the field's type, reporting a value it can't be read as to the installed metrics. AbstractFieldEntity reads through it as well.
+   */
+  static <T> T checkedCast(final Field<T> field, final Object value) {
+    if( value != null && !field.accepts(value) ) {
+      throw wrongType(field.getName(), value, field.getType().getName());
+    }
+    try {
+      return field.cast(value);
+    } catch( final ClassCastException e ) {
+      final EntityMetrics metrics = EntityInstrumentation.current();
+      if( metrics != null ) {
+        metrics.coercionFailed(field.getName());
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the exception for a typed read of a value of the wrong type, reporting the failure to the installed metrics.
+   */
+  private static ClassCastException wrongType(final String key, final Object value, final String expected) {
+    final EntityMetrics metrics = EntityInstrumentation.current();
+    if( metrics != null ) {
+      metrics.coercionFailed(key);
+    }
+    return new ClassCastException(key + " holds a " + value.getClass().getName() + ", not a " + expected);
+  }
+
+  private Object fieldValue(final Field<?> field) {
+    if( delegate instanceof CompactMap ) {
+      return ((CompactMap) delegate).get(field);
+    }
+    final int index = primitiveIndex(field.getName());
+    if( index >= 0 ) {
+      return primitives.box(index);
+    }
+    if( delegate instanceof OrderedArrayMap ) {
+      return ((OrderedArrayMap) delegate).get(field.getName(), field.hash());
+    }
+    return delegate.get(field.getName());
+  }
+
+  private boolean hasPrimitives() {
+    return primitives != null && primitives.size() > 0;
+  }
+
+  private int primitiveIndex(final Object key) {
+    return primitives == null ? -1 : primitives.indexOf(key);
+  }
+
+  private void putPrimitive(final String key, final long bits, final byte kind) {
+    Preconditions.checkNotNull(key);
+    if( primitives == null ) {
+      primitives = new PrimitiveStore();
+    }
+    delegate.remove(key);
+    primitives.put(key, bits, kind);
+  }
+
+  private Object removePrimitive(final Object key) {
+    return primitives == null ? null : primitives.remove(key);
+  }
+
+  /**
+   * Returns the Map that the views are taken from: the delegate itself, or a view merging it with the unboxed values if there can be any.
+   */
+  private Map<String, Object> view() {
+    if( !unordered ) {
+      return delegate;
+    }
+    Map<String, Object> result = merged;
+    if( result == null ) {
+      result = new MergedView();
+      merged = result;
+    }
+    return result;
+  }
+
+  /**
+   * The delegate's entries followed by the unboxed values, boxed as they are read.
+   */
+  private final class MergedView extends AbstractMap<String, Object> {
+    private Set<Map.Entry<String, Object>> entries;
+
+    @Override
+    public boolean containsKey(final Object key) {
+      return AbstractMapEntity.this.containsKey(key);
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+      Set<Map.Entry<String, Object>> result = entries;
+      if( result == null ) {
+        result = new AbstractSet<Map.Entry<String, Object>>() {
+          @Override
+          public Iterator<Map.Entry<String, Object>> iterator() {
+            return hasPrimitives() ? new MergedIterator() : delegate.entrySet().iterator();
+          }
+
+          @Override
+          public int size() {
+            return AbstractMapEntity.this.size();
+          }
+
+          @Override
+          public void clear() {
+            AbstractMapEntity.this.clear();
+          }
+        };
+        entries = result;
+      }
+      return result;
+    }
+
+    @Override
+    public Object get(final Object key) {
+      return AbstractMapEntity.this.get(key);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+      return AbstractMapEntity.this.put(key, value);
+    }
+
+    @Override
+    public Object remove(final Object key) {
+      return AbstractMapEntity.this.remove(key);
+    }
+
+    @Override
+    public int size() {
+      return AbstractMapEntity.this.size();
+    }
+  }
+
+  /**
+   * Iterates the delegate, then a snapshot of the unboxed keys, so removing through the iterator can't disturb the side table's probing order.
+   */
+  private final class MergedIterator implements Iterator<Map.Entry<String, Object>> {
+    private final Iterator<Map.Entry<String, Object>> first = delegate.entrySet().iterator();
+    private String[] keys;
+    private int index;
+    private boolean inFirst = true;
+
+    @Override
+    public boolean hasNext() {
+      if( first.hasNext() ) {
+        return true;
+      }
+      snapshot();
+      return index < keys.length;
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      if( first.hasNext() ) {
+        return first.next();
+      }
+      snapshot();
+      if( index == keys.length ) {
+        throw new NoSuchElementException();
+      }
+      inFirst = false;
+      final String key = keys[index++];
+      return Maps.immutableEntry(key, primitives.box(primitives.indexOf(key)));
+    }
+
+    @Override
+    public void remove() {
+      if( inFirst ) {
+        first.remove();
+      } else {
+        Preconditions.checkState(index > 0 && keys[index - 1] != null);
+        primitives.remove(keys[index - 1]);
+        keys[index - 1] = null;
+      }
+    }
+
+    private void snapshot() {
+      if( keys == null ) {
+        keys = new String[primitives.size()];
+        int count = 0;
+        for( int i = 0; i < primitives.capacity(); i++ ) {
+          if( primitives.keyAt(i) != null ) {
+            keys[count++] = primitives.keyAt(i);
+          }
+        }
+      }
+    }
   }
 }
@@ -17,26 +17,103 @@ package com.praxissoftware.rest.core;
 
 import java.util.List;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
 
 /**
- * This class is just a simple Representation, for uses where other properties aren't needed.
+ * This class is just a simple Representation, for uses where other properties aren't needed. Its links start out in a LinkList, so they can be looked up
+ * by rel without scanning them, and snapshotted for rendering on another thread without copying them.
  * @author Jason Rose
  */
 public class BasicRepresentation extends AbstractMapEntity implements Representation {
 
+  /** The representation's links. */
+  public static final Field<List<Link>> LINKS = Field.of("links", List.class);
+
   public BasicRepresentation() {
-    put("links", Lists.newArrayList());
+    put("links", new LinkList());
+  }
+
+  /**
+   * Creates a representation whose map is sized for the expected number of entries, including "links", so filling it never rehashes.
+   * @param expectedSize The number of entries the representation is expected to hold.
+   */
+  public BasicRepresentation(final int expectedSize) {
+    super(expectedSize);
+    put("links", new LinkList());
+  }
+
+  /**
+   * Creates a representation whose fields, starting with "links", iterate and serialize in the given order.
+   * @param order The order of the representation's fields.
+   */
+  public BasicRepresentation(final FieldOrder order) {
+    super(order);
+    put("links", new LinkList());
+  }
+
+  /**
+   * Returns the first link with the rel. The lookup goes through the LinkList's index if the links are in one, as they are by default and when they come
+   * from a Link.BatchBuilder; other lists are scanned.
+   * @param rel The rel to look for.
+   * @return The first link with the rel, or null if there isn't one.
+   */
+  public Link getLink(final String rel) {
+    final List<Link> links = getLinks();
+    if( links instanceof LinkList ) {
+      return ((LinkList) links).getLink(rel);
+    }
+    if( links != null ) {
+      for( final Link link : links ) {
+        if( link != null && rel.equals(link.getRel()) ) {
+          return link;
+        }
+      }
+    }
+    return null;
   }
 
   @Override
   public List<Link> getLinks() {
-    return getAndCoerce("links");
+    return get(LINKS);
+  }
+
+  /**
+   * Returns the links with the rel, in order. The lookup goes through the LinkList's index if the links are in one; other lists are scanned.
+   * @param rel The rel to look for.
+   * @return An immutable list of the links with the rel, which is empty if there are none.
+   */
+  public List<Link> getLinks(final String rel) {
+    final List<Link> links = getLinks();
+    if( links instanceof LinkList ) {
+      return ((LinkList) links).getLinks(rel);
+    }
+    final ImmutableList.Builder<Link> matches = ImmutableList.builder();
+    if( links != null ) {
+      for( final Link link : links ) {
+        if( link != null && rel.equals(link.getRel()) ) {
+          matches.add(link);
+        }
+      }
+    }
+    return matches.build();
+  }
+
+  /**
+   * Returns an immutable view of the links as they are now, which stays valid while the links go on changing. It costs nothing while the links are in a
+   * SnapshotList, as they are unless setLinks() replaced them; other lists are copied.
+   * @return The links, as they are now.
+   */
+  public List<Link> snapshotLinks() {
+    final List<Link> links = getLinks();
+    if( links instanceof SnapshotList ) {
+      return ((SnapshotList<Link>) links).snapshot();
+    }
+    return links == null ? ImmutableList.<Link> of() : ImmutableList.copyOf(links);
   }
 
   @Override
   public void setLinks(final List<Link> links) {
-    put("links", links);
+    put(LINKS, links);
   }
 
 }
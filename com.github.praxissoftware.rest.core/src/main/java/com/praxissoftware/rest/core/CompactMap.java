@@ -0,0 +1,356 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * An immutable Map that stores the values of a KeySchema's keys in a flat array, and any other keys in an overflow map. A null slot means the key is absent;
+ * like ImmutableMap, this map never holds null values. Entries iterate in schema order, followed by the overflow entries. A slot may hold a LazyUri, which is
+ * resolved whenever the value is read.
+ * <p>
+ * equals(), hashCode() and toString() don't fail on a LazyUri that isn't a valid URI. Two deferred URIs with the same raw form are equal without being
+ * parsed; otherwise URIs are hashed and compared as URIs, as the Map contract requires, and an invalid one only equals the same raw form.
+ * @author Jason Rose
+ */
+final class CompactMap extends AbstractMap<String, Object> {
+
+  private final KeySchema schema;
+  private final Object[] values;
+  private final ImmutableMap<String, Object> overflow;
+  private final int size;
+  private transient Set<Map.Entry<String, Object>> entrySet;
+
+  /**
+   * Creates the map. It takes ownership of the values array, which must not be modified afterwards.
+   * @param schema The schema that maps keys to slots.
+   * @param values The slot values, indexed by the schema. Must be the same length as the schema.
+   * @param overflow The entries whose keys are not in the schema.
+   */
+  CompactMap(final KeySchema schema, final Object[] values, final ImmutableMap<String, Object> overflow) {
+    this.schema = schema;
+    this.values = values;
+    this.overflow = overflow;
+    int count = overflow.size();
+    for( final Object value : values ) {
+      if( value != null ) {
+        count++;
+      }
+    }
+    size = count;
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public boolean containsValue(final Object value) {
+    if( value == null ) {
+      return false;
+    }
+    for( int i = 0; i < values.length; i++ ) {
+      if( value.equals(slot(i)) ) {
+        return true;
+      }
+    }
+    return overflow.containsValue(value);
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    Set<Map.Entry<String, Object>> result = entrySet;
+    if( result == null ) {
+      result = new EntrySet();
+      entrySet = result;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object object) {
+    if( object == this ) {
+      return true;
+    }
+    final Object other = object instanceof Link ? ((Link) object).delegate() : object;
+    if( !(other instanceof Map) ) {
+      return false;
+    }
+    final Map<?, ?> map = (Map<?, ?>) other;
+    if( map.size() != size ) {
+      return false;
+    }
+    if( other instanceof CompactMap && ((CompactMap) other).schema == schema ) {
+      final CompactMap compact = (CompactMap) other;
+      for( int i = 0; i < values.length; i++ ) {
+        if( values[i] == null ? compact.values[i] != null : !sameValue(values[i], compact.values[i]) ) {
+          return false;
+        }
+      }
+      return overflow.equals(compact.overflow);
+    }
+    for( int i = 0; i < values.length; i++ ) {
+      if( values[i] != null && !sameValue(values[i], map.get(schema.keyAt(i))) ) {
+        return false;
+      }
+    }
+    for( final Map.Entry<String, Object> entry : overflow.entrySet() ) {
+      if( !entry.getValue().equals(map.get(entry.getKey())) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Object get(final Object key) {
+    final int index = schema.indexOf(key);
+    if( index >= 0 ) {
+      return slot(index);
+    }
+    return key == null ? null : overflow.get(key);
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = overflow.hashCode();
+    for( int i = 0; i < values.length; i++ ) {
+      if( values[i] != null ) {
+        hash += schema.keyAt(i).hashCode() ^ hashOf(values[i]);
+      }
+    }
+    return hash;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Object put(final String key, final Object value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void putAll(final Map<? extends String, ? extends Object> map) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Object remove(final Object key) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder().append('{');
+    for( int i = 0; i < values.length; i++ ) {
+      if( values[i] != null ) {
+        result.append(result.length() == 1 ? "" : ", ").append(schema.keyAt(i)).append('=').append(values[i]);
+      }
+    }
+    for( final Map.Entry<String, Object> entry : overflow.entrySet() ) {
+      result.append(result.length() == 1 ? "" : ", ").append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    return result.append('}').toString();
+  }
+
+  /**
+   * Returns the value of a field's key, finding its slot through the field's binding rather than by scanning the schema.
+   * @param field The field to read.
+   * @return The field's value, or null if the key is absent.
+   */
+  Object get(final Field<?> field) {
+    final int index = field.slotIn(schema);
+    return index >= 0 ? slot(index) : overflow.get(field.getName());
+  }
+
+  /**
+   * Returns the value of a slot without resolving it, so a LazyUri stays unparsed.
+   * @param index The slot index.
+   * @return The slot's value, or null if the key is absent.
+   */
+  Object rawSlot(final int index) {
+    return values[index];
+  }
+
+  /**
+   * Returns a copy of this map with one slot replaced. The copy shares the schema and the overflow map, so only the slot array is copied.
+   * @param index The slot index.
+   * @param value The slot's new value, or null to leave the key out.
+   * @return The copy.
+   */
+  CompactMap withSlot(final int index, final Object value) {
+    final Object[] copy = values.clone();
+    copy[index] = value;
+    return new CompactMap(schema, copy, overflow);
+  }
+
+  private Object slot(final int index) {
+    final Object value = values[index];
+    return value instanceof LazyUri ? ((LazyUri) value).get() : value;
+  }
+
+  /**
+   * Returns the URI a slot value stands for, or null if it's a LazyUri whose raw form isn't a valid URI.
+   */
+  private static URI resolve(final Object value) {
+    if( value instanceof URI ) {
+      return (URI) value;
+    }
+    try {
+      return ((LazyUri) value).get();
+    } catch( final IllegalArgumentException e ) {
+      return null;
+    }
+  }
+
+  private static int hashOf(final Object value) {
+    if( value instanceof LazyUri ) {
+      final URI uri = resolve(value);
+      return uri == null ? value.toString().hashCode() : uri.hashCode();
+    }
+    return value.hashCode();
+  }
+
+  /**
+   * Compares a raw slot value to another value, without parsing when both are deferred URIs with the same raw form.
+   */
+  private static boolean sameValue(final Object value, final Object other) {
+    if( !(value instanceof LazyUri) ) {
+      return other instanceof LazyUri ? sameValue(other, value) : value.equals(other);
+    }
+    if( other instanceof LazyUri && value.toString().equals(other.toString()) ) {
+      return true;
+    }
+    if( !(other instanceof LazyUri || other instanceof URI) ) {
+      return false;
+    }
+    final URI uri = resolve(value);
+    return uri != null && uri.equals(resolve(other));
+  }
+
+  /**
+   * An entry that reads its slot on demand, so walking the entries to reach the overflow doesn't resolve deferred values.
+   */
+  private final class SlotEntry implements Map.Entry<String, Object> {
+    private final int index;
+
+    SlotEntry(final int index) {
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      if( !(object instanceof Map.Entry) ) {
+        return false;
+      }
+      final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+      return getKey().equals(entry.getKey()) && sameValue(values[index], entry instanceof SlotEntry ? ((SlotEntry) entry).rawValue() : entry.getValue());
+    }
+
+    @Override
+    public String getKey() {
+      return schema.keyAt(index);
+    }
+
+    @Override
+    public Object getValue() {
+      return slot(index);
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ hashOf(values[index]);
+    }
+
+    Object rawValue() {
+      return values[index];
+    }
+
+    @Override
+    public Object setValue(final Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + values[index];
+    }
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+      return new UnmodifiableIterator<Map.Entry<String, Object>>() {
+        private final Iterator<Map.Entry<String, Object>> rest = overflow.entrySet().iterator();
+        private int index = advance(0);
+
+        @Override
+        public boolean hasNext() {
+          return index < values.length || rest.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+          if( index < values.length ) {
+            final Map.Entry<String, Object> entry = new SlotEntry(index);
+            index = advance(index + 1);
+            return entry;
+          }
+          if( rest.hasNext() ) {
+            return rest.next();
+          }
+          throw new NoSuchElementException();
+        }
+
+        private int advance(final int from) {
+          int i = from;
+          while( i < values.length && values[i] == null ) {
+            i++;
+          }
+          return i;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
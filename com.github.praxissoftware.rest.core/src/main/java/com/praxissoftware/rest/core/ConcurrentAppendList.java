@@ -0,0 +1,114 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An append-only List that many threads can add to at once without a lock. Each add() reserves an index with a compare-and-set and writes into a bucket of
+ * a fixed bucket table, so existing elements are never copied or moved. Buckets double in size, so the table never needs to grow.
+ * <p>
+ * Elements may be read and replaced through set() concurrently with appends, and iterators never throw ConcurrentModificationException. Nulls, inserts and
+ * removals are not supported.
+ * @author Jason Rose
+ */
+public class ConcurrentAppendList<E> extends AbstractList<E> implements RandomAccess {
+
+  private static final int FIRST_BUCKET_BITS = 3;
+  private static final int FIRST_BUCKET_SIZE = 1 << FIRST_BUCKET_BITS;
+
+  private final AtomicReferenceArray<AtomicReferenceArray<E>> buckets = new AtomicReferenceArray<AtomicReferenceArray<E>>(Integer.SIZE - FIRST_BUCKET_BITS);
+  private final AtomicInteger reserved = new AtomicInteger();
+
+  public ConcurrentAppendList() {
+    super();
+  }
+
+  public ConcurrentAppendList(final Collection<? extends E> source) {
+    addAll(source);
+  }
+
+  @Override
+  public boolean add(final E element) {
+    Preconditions.checkNotNull(element);
+    // everything that can fail happens before the index is reserved, since readers wait for every reserved index to be written
+    int index;
+    AtomicReferenceArray<E> array;
+    do {
+      index = reserved.get();
+      Preconditions.checkState(index < Integer.MAX_VALUE - FIRST_BUCKET_SIZE, "list is full");
+      array = bucket(bucketOf(index + FIRST_BUCKET_SIZE));
+    } while( !reserved.compareAndSet(index, index + 1) );
+    final int position = index + FIRST_BUCKET_SIZE;
+    array.set(position - Integer.highestOneBit(position), element);
+    return true;
+  }
+
+  /**
+   * Returns the element at the index. If another thread has reserved the index but not written it yet, this waits for the write.
+   */
+  @Override
+  public E get(final int index) {
+    Preconditions.checkElementIndex(index, size());
+    final int position = index + FIRST_BUCKET_SIZE;
+    final int bucket = bucketOf(position);
+    AtomicReferenceArray<E> array;
+    while( (array = buckets.get(bucket)) == null ) {
+      Thread.yield();
+    }
+    final int offset = position - Integer.highestOneBit(position);
+    E element;
+    while( (element = array.get(offset)) == null ) {
+      Thread.yield();
+    }
+    return element;
+  }
+
+  @Override
+  public E set(final int index, final E element) {
+    Preconditions.checkNotNull(element);
+    get(index);
+    final int position = index + FIRST_BUCKET_SIZE;
+    return buckets.get(bucketOf(position)).getAndSet(position - Integer.highestOneBit(position), element);
+  }
+
+  @Override
+  public int size() {
+    return reserved.get();
+  }
+
+  /**
+   * Returns the bucket, allocating it if no thread has yet.
+   */
+  private AtomicReferenceArray<E> bucket(final int bucket) {
+    final AtomicReferenceArray<E> array = buckets.get(bucket);
+    if( array != null ) {
+      return array;
+    }
+    buckets.compareAndSet(bucket, null, new AtomicReferenceArray<E>(FIRST_BUCKET_SIZE << bucket));
+    return buckets.get(bucket);
+  }
+
+  private static int bucketOf(final int position) {
+    return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(position) - FIRST_BUCKET_BITS;
+  }
+}
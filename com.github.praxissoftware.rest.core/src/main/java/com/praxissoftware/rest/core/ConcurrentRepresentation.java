@@ -0,0 +1,43 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.List;
+
+/**
+ * A Representation that many threads may enrich at once, for instance an aggregate filled in by parallel calls. Its links live in a ConcurrentAppendList, so
+ * threads append to them without contending on a lock.
+ * @author Jason Rose
+ */
+public class ConcurrentRepresentation extends AbstractConcurrentMapEntity implements Representation {
+
+  public ConcurrentRepresentation() {
+    put("links", new ConcurrentAppendList<Link>());
+  }
+
+  @Override
+  public List<Link> getLinks() {
+    return get(BasicRepresentation.LINKS);
+  }
+
+  /**
+   * Sets the links. Lists other than a ConcurrentAppendList are copied into one, so the links stay safe to append to concurrently.
+   */
+  @Override
+  public void setLinks(final List<Link> links) {
+    put("links", links == null || links instanceof ConcurrentAppendList ? links : new ConcurrentAppendList<Link>(links));
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+/**
+ * Computes a 128-bit digest of the content of an entity tree, such as a Representation and its Links, without serializing it, for strong ETags.
+ * <p>
+ * The digest depends only on what the tree would serialize to, not on how it's stored: map members are combined in an order-independent way, so entities
+ * with equal fields have equal digests whatever their FieldOrder, and integral numbers digest alike whatever their boxed type. Null map members are left out,
+ * as entities never hold them. Links digest their raw href, so no URI is parsed. Immutable entities cache their digest, so a tree that shares Links with
+ * earlier trees only hashes its own fields.
+ * <p>
+ * The digest is MurmurHash3, which is stable across processes but not cryptographic; don't use it where an adversary could benefit from a collision.
+ * Streamed values can't be digested without consuming them, so they're rejected.
+ * @author Jason Rose
+ */
+public final class ContentDigest {
+
+  private static final HashFunction FUNCTION = Hashing.murmur3_128();
+
+  private static final byte NULL = 0;
+  private static final byte FALSE = 1;
+  private static final byte TRUE = 2;
+  private static final byte INTEGER = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte DECIMAL = 5;
+  private static final byte STRING = 6;
+  private static final byte MAP = 7;
+  private static final byte LIST = 8;
+  private static final byte END = 9;
+
+  private ContentDigest() {}
+
+  /**
+   * Returns the digest of the value.
+   * @param value The value, typically a Representation.
+   * @return The digest.
+   * @throws IllegalArgumentException If the tree holds a Streamed value.
+   */
+  public static HashCode of(final Object value) {
+    final Hasher hasher = FUNCTION.newHasher();
+    feed(value, hasher);
+    return hasher.hash();
+  }
+
+  /**
+   * Returns a strong ETag for the value: its digest in hex, quoted.
+   * @param value The value, typically a Representation.
+   * @return The quoted ETag.
+   * @throws IllegalArgumentException If the tree holds a Streamed value.
+   */
+  public static String etag(final Object value) {
+    return '"' + of(value).toString() + '"';
+  }
+
+  /**
+   * Returns the map's digest as two longs, which is also the form immutable entities cache it in.
+   */
+  private static long[] ofMap(final Map<?, ?> map) {
+    if( map instanceof AbstractImmutableMapEntity ) {
+      final AbstractImmutableMapEntity entity = (AbstractImmutableMapEntity) map;
+      final Object cached = entity.getEncodedForm(ContentDigest.class);
+      if( cached instanceof long[] ) {
+        return (long[]) cached;
+      }
+      final long[] digest = combine(map);
+      entity.setEncodedForm(ContentDigest.class, digest);
+      return digest;
+    }
+    return combine(map);
+  }
+
+  /**
+   * Digests each member on its own and adds the 128-bit results, which makes the combination independent of iteration order.
+   */
+  private static long[] combine(final Map<?, ?> map) {
+    final String href = map instanceof Link ? ((Link) map).getRawHref() : null;
+    long low = 0;
+    long high = 0;
+    for( final Map.Entry<?, ?> entry : map.entrySet() ) {
+      final String key = String.valueOf(entry.getKey());
+      // reading a Link's href entry would parse it
+      final Object value = href != null && key.equals("href") ? href : entry.getValue();
+      if( value == null ) {
+        continue;
+      }
+      final Hasher hasher = FUNCTION.newHasher();
+      hasher.putInt(key.length()).putString(key);
+      feed(value, hasher);
+      final byte[] bytes = hasher.hash().asBytes();
+      low += Longs.fromBytes(bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]);
+      high += Longs.fromBytes(bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13], bytes[14], bytes[15]);
+    }
+    return new long[] { low, high };
+  }
+
+  private static void feed(final Object value, final Hasher hasher) {
+    if( value == null ) {
+      hasher.putByte(NULL);
+    } else if( value instanceof String ) {
+      putString((String) value, hasher);
+    } else if( value instanceof Map ) {
+      final long[] digest = ofMap((Map<?, ?>) value);
+      hasher.putByte(MAP).putLong(digest[0]).putLong(digest[1]);
+    } else if( value instanceof Streamed ) {
+      throw new IllegalArgumentException("streamed values can only be digested by encoding them");
+    } else if( value instanceof Iterable ) {
+      hasher.putByte(LIST);
+      for( final Object element : (Iterable<?>) value ) {
+        feed(element, hasher);
+      }
+      hasher.putByte(END);
+    } else if( value instanceof Object[] ) {
+      hasher.putByte(LIST);
+      for( final Object element : (Object[]) value ) {
+        feed(element, hasher);
+      }
+      hasher.putByte(END);
+    } else if( value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte ) {
+      hasher.putByte(INTEGER).putLong(((Number) value).longValue());
+    } else if( value instanceof BigInteger && ((BigInteger) value).bitLength() < 64 ) {
+      hasher.putByte(INTEGER).putLong(((BigInteger) value).longValue());
+    } else if( value instanceof BigDecimal || value instanceof BigInteger ) {
+      hasher.putByte(DECIMAL);
+      putString(value.toString(), hasher);
+    } else if( value instanceof Number ) {
+      hasher.putByte(DOUBLE).putDouble(((Number) value).doubleValue());
+    } else if( value instanceof Boolean ) {
+      hasher.putByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+    } else {
+      // serializers write anything else as its toString(), so a URI digests like its string form
+      putString(value.toString(), hasher);
+    }
+  }
+
+  private static void putString(final String value, final Hasher hasher) {
+    hasher.putByte(STRING).putInt(value.length()).putString(value);
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * One page of a cursor-paged collection. It passes through at most limit items of the source and remembers the cursors of the first and last ones, so the
+ * next and prev links can be generated once the page has been streamed, without holding the page in memory.
+ * @param <T> The item type.
+ * @see StreamingRepresentation#page(String, CursorPage)
+ * @author Jason Rose
+ */
+public final class CursorPage<T> extends UnmodifiableIterator<T> {
+
+  private final Iterator<? extends T> source;
+  private final int limit;
+  private final Function<? super T, String> cursor;
+  private UriTemplate nextTemplate;
+  private UriTemplate prevTemplate;
+  private int count;
+  private String firstCursor;
+  private T last;
+
+  /**
+   * Creates the page.
+   * @param source The items from the current position on. Only limit items, plus a lookahead of one, are pulled from it.
+   * @param limit The maximum number of items on the page.
+   * @param cursor Returns the opaque position of an item.
+   */
+  public CursorPage(final Iterator<? extends T> source, final int limit, final Function<? super T, String> cursor) {
+    Preconditions.checkArgument(limit > 0, "limit must be positive: %s", limit);
+    this.source = Preconditions.checkNotNull(source);
+    this.limit = limit;
+    this.cursor = Preconditions.checkNotNull(cursor);
+  }
+
+  /**
+   * Sets the template of the next link, which is expanded with the cursor of the page's last item. The link is only generated if there are more items.
+   * @param template A template with a single variable.
+   * @return The page, for method chaining.
+   */
+  public CursorPage<T> nextLink(final UriTemplate template) {
+    nextTemplate = template;
+    return this;
+  }
+
+  /**
+   * Sets the template of the prev link, which is expanded with the cursor of the page's first item. Callers set it when the page isn't the first one.
+   * @param template A template with a single variable.
+   * @return The page, for method chaining.
+   */
+  public CursorPage<T> prevLink(final UriTemplate template) {
+    prevTemplate = template;
+    return this;
+  }
+
+  @Override
+  public boolean hasNext() {
+    return count < limit && source.hasNext();
+  }
+
+  @Override
+  public T next() {
+    if( !hasNext() ) {
+      throw new NoSuchElementException();
+    }
+    final T item = source.next();
+    if( count++ == 0 ) {
+      firstCursor = cursor.apply(item);
+    }
+    last = item;
+    return item;
+  }
+
+  /**
+   * Returns the number of items the page has passed through so far.
+   * @return The number of items.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the paging links for the items passed through so far. Call it once the page has been iterated.
+   * @return The next and prev links, where applicable.
+   */
+  public List<Link> getLinks() {
+    final List<Link> links = Lists.newArrayListWithCapacity(2);
+    if( nextTemplate != null && count == limit && source.hasNext() ) {
+      links.add(new Link.Builder().href(nextTemplate, cursor.apply(last)).rel("next").build());
+    }
+    if( prevTemplate != null && count > 0 ) {
+      links.add(new Link.Builder().href(prevTemplate, firstCursor).rel("prev").build());
+    }
+    return links;
+  }
+}
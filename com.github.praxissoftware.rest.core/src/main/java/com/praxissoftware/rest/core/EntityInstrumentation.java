@@ -0,0 +1,44 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+/**
+ * Holds the installed EntityMetrics, if any. With none installed, which is the default, each instrumented call site costs one read of a field and a null
+ * check.
+ * @author Jason Rose
+ */
+public final class EntityInstrumentation {
+
+  private static volatile EntityMetrics metrics;
+
+  private EntityInstrumentation() {}
+
+  /**
+   * Returns the installed metrics.
+   * @return The installed metrics, or null if instrumentation is off.
+   */
+  public static EntityMetrics current() {
+    return metrics;
+  }
+
+  /**
+   * Installs the metrics, replacing any installed before.
+   * @param installed The metrics to send events to, or null to turn instrumentation off.
+   */
+  public static void install(final EntityMetrics installed) {
+    metrics = installed;
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+/**
+ * Receives events from the hot paths of the entity classes, to find out how services use them: which constructors copy, how big entities and link lists get,
+ * how many Links are built. Install an implementation with EntityInstrumentation.install(); StripedEntityMetrics is one that counts the events and exposes
+ * them through JMX.
+ * <p>
+ * Methods are called on the thread doing the work, in the middle of it, so implementations must be thread-safe, cheap and must not throw.
+ * @author Jason Rose
+ */
+public interface EntityMetrics {
+
+  /**
+   * Called when an entity is constructed.
+   * @param source Where its fields came from.
+   * @param size The number of fields it started with.
+   */
+  void entityCreated(EntitySource source, int size);
+
+  /**
+   * Called when a Link is built, whether or not it's then interned.
+   */
+  void linkBuilt();
+
+  /**
+   * Called when a serializer writes a representation's links.
+   * @param count The number of links, if the encoder knows it up front.
+   */
+  void linksEncoded(int count);
+
+  /**
+   * Called when a typed getter finds a value of the wrong type.
+   * @param key The key whose value had the wrong type.
+   */
+  void coercionFailed(String key);
+}
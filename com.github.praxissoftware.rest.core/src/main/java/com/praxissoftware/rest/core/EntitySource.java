@@ -0,0 +1,50 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+/**
+ * Where a new entity's fields came from, as reported to EntityMetrics.
+ * @author Jason Rose
+ */
+public enum EntitySource {
+
+  /** An empty entity, optionally pre-sized. */
+  EMPTY(false),
+  /** A copy of an unsorted map into a HashMap. */
+  HASH_COPY(true),
+  /** A copy of a SortedMap into a TreeMap. */
+  SORTED_COPY(true),
+  /** A copy into the map of an explicit FieldOrder. */
+  ORDERED_COPY(true),
+  /** An ImmutableMap used as is. */
+  SHARED(false),
+  /** A map handed over with adopt(), including the compact maps of Links and persistent entities. */
+  ADOPTED(false);
+
+  private final boolean copy;
+
+  private EntitySource(final boolean copy) {
+    this.copy = copy;
+  }
+
+  /**
+   * Returns whether entities from this source make a defensive copy of it.
+   * @return Whether entities from this source make a defensive copy of it.
+   */
+  public boolean isCopy() {
+    return copy;
+  }
+}
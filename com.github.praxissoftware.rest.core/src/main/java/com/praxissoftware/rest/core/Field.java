@@ -0,0 +1,131 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+
+/**
+ * A typed key for an entity field. Reading an entity through a Field checks the value against the field's type, or converts it, instead of leaving an
+ * unchecked cast to fail somewhere downstream. A Field also carries its key's hash, and remembers the slot its key occupies in a schema-backed entity such as a
+ * Link, so reads through a constant Field skip hashing the key and scanning the schema after the first one.
+ * <p>
+ * Fields are meant to be constants; they are compared by identity, and are safe to share between threads.
+ * @param <T> The type of the field's value.
+ * @author Jason Rose
+ */
+public final class Field<T> {
+
+  private final String name;
+  private final int hash;
+  private final Class<? super T> type;
+  private final Function<Object, ? extends T> converter;
+  /** The slot of the key in the last schema this field was read from. Racy: threads that miss it just resolve it again. */
+  private volatile Binding binding;
+
+  private Field(final String name, final Class<? super T> type, final Function<Object, ? extends T> converter) {
+    this.name = Preconditions.checkNotNull(name).intern();
+    hash = this.name.hashCode();
+    this.type = Preconditions.checkNotNull(type);
+    this.converter = converter;
+  }
+
+  /**
+   * Creates a field whose values must be instances of the type. For a parameterized type such as List&lt;Link&gt;, the value is only checked against the raw
+   * type.
+   * @param name The field's key.
+   * @param type The type of the field's values.
+   * @return The field.
+   */
+  public static <T> Field<T> of(final String name, final Class<? super T> type) {
+    return new Field<T>(name, type, null);
+  }
+
+  /**
+   * Creates a field that converts the values that aren't instances of the type, such as a String holding a number.
+   * @param name The field's key.
+   * @param type The type of the field's values.
+   * @param converter Converts a value that isn't an instance of the type. It's never given null, and throws a ClassCastException if it can't convert
+   *          the value.
+   * @return The field.
+   */
+  public static <T> Field<T> of(final String name, final Class<? super T> type, final Function<Object, ? extends T> converter) {
+    return new Field<T>(name, type, Preconditions.checkNotNull(converter));
+  }
+
+  /**
+   * Returns the field's key.
+   * @return The field's key.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the type of the field's values.
+   * @return The type of the field's values.
+   */
+  public Class<? super T> getType() {
+    return type;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  int hash() {
+    return hash;
+  }
+
+  /**
+   * Returns whether a non-null value can be read as the field's type, as is or through the converter.
+   */
+  boolean accepts(final Object value) {
+    return converter != null || type.isInstance(value);
+  }
+
+  /**
+   * Returns an accepted value as the field's type, converting it if it isn't an instance of the type already.
+   */
+  @SuppressWarnings("unchecked")
+  T cast(final Object value) {
+    return value == null || type.isInstance(value) ? (T) value : converter.apply(value);
+  }
+
+  /**
+   * Returns the slot of this field's key in the schema, resolving it only if the schema isn't the one last seen.
+   */
+  int slotIn(final KeySchema schema) {
+    final Binding current = binding;
+    if( current != null && current.schema == schema ) {
+      return current.slot;
+    }
+    final int slot = schema.indexOf(name);
+    binding = new Binding(schema, slot);
+    return slot;
+  }
+
+  private static final class Binding {
+    final KeySchema schema;
+    final int slot;
+
+    Binding(final KeySchema schema, final int slot) {
+      this.schema = schema;
+      this.slot = slot;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/**
+ * The iteration order of an entity's fields, and so the order in which serializers write them.
+ * @author Jason Rose
+ */
+public enum FieldOrder {
+
+  /**
+   * No particular order, from a HashMap. This is the default, and the only order in which numeric and boolean fields are stored unboxed.
+   */
+  HASHED {
+    @Override
+    Map<String, Object> newMap(final int expectedSize) {
+      return Maps.newHashMapWithExpectedSize(expectedSize);
+    }
+  },
+
+  /**
+   * The order in which the fields were first put, from a compact open-addressing map. Putting an existing field again keeps its position.
+   */
+  INSERTION {
+    @Override
+    Map<String, Object> newMap(final int expectedSize) {
+      return new OrderedArrayMap(false, expectedSize);
+    }
+  },
+
+  /**
+   * The natural order of the field names, which is the UTF-16 code unit order that canonical JSON (RFC 8785) sorts members by, from a compact
+   * open-addressing map. Two entities with equal fields always iterate, and serialize, identically, so their encoded bytes can be hashed or compared.
+   */
+  SORTED {
+    @Override
+    Map<String, Object> newMap(final int expectedSize) {
+      return new OrderedArrayMap(true, expectedSize);
+    }
+  };
+
+  /**
+   * Returns a new, empty map with this order.
+   */
+  abstract Map<String, Object> newMap(int expectedSize);
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.io.IOException;
+
+/**
+ * Receives the fields of an AbstractFieldEntity, one call per present field, in the entity's order. Primitive fields arrive unboxed, so an encoder can write
+ * an entity without going through its Map view.
+ * @see AbstractFieldEntity#accept(FieldVisitor)
+ * @author Jason Rose
+ */
+public interface FieldVisitor {
+
+  /**
+   * Receives a field holding an object, including the entity's overflow entries.
+   * @param name The field's key.
+   * @param value The field's value, never null.
+   * @throws IOException If the visitor fails to write the field.
+   */
+  void visit(String name, Object value) throws IOException;
+
+  /**
+   * Receives an int field.
+   * @param name The field's key.
+   * @param value The field's value.
+   * @throws IOException If the visitor fails to write the field.
+   */
+  void visit(String name, int value) throws IOException;
+
+  /**
+   * Receives a long field.
+   * @param name The field's key.
+   * @param value The field's value.
+   * @throws IOException If the visitor fails to write the field.
+   */
+  void visit(String name, long value) throws IOException;
+
+  /**
+   * Receives a double field.
+   * @param name The field's key.
+   * @param value The field's value.
+   * @throws IOException If the visitor fails to write the field.
+   */
+  void visit(String name, double value) throws IOException;
+
+  /**
+   * Receives a boolean field.
+   * @param name The field's key.
+   * @param value The field's value.
+   * @throws IOException If the visitor fails to write the field.
+   */
+  void visit(String name, boolean value) throws IOException;
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface, usually one extending Representation, for which the rest processor generates an AbstractFieldEntity. The generated class stores each
+ * property declared by the interface's getters in a Java field of its own type, and any other key in an overflow map; its Map view sees both.
+ * <p>
+ * Properties follow the JavaBeans conventions: getX() or, for booleans, isX() declares the property "x", and a matching setX() may be declared as well.
+ * Property types may be any reference type, or int, long, double or boolean.
+ * @author Jason Rose
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateEntity {
+
+  /**
+   * The simple name of the generated class, in the interface's package. Defaults to the interface's name followed by "Entity".
+   */
+  String value() default "";
+}
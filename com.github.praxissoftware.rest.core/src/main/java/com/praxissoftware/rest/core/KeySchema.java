@@ -0,0 +1,78 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A fixed, ordered set of well-known keys shared by every instance of an entity type. Each key owns a slot index, so instances only need to store their values
+ * in a flat array instead of carrying a hash table of their own.
+ * @author Jason Rose
+ */
+final class KeySchema {
+
+  private final String[] keys;
+  private final int[] hashes;
+
+  KeySchema(final String... keys) {
+    this.keys = new String[keys.length];
+    hashes = new int[keys.length];
+    for( int i = 0; i < keys.length; i++ ) {
+      Preconditions.checkNotNull(keys[i]);
+      Preconditions.checkArgument(indexOf(keys[i]) < 0, "duplicate key: %s", keys[i]);
+      this.keys[i] = keys[i].intern();
+      hashes[i] = keys[i].hashCode();
+    }
+  }
+
+  /**
+   * Returns the slot index of the key, or -1 if the key is not part of this schema.
+   * @param key The key to look for.
+   * @return The slot index of the key, or -1 if the key is not part of this schema.
+   */
+  int indexOf(final Object key) {
+    if( key == null ) {
+      return -1;
+    }
+    for( int i = 0; i < keys.length; i++ ) {
+      if( keys[i] == key ) {
+        return i;
+      }
+    }
+    final int hash = key.hashCode();
+    for( int i = 0; i < keys.length; i++ ) {
+      if( hashes[i] == hash && keys[i] != null && keys[i].equals(key) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  String keyAt(final int index) {
+    return keys[index];
+  }
+
+  int size() {
+    return keys.length;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(keys);
+  }
+}
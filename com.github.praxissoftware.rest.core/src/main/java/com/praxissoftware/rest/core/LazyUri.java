@@ -0,0 +1,60 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.net.URI;
+
+/**
+ * A URI slot value that holds the unparsed form and creates the URI the first time it's read. CompactMap resolves these on every read path, so they never
+ * escape the map; Link.getRawHref() reads the unparsed form without resolving it.
+ * @author Jason Rose
+ */
+final class LazyUri {
+
+  private final String raw;
+  private volatile URI uri;
+
+  LazyUri(final String raw) {
+    this.raw = raw;
+  }
+
+  /**
+   * Returns the URI, parsing it on first use. Concurrent first readers may each parse it; they all see an equal instance.
+   * @return The URI.
+   * @throws IllegalArgumentException If the raw form isn't a valid URI.
+   */
+  URI get() {
+    URI result = uri;
+    if( result == null ) {
+      result = URI.create(raw);
+      uri = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the unparsed form.
+   * @return The unparsed form.
+   */
+  String raw() {
+    return raw;
+  }
+
+  @Override
+  public String toString() {
+    return raw;
+  }
+}
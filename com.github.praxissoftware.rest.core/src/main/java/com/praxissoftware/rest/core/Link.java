@@ -16,10 +16,13 @@
 package com.praxissoftware.rest.core;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.bind.annotation.XmlRootElement;
 
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 
 /**
@@ -41,12 +44,13 @@ public class Link extends AbstractImmutableMapEntity {
    */
   public static class Builder {
     private final Map<String, ? extends Object> map;
-    private URI uri;
+    private Object uri;
     private String rel;
     private String type;
     private String title;
     private String hrefLang;
     private String length;
+    private LinkInterner interner;
     
     public Builder() {
       this(ImmutableMap.<String, Object>of());
@@ -57,11 +61,12 @@ public class Link extends AbstractImmutableMapEntity {
     }
 
     /**
-     * Returns a newly-created instance of the Link.
-     * @return A newly-created instance of the Link.
+     * Returns a newly-created instance of the Link, or the canonical instance equal to it if the builder goes through an interner.
+     * @return The Link.
      */
     public Link build() {
-      return new Link(convertToMap());
+      final Link link = new Link(convertToMap());
+      return interner == null ? link : interner.intern(link);
     }
 
     /**
@@ -74,6 +79,39 @@ public class Link extends AbstractImmutableMapEntity {
       return this;
     }
 
+    /**
+     * Sets the target URI of the Link from its unparsed form. The URI object is only created, and the form only validated, if getHref() is called on the built
+     * Link; serializers write the raw form as given. The character sequence is copied, so it may be reused afterwards.
+     * @param href The target URI of the Link, unparsed.
+     * @return The builder, for method chaining.
+     */
+    public Builder href(final CharSequence href) {
+      uri = href == null ? null : new LazyUri(href.toString());
+      return this;
+    }
+
+    /**
+     * Sets the target URI of the Link to the expansion of a URI template. The URI object is only created if getHref() is called on the built Link.
+     * @param template The compiled template.
+     * @param variables The template variables, by name.
+     * @return The builder, for method chaining.
+     */
+    public Builder href(final UriTemplate template, final Map<String, ?> variables) {
+      uri = new LazyUri(template.expand(variables));
+      return this;
+    }
+
+    /**
+     * Sets the target URI of the Link to the expansion of a URI template. The URI object is only created if getHref() is called on the built Link.
+     * @param template The compiled template.
+     * @param values The template variables, in the order of the template's getVariableNames().
+     * @return The builder, for method chaining.
+     */
+    public Builder href(final UriTemplate template, final Object... values) {
+      uri = new LazyUri(template.expand(values));
+      return this;
+    }
+
     /**
      * Sets the target language of the Link.
      * @param hrefLang The target language of the Link.
@@ -84,6 +122,16 @@ public class Link extends AbstractImmutableMapEntity {
       return this;
     }
 
+    /**
+     * Makes build() return canonical Links from the pool rather than new instances.
+     * @param interner The pool of canonical Links, or null to build new instances.
+     * @return The builder, for method chaining.
+     */
+    public Builder interner(final LinkInterner interner) {
+      this.interner = interner;
+      return this;
+    }
+
     /**
      * Sets the Link's target's response size, in bytes.
      * @param length The target's response size, in bytes.
@@ -124,27 +172,177 @@ public class Link extends AbstractImmutableMapEntity {
       return this;
     }
 
-    private Map<String, Object> convertToMap() {
-      final ImmutableMap.Builder<String, Object> mapBuilder = ImmutableMap.builder();
-      mapBuilder.putAll(map);
-      testAndSet(mapBuilder, "href", uri);
-      testAndSet(mapBuilder, "rel", rel);
-      testAndSet(mapBuilder, "type", type);
-      testAndSet(mapBuilder, "title", title);
-      testAndSet(mapBuilder, "hrefLang", hrefLang);
-      testAndSet(mapBuilder, "length", length);
-      return mapBuilder.build();
+    private CompactMap convertToMap() {
+      final Object[] values = new Object[SCHEMA.size()];
+      ImmutableMap.Builder<String, Object> overflow = null;
+      for( final Map.Entry<String, ? extends Object> entry : map.entrySet() ) {
+        final Object value = Preconditions.checkNotNull(entry.getValue(), entry.getKey());
+        final int index = SCHEMA.indexOf(entry.getKey());
+        if( index >= 0 ) {
+          values[index] = value;
+        } else {
+          if( overflow == null ) {
+            overflow = ImmutableMap.builder();
+          }
+          overflow.put(entry.getKey(), value);
+        }
+      }
+      testAndSet(values, HREF_SLOT, uri);
+      testAndSet(values, REL_SLOT, rel);
+      testAndSet(values, TYPE_SLOT, type);
+      testAndSet(values, TITLE_SLOT, title);
+      testAndSet(values, HREF_LANG_SLOT, hrefLang);
+      testAndSet(values, LENGTH_SLOT, length);
+      return new CompactMap(SCHEMA, values, overflow == null ? ImmutableMap.<String, Object> of() : overflow.build());
     }
 
-    private void testAndSet(final ImmutableMap.Builder<String, Object> builder, final String key, final Object value) {
-      if( builder != null && key != null && value != null ) {
-        builder.put(key, value);
+    private void testAndSet(final Object[] values, final int index, final Object value) {
+      if( value != null ) {
+        Preconditions.checkArgument(values[index] == null, "duplicate key: %s", SCHEMA.keyAt(index));
+        values[index] = value;
       }
     }
   }
 
-  private Link(final Map<String, Object> params) {
+  /**
+   * Builds the Links of a collection, which differ only in their href, in one pass. Every Link shares the prototype's other members, including its map of
+   * extra members, so each one costs a slot array, the Link and its href; the list is sized up front and handed over by build() without copying, so it can
+   * go straight to setLinks().
+   * @author Jason Rose
+   */
+  public static class BatchBuilder {
+    private final CompactMap prototype;
+    private final int expectedSize;
+    private LinkList links;
+
+    /**
+     * Creates a builder of Links like the prototype.
+     * @param prototype The Link whose members other than href every Link shares. Its href, if it has one, is replaced.
+     * @param expectedSize The number of Links the list is sized for.
+     */
+    public BatchBuilder(final Link prototype, final int expectedSize) {
+      Preconditions.checkArgument(expectedSize >= 0, "expectedSize cannot be negative: %s", expectedSize);
+      this.prototype = (CompactMap) prototype.delegate();
+      this.expectedSize = expectedSize;
+      links = new LinkList(expectedSize);
+    }
+
+    /**
+     * Returns the list of the Links added so far, and starts a new one.
+     * @return The Links, in the order they were added. The list is a mutable LinkList, no longer referenced by the builder.
+     */
+    public List<Link> build() {
+      final List<Link> result = links;
+      links = new LinkList(expectedSize);
+      return result;
+    }
+
+    /**
+     * Adds a Link to the URI.
+     * @param uri The target URI of the Link.
+     * @return The builder, for method chaining.
+     */
+    public BatchBuilder href(final URI uri) {
+      return add(Preconditions.checkNotNull(uri));
+    }
+
+    /**
+     * Adds a Link to the unparsed URI, which is only parsed if getHref() is called on the Link.
+     * @param href The target URI of the Link, unparsed.
+     * @return The builder, for method chaining.
+     */
+    public BatchBuilder href(final CharSequence href) {
+      return add(new LazyUri(href.toString()));
+    }
+
+    /**
+     * Adds a Link to the expansion of a URI template.
+     * @param template The compiled template.
+     * @param values The template variables, in the order of the template's getVariableNames().
+     * @return The builder, for method chaining.
+     */
+    public BatchBuilder href(final UriTemplate template, final Object... values) {
+      return add(new LazyUri(template.expand(values)));
+    }
+
+    /**
+     * Adds a Link to the expansion of a URI template.
+     * @param template The compiled template.
+     * @param variables The template variables, by name.
+     * @return The builder, for method chaining.
+     */
+    public BatchBuilder href(final UriTemplate template, final Map<String, ?> variables) {
+      return add(new LazyUri(template.expand(variables)));
+    }
+
+    /**
+     * Adds a Link to each of the unparsed URIs.
+     * @param hrefs The target URIs of the Links, unparsed.
+     * @return The builder, for method chaining.
+     */
+    public BatchBuilder hrefs(final Iterable<? extends CharSequence> hrefs) {
+      for( final CharSequence href : hrefs ) {
+        href(href);
+      }
+      return this;
+    }
+
+    private BatchBuilder add(final Object uri) {
+      links.add(new Link(prototype.withSlot(HREF_SLOT, uri)));
+      return this;
+    }
+  }
+
+  /** The link's target URI. An unparsed href, or one given as a String in the builder's map, is parsed when read. */
+  public static final Field<URI> HREF = Field.of("href", URI.class, new Function<Object, URI>() {
+    @Override
+    public URI apply(final Object input) {
+      return URI.create(input.toString());
+    }
+  });
+  /** The link's relationship. */
+  public static final Field<String> REL = Field.of("rel", String.class);
+  /** The link's target's content type. */
+  public static final Field<String> TYPE = Field.of("type", String.class);
+  /** The link's human-readable title. */
+  public static final Field<String> TITLE = Field.of("title", String.class);
+  /** The link's target language. */
+  public static final Field<String> HREF_LANG = Field.of("hrefLang", String.class);
+  /** The link's target's content length, in bytes, as given. */
+  public static final Field<String> LENGTH = Field.of("length", String.class);
+  /** The link's target's content length, in bytes, parsed. Reading it throws a ClassCastException if the length isn't a number. */
+  public static final Field<Long> LENGTH_IN_BYTES = Field.of("length", Long.class, new Function<Object, Long>() {
+    @Override
+    public Long apply(final Object input) {
+      if( input instanceof Number ) {
+        return Long.valueOf(((Number) input).longValue());
+      }
+      try {
+        return Long.valueOf(input.toString().trim());
+      } catch( final NumberFormatException e ) {
+        throw new ClassCastException("length holds \"" + input + "\", not a number of bytes");
+      }
+    }
+  });
+
+  private static final int HREF_SLOT = 0;
+  private static final int REL_SLOT = 1;
+  private static final int TYPE_SLOT = 2;
+  private static final int TITLE_SLOT = 3;
+  private static final int HREF_LANG_SLOT = 4;
+  private static final int LENGTH_SLOT = 5;
+
+  /**
+   * The well-known keys of a Link. Their values live in a flat array shared by nothing but the Link, instead of a per-instance hash table.
+   */
+  private static final KeySchema SCHEMA = new KeySchema("href", "rel", "type", "title", "hrefLang", "length");
+
+  private Link(final CompactMap params) {
     super(params);
+    final EntityMetrics metrics = EntityInstrumentation.current();
+    if( metrics != null ) {
+      metrics.linkBuilt();
+    }
   }
 
   /**
@@ -152,7 +350,16 @@ public class Link extends AbstractImmutableMapEntity {
    * @return The link's target URI.
    */
   public URI getHref() {
-    return getAndCoerce("href");
+    return get(HREF);
+  }
+
+  /**
+   * Returns the link's target URI in its unparsed form, without creating a URI object if the Link was built from one.
+   * @return The link's target URI, as a string.
+   */
+  public String getRawHref() {
+    final Object href = ((CompactMap) delegate()).rawSlot(HREF_SLOT);
+    return href == null ? null : href.toString();
   }
 
   /**
@@ -160,7 +367,7 @@ public class Link extends AbstractImmutableMapEntity {
    * @return The link's target language.
    */
   public String getHrefLang() {
-    return getAndCoerce("hrefLang");
+    return get(HREF_LANG);
   }
 
   /**
@@ -168,7 +375,7 @@ public class Link extends AbstractImmutableMapEntity {
    * @return The link's target's content length, in bytes.
    */
   public String getLength() {
-    return getAndCoerce("length");
+    return get(LENGTH);
   }
 
   /**
@@ -176,7 +383,7 @@ public class Link extends AbstractImmutableMapEntity {
    * @return The link's relationship.
    */
   public String getRel() {
-    return getAndCoerce("rel");
+    return get(REL);
   }
 
   /**
@@ -184,7 +391,7 @@ public class Link extends AbstractImmutableMapEntity {
    * @return The link's human-readable title.
    */
   public String getTitle() {
-    return getAndCoerce("title");
+    return get(TITLE);
   }
 
   /**
@@ -192,6 +399,6 @@ public class Link extends AbstractImmutableMapEntity {
    * @return The link's target's content type.
    */
   public String getType() {
-    return getAndCoerce("type");
+    return get(TYPE);
   }
 }
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * A pool of canonical Links. Interning a Link returns the pooled instance equal to it, so the many identical links a service emits (self, next, navigation
+ * links) share one instance and can be compared by identity. Pools are thread-safe and bounded, either by weak references or by size, and count their hits and
+ * misses.
+ * @see Link.Builder#interner(LinkInterner)
+ * @author Jason Rose
+ */
+public final class LinkInterner {
+
+  private final Interner<Link> interner;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private LinkInterner(final Interner<Link> interner) {
+    this.interner = interner;
+  }
+
+  /**
+   * Returns a pool that holds its Links weakly, so a canonical Link is evicted once nothing else references it.
+   * @return A new pool.
+   */
+  public static LinkInterner weak() {
+    return new LinkInterner(Interners.<Link> newWeakInterner());
+  }
+
+  /**
+   * Returns a pool that holds at most the given number of Links, evicting the least recently used ones beyond that.
+   * @param maximumSize The maximum number of pooled Links.
+   * @return A new pool.
+   */
+  public static LinkInterner bounded(final long maximumSize) {
+    final ConcurrentMap<Link, Link> map = CacheBuilder.newBuilder().maximumSize(maximumSize).<Link, Link> build().asMap();
+    return new LinkInterner(new Interner<Link>() {
+      @Override
+      public Link intern(final Link sample) {
+        final Link existing = map.putIfAbsent(sample, sample);
+        return existing == null ? sample : existing;
+      }
+    });
+  }
+
+  /**
+   * Returns the canonical instance of the Link, pooling the given one if there isn't one yet.
+   * @param link The Link to intern.
+   * @return The pooled Link equal to the given one.
+   */
+  public Link intern(final Link link) {
+    final Link canonical = interner.intern(Preconditions.checkNotNull(link));
+    if( canonical == link ) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return canonical;
+  }
+
+  /**
+   * Returns the number of intern() calls that found an equal Link already pooled.
+   * @return The number of hits.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of intern() calls that pooled the given Link.
+   * @return The number of misses.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "LinkInterner[hits=" + hits.get() + ", misses=" + misses.get() + "]";
+  }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * A SnapshotList of Links that finds them by rel without scanning. The index is built on the first lookup and then kept up to date as links are appended;
+ * any other change to the list drops it, and the next lookup rebuilds it. Each rel maps to the positions of its first and last link, and each position to the
+ * next one with the same rel, so the index costs an int per link and an entry per distinct rel.
+ * <p>
+ * Rels are matched exactly. Lookups may run on several threads at once while the list isn't changing: the index is built aside and published whole, so a
+ * reader sees either no index or a complete one, and at worst builds its own. Changes need one thread at a time, as for the list itself; snapshots don't
+ * carry the index.
+ * @author Jason Rose
+ */
+public class LinkList extends SnapshotList<Link> {
+
+  /**
+   * The rel index. Appends extend it in place; any other change drops it.
+   */
+  private static final class Index {
+    /** The first and last position of each rel. */
+    final Map<String, int[]> rels;
+    /** The next position with the same rel as each position, or -1. */
+    int[] next;
+
+    Index(final int size) {
+      rels = Maps.newHashMap();
+      next = new int[Math.max(8, size)];
+    }
+  }
+
+  /** The rel index, or null while there's none. */
+  private volatile Index index;
+
+  public LinkList() {
+    super();
+  }
+
+  /**
+   * Creates a list whose array is sized to hold the expected number of links without growing.
+   * @param expectedSize The number of links the list is expected to hold.
+   */
+  public LinkList(final int expectedSize) {
+    super(expectedSize);
+  }
+
+  public LinkList(final Collection<? extends Link> source) {
+    super(source);
+  }
+
+  /**
+   * Returns the first link with the rel.
+   * @param rel The rel to look for.
+   * @return The first link with the rel, or null if there isn't one.
+   */
+  public Link getLink(final String rel) {
+    final int[] range = index().rels.get(rel);
+    return range == null ? null : get(range[0]);
+  }
+
+  /**
+   * Returns the links with the rel, in list order.
+   * @param rel The rel to look for.
+   * @return An immutable list of the links with the rel, which is empty if there are none.
+   */
+  public List<Link> getLinks(final String rel) {
+    final Index index = index();
+    final int[] range = index.rels.get(rel);
+    if( range == null ) {
+      return ImmutableList.of();
+    }
+    if( range[0] == range[1] ) {
+      return ImmutableList.of(get(range[0]));
+    }
+    final int[] next = index.next;
+    final ImmutableList.Builder<Link> links = ImmutableList.builder();
+    for( int i = range[0]; i >= 0; i = next[i] ) {
+      links.add(get(i));
+    }
+    return links.build();
+  }
+
+  @Override
+  public boolean add(final Link link) {
+    super.add(link);
+    final Index index = this.index;
+    if( index != null ) {
+      indexAt(index, size() - 1);
+    }
+    return true;
+  }
+
+  @Override
+  public void add(final int position, final Link link) {
+    if( position == size() ) {
+      add(link);
+    } else {
+      super.add(position, link);
+      index = null;
+    }
+  }
+
+  @Override
+  public boolean addAll(final Collection<? extends Link> source) {
+    final int from = size();
+    final boolean changed = super.addAll(source);
+    final Index index = this.index;
+    if( index != null ) {
+      for( int i = from; i < size(); i++ ) {
+        indexAt(index, i);
+      }
+    }
+    return changed;
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    index = null;
+  }
+
+  @Override
+  public Link remove(final int position) {
+    final Link previous = super.remove(position);
+    index = null;
+    return previous;
+  }
+
+  @Override
+  public Link set(final int position, final Link link) {
+    final Link previous = super.set(position, link);
+    index = null;
+    return previous;
+  }
+
+  private Index index() {
+    Index index = this.index;
+    if( index == null ) {
+      final int size = size();
+      index = new Index(size);
+      for( int i = 0; i < size; i++ ) {
+        indexAt(index, i);
+      }
+      this.index = index;
+    }
+    return index;
+  }
+
+  private void indexAt(final Index index, final int position) {
+    if( position == index.next.length ) {
+      index.next = Arrays.copyOf(index.next, position + (position >> 1) + 1);
+    }
+    index.next[position] = -1;
+    final Link link = get(position);
+    final String rel = link == null ? null : link.getRel();
+    if( rel == null ) {
+      return;
+    }
+    final int[] range = index.rels.get(rel);
+    if( range == null ) {
+      index.rels.put(rel, new int[] { position, position });
+    } else {
+      index.next[range[1]] = position;
+      range[1] = position;
+    }
+  }
+}
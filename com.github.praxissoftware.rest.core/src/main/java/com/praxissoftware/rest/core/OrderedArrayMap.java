@@ -0,0 +1,435 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A map that keeps its entries in dense, ordered arrays, either in insertion order or sorted by key, and finds them through an open-addressing table of slot
+ * indexes. Lookups cost one hash probe, as in a HashMap, but there are no entry objects, and iteration walks the arrays in order.
+ * <p>
+ * In sorted order, a key that sorts before the last one is inserted in place, shifting the later entries; so is a removal in either order. Both are linear,
+ * which is cheap at entity sizes. Reads never change the map, so it can be shared between threads once it's no longer written. Null keys are not allowed.
+ * @author Jason Rose
+ */
+final class OrderedArrayMap extends AbstractMap<String, Object> {
+
+  private static final int MIN_CAPACITY = 4;
+
+  private final boolean sorted;
+  private String[] keys;
+  private Object[] values;
+  private int[] hashes;
+  /** Open-addressing table with linear probing, holding slot index + 1 for each entry, or 0 when empty. At most half full. */
+  private int[] table;
+  private int size;
+  private int modCount;
+  private Set<Map.Entry<String, Object>> entrySet;
+
+  OrderedArrayMap(final boolean sorted, final int expectedSize) {
+    Preconditions.checkArgument(expectedSize >= 0, "expectedSize cannot be negative: %s", expectedSize);
+    this.sorted = sorted;
+    final int capacity = Math.max(MIN_CAPACITY, expectedSize);
+    keys = new String[capacity];
+    values = new Object[capacity];
+    hashes = new int[capacity];
+    table = new int[tableSize(capacity)];
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(values, 0, size, null);
+    Arrays.fill(table, 0);
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return slotOf(key) >= 0;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    Set<Map.Entry<String, Object>> result = entrySet;
+    if( result == null ) {
+      result = new EntrySet();
+      entrySet = result;
+    }
+    return result;
+  }
+
+  @Override
+  public Object get(final Object key) {
+    final int slot = slotOf(key);
+    return slot >= 0 ? values[slot] : null;
+  }
+
+  /**
+   * Returns the value of a key whose hash the caller already knows.
+   */
+  Object get(final String key, final int hash) {
+    final int slot = slotOf(key, hash);
+    return slot >= 0 ? values[slot] : null;
+  }
+
+  @Override
+  public Object put(final String key, final Object value) {
+    Preconditions.checkNotNull(key);
+    final int hash = key.hashCode();
+    final int slot = slotOf(key, hash);
+    if( slot >= 0 ) {
+      final Object previous = values[slot];
+      values[slot] = value;
+      return previous;
+    }
+    int position = size;
+    if( sorted && size > 0 && key.compareTo(keys[size - 1]) < 0 ) {
+      position = -Arrays.binarySearch(keys, 0, size, key) - 1;
+    }
+    insert(position, key, hash, value);
+    return null;
+  }
+
+  /**
+   * Puts all of the map's entries. In sorted order, new keys are appended and then sorted once, so copying a large unsorted map doesn't shift the arrays for
+   * every key.
+   */
+  @Override
+  public void putAll(final Map<? extends String, ? extends Object> map) {
+    if( !sorted || map.size() < 8 ) {
+      super.putAll(map);
+      return;
+    }
+    bulkPut(map, false);
+  }
+
+  /**
+   * Puts all of the map's entries like putAll(), except that a null value removes its key, as AbstractMapEntity.put() does. The map is iterated once, so it
+   * may be one that can't be asked whether it holds nulls, such as a ConcurrentHashMap.
+   * @param map The entries to put.
+   */
+  void putAllRemovingNulls(final Map<? extends String, ? extends Object> map) {
+    if( !sorted || map.size() < 8 ) {
+      for( final Map.Entry<? extends String, ? extends Object> entry : map.entrySet() ) {
+        if( entry.getValue() == null ) {
+          remove(entry.getKey());
+        } else {
+          put(entry.getKey(), entry.getValue());
+        }
+      }
+      return;
+    }
+    bulkPut(map, true);
+  }
+
+  private void bulkPut(final Map<? extends String, ? extends Object> map, final boolean removeNulls) {
+    boolean ordered = true;
+    String[] removed = null;
+    int removedCount = 0;
+    for( final Map.Entry<? extends String, ? extends Object> entry : map.entrySet() ) {
+      final String key = Preconditions.checkNotNull(entry.getKey());
+      final Object value = entry.getValue();
+      if( value == null && removeNulls ) {
+        // removing shifts the arrays, so it waits until they're sorted
+        if( removed == null ) {
+          removed = new String[map.size()];
+        }
+        removed[removedCount++] = key;
+        continue;
+      }
+      final int hash = key.hashCode();
+      final int slot = slotOf(key, hash);
+      if( slot >= 0 ) {
+        values[slot] = value;
+      } else {
+        ordered &= size == 0 || key.compareTo(keys[size - 1]) > 0;
+        insert(size, key, hash, value);
+      }
+    }
+    if( !ordered ) {
+      sort();
+    }
+    for( int i = 0; i < removedCount; i++ ) {
+      remove(removed[i]);
+    }
+  }
+
+  @Override
+  public Object remove(final Object key) {
+    if( !(key instanceof String) ) {
+      return null;
+    }
+    final int index = tableIndexOf(key, key.hashCode());
+    if( index < 0 ) {
+      return null;
+    }
+    final int slot = table[index] - 1;
+    final Object previous = values[slot];
+    removeAt(index, slot);
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private int slotOf(final Object key) {
+    return key instanceof String ? slotOf(key, key.hashCode()) : -1;
+  }
+
+  private int slotOf(final Object key, final int hash) {
+    final int index = tableIndexOf(key, hash);
+    return index >= 0 ? table[index] - 1 : -1;
+  }
+
+  private int tableIndexOf(final Object key, final int hash) {
+    final int mask = table.length - 1;
+    for( int i = smear(hash) & mask;; i = i + 1 & mask ) {
+      final int entry = table[i];
+      if( entry == 0 ) {
+        return -1;
+      }
+      final int slot = entry - 1;
+      if( hashes[slot] == hash && (keys[slot] == key || keys[slot].equals(key)) ) {
+        return i;
+      }
+    }
+  }
+
+  private void insert(final int position, final String key, final int hash, final Object value) {
+    if( size == keys.length ) {
+      grow();
+    }
+    if( position < size ) {
+      System.arraycopy(keys, position, keys, position + 1, size - position);
+      System.arraycopy(values, position, values, position + 1, size - position);
+      System.arraycopy(hashes, position, hashes, position + 1, size - position);
+      shiftTable(position, 1);
+    }
+    keys[position] = key;
+    values[position] = value;
+    hashes[position] = hash;
+    link(position);
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Removes the entry from the table, moving later entries of its probe run back so that every entry stays reachable from its home index, then closes the gap
+   * in the arrays.
+   */
+  private void removeAt(final int index, final int slot) {
+    final int mask = table.length - 1;
+    int gap = index;
+    for( int i = gap + 1 & mask; table[i] != 0; i = i + 1 & mask ) {
+      final int home = smear(hashes[table[i] - 1]) & mask;
+      // the entry at i can fill the gap unless its home lies cyclically in (gap, i]
+      if( gap <= i ? home <= gap || home > i : home <= gap && home > i ) {
+        table[gap] = table[i];
+        gap = i;
+      }
+    }
+    table[gap] = 0;
+    final int moved = size - slot - 1;
+    System.arraycopy(keys, slot + 1, keys, slot, moved);
+    System.arraycopy(values, slot + 1, values, slot, moved);
+    System.arraycopy(hashes, slot + 1, hashes, slot, moved);
+    size--;
+    keys[size] = null;
+    values[size] = null;
+    if( moved > 0 ) {
+      shiftTable(slot + 1, -1);
+    }
+    modCount++;
+  }
+
+  /**
+   * Adds the delta to the table's references to every slot from the given one on, after the arrays have shifted.
+   */
+  private void shiftTable(final int from, final int delta) {
+    for( int i = 0; i < table.length; i++ ) {
+      if( table[i] > from ) {
+        table[i] += delta;
+      }
+    }
+  }
+
+  private void link(final int slot) {
+    final int mask = table.length - 1;
+    int i = smear(hashes[slot]) & mask;
+    while( table[i] != 0 ) {
+      i = i + 1 & mask;
+    }
+    table[i] = slot + 1;
+  }
+
+  private void grow() {
+    final int capacity = keys.length * 2;
+    keys = Arrays.copyOf(keys, capacity);
+    values = Arrays.copyOf(values, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+    table = new int[tableSize(capacity)];
+    for( int slot = 0; slot < size; slot++ ) {
+      link(slot);
+    }
+  }
+
+  /**
+   * Sorts the entries by key and rebuilds the table.
+   */
+  private void sort() {
+    final String[] sortedKeys = Arrays.copyOf(keys, size);
+    Arrays.sort(sortedKeys);
+    final Object[] sortedValues = new Object[keys.length];
+    final int[] sortedHashes = new int[keys.length];
+    for( int i = 0; i < size; i++ ) {
+      final int slot = slotOf(sortedKeys[i], sortedKeys[i].hashCode());
+      sortedValues[i] = values[slot];
+      sortedHashes[i] = hashes[slot];
+    }
+    keys = Arrays.copyOf(sortedKeys, keys.length);
+    values = sortedValues;
+    hashes = sortedHashes;
+    Arrays.fill(table, 0);
+    for( int slot = 0; slot < size; slot++ ) {
+      link(slot);
+    }
+    modCount++;
+  }
+
+  /**
+   * Returns the smallest power of two that is at least twice the capacity.
+   */
+  private static int tableSize(final int capacity) {
+    return Integer.highestOneBit(capacity * 2 - 1) << 1;
+  }
+
+  private static int smear(final int hash) {
+    final int h = hash * 0x9e3779b9;
+    return h ^ h >>> 16;
+  }
+
+  private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+    @Override
+    public void clear() {
+      OrderedArrayMap.this.clear();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator() {
+      return new Iterator<Map.Entry<String, Object>>() {
+        private int next;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+          return next < size;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+          if( modCount != expectedModCount ) {
+            throw new ConcurrentModificationException();
+          }
+          if( next >= size ) {
+            throw new NoSuchElementException();
+          }
+          last = next++;
+          return new SlotEntry(last);
+        }
+
+        @Override
+        public void remove() {
+          Preconditions.checkState(last >= 0, "next() has not been called since the last remove()");
+          if( modCount != expectedModCount ) {
+            throw new ConcurrentModificationException();
+          }
+          OrderedArrayMap.this.remove(keys[last]);
+          next = last;
+          last = -1;
+          expectedModCount = modCount;
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /**
+   * An entry that reads and writes its slot directly, so it's only valid until the map is next structurally modified.
+   */
+  private final class SlotEntry implements Map.Entry<String, Object> {
+    private final int slot;
+
+    SlotEntry(final int slot) {
+      this.slot = slot;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      if( !(object instanceof Map.Entry) ) {
+        return false;
+      }
+      final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) object;
+      return getKey().equals(entry.getKey()) && Objects.equal(getValue(), entry.getValue());
+    }
+
+    @Override
+    public String getKey() {
+      return keys[slot];
+    }
+
+    @Override
+    public Object getValue() {
+      return values[slot];
+    }
+
+    @Override
+    public int hashCode() {
+      final Object value = getValue();
+      return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public Object setValue(final Object value) {
+      final Object previous = values[slot];
+      values[slot] = value;
+      return previous;
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
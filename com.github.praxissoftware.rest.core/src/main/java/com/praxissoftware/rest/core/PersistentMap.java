@@ -0,0 +1,498 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * An immutable hash array mapped trie. with() and without() return a new map that shares every node but the O(log32 n) on the path to the changed key, so
+ * deriving a changed copy doesn't copy the map. Like ImmutableMap, it never holds null keys or values.
+ * <p>
+ * Nodes carry the edit token of the Transient that created them; a Transient mutates its own nodes in place and copies everyone else's, so batch edits only copy
+ * each touched node once.
+ * @see <a href="http://lampwww.epfl.ch/papers/idealhashtrees.pdf">Ideal Hash Trees</a>
+ * @author Jason Rose
+ */
+final class PersistentMap extends AbstractMap<String, Object> {
+
+  static final PersistentMap EMPTY = new PersistentMap(null, 0);
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+  /** Trie depth is bounded by the hash width: 7 levels consume all 32 bits. */
+  private static final int MAX_DEPTH = 8;
+
+  private final Node root;
+  private final int size;
+  private transient Set<Map.Entry<String, Object>> entrySet;
+
+  private PersistentMap(final Node root, final int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns a map with the key mapped to the value, sharing structure with this one.
+   * @param key The key.
+   * @param value The value.
+   * @return The new map, or this one if the key is already mapped to that very value.
+   */
+  PersistentMap with(final String key, final Object value) {
+    Preconditions.checkNotNull(key);
+    Preconditions.checkNotNull(value, key);
+    final Change change = new Change();
+    final Node node = root == null ? BitmapNode.EMPTY.assoc(null, 0, key.hashCode(), key, value, change) : root.assoc(null, 0, key.hashCode(), key, value, change);
+    return node == root ? this : new PersistentMap(node, change.added ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map without the key, sharing structure with this one.
+   * @param key The key.
+   * @return The new map, or this one if the key is absent.
+   */
+  PersistentMap without(final Object key) {
+    if( key == null || root == null ) {
+      return this;
+    }
+    final Change change = new Change();
+    final Node node = root.dissoc(null, 0, key.hashCode(), key, change);
+    return node == root ? this : new PersistentMap(node, size - 1);
+  }
+
+  /**
+   * Returns a transient copy for batch edits.
+   * @return The transient.
+   */
+  Transient asTransient() {
+    return new Transient(root, size);
+  }
+
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet() {
+    Set<Map.Entry<String, Object>> result = entrySet;
+    if( result == null ) {
+      result = new AbstractSet<Map.Entry<String, Object>>() {
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+          return new EntryIterator(root);
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+      entrySet = result;
+    }
+    return result;
+  }
+
+  @Override
+  public Object get(final Object key) {
+    if( key == null || root == null ) {
+      return null;
+    }
+    return root.find(0, key.hashCode(), key);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Object put(final String key, final Object value) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void putAll(final Map<? extends String, ? extends Object> map) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Object remove(final Object key) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * A mutable view for batch edits, which mutates the nodes it created itself in place. persistent() hands its current state off as an immutable map; later
+   * edits copy again.
+   */
+  static final class Transient {
+    private Object edit = new Object();
+    private Node root;
+    private int size;
+
+    private Transient(final Node root, final int size) {
+      this.root = root;
+      this.size = size;
+    }
+
+    Object get(final Object key) {
+      return key == null || root == null ? null : root.find(0, key.hashCode(), key);
+    }
+
+    void put(final String key, final Object value) {
+      Preconditions.checkNotNull(key);
+      Preconditions.checkNotNull(value, key);
+      final Change change = new Change();
+      root = (root == null ? BitmapNode.EMPTY : root).assoc(edit, 0, key.hashCode(), key, value, change);
+      if( change.added ) {
+        size++;
+      }
+    }
+
+    void remove(final Object key) {
+      if( key != null && root != null ) {
+        final Change change = new Change();
+        root = root.dissoc(edit, 0, key.hashCode(), key, change);
+        if( change.removed ) {
+          size--;
+        }
+      }
+    }
+
+    PersistentMap persistent() {
+      edit = new Object();
+      return size == 0 ? EMPTY : new PersistentMap(root, size);
+    }
+  }
+
+  private static final class Change {
+    boolean added;
+    boolean removed;
+  }
+
+  /**
+   * A trie node. Its array holds key/value pairs; a null key means the value is a child node.
+   */
+  private abstract static class Node {
+    final Object edit;
+    Object[] array;
+
+    Node(final Object edit, final Object[] array) {
+      this.edit = edit;
+      this.array = array;
+    }
+
+    abstract int count();
+
+    abstract Object find(int shift, int hash, Object key);
+
+    abstract Node assoc(Object edit, int shift, int hash, String key, Object value, Change change);
+
+    /**
+     * Returns the node without the key, null if that leaves it empty, or this node if the key is absent.
+     */
+    abstract Node dissoc(Object edit, int shift, int hash, Object key, Change change);
+
+    final boolean owned(final Object token) {
+      return token != null && token == edit;
+    }
+  }
+
+  private static final class BitmapNode extends Node {
+    static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+    int bitmap;
+
+    BitmapNode(final Object edit, final int bitmap, final Object[] array) {
+      super(edit, array);
+      this.bitmap = bitmap;
+    }
+
+    @Override
+    int count() {
+      return Integer.bitCount(bitmap);
+    }
+
+    private int index(final int bit) {
+      return Integer.bitCount(bitmap & bit - 1);
+    }
+
+    @Override
+    Object find(final int shift, final int hash, final Object key) {
+      final int bit = 1 << (hash >>> shift & MASK);
+      if( (bitmap & bit) == 0 ) {
+        return null;
+      }
+      final int index = 2 * index(bit);
+      final Object k = array[index];
+      final Object v = array[index + 1];
+      if( k == null ) {
+        return ((Node) v).find(shift + BITS, hash, key);
+      }
+      return k == key || k.equals(key) ? v : null;
+    }
+
+    @Override
+    Node assoc(final Object token, final int shift, final int hash, final String key, final Object value, final Change change) {
+      final int bit = 1 << (hash >>> shift & MASK);
+      final int index = 2 * index(bit);
+      if( (bitmap & bit) != 0 ) {
+        final Object k = array[index];
+        final Object v = array[index + 1];
+        if( k == null ) {
+          final Node child = ((Node) v).assoc(token, shift + BITS, hash, key, value, change);
+          return child == v ? this : set(token, index + 1, child);
+        }
+        if( k == key || k.equals(key) ) {
+          return v == value ? this : set(token, index + 1, value);
+        }
+        change.added = true;
+        final Node child = pair(token, shift + BITS, k.hashCode(), (String) k, v, hash, key, value);
+        final BitmapNode node = editable(token);
+        node.array[index] = null;
+        node.array[index + 1] = child;
+        return node;
+      }
+      change.added = true;
+      final int count = count();
+      if( owned(token) && array.length > 2 * count ) {
+        System.arraycopy(array, index, array, index + 2, 2 * count - index);
+        array[index] = key;
+        array[index + 1] = value;
+        bitmap |= bit;
+        return this;
+      }
+      // transient nodes grow with room to spare, since batch edits tend to add several keys
+      final Object[] copy = new Object[2 * (token == null ? count + 1 : Math.min(count + 4, 32))];
+      System.arraycopy(array, 0, copy, 0, index);
+      copy[index] = key;
+      copy[index + 1] = value;
+      System.arraycopy(array, index, copy, index + 2, 2 * count - index);
+      return new BitmapNode(token, bitmap | bit, copy);
+    }
+
+    @Override
+    Node dissoc(final Object token, final int shift, final int hash, final Object key, final Change change) {
+      final int bit = 1 << (hash >>> shift & MASK);
+      if( (bitmap & bit) == 0 ) {
+        return this;
+      }
+      final int index = 2 * index(bit);
+      final Object k = array[index];
+      final Object v = array[index + 1];
+      if( k == null ) {
+        final Node child = ((Node) v).dissoc(token, shift + BITS, hash, key, change);
+        if( child == v ) {
+          return this;
+        }
+        if( child != null ) {
+          return set(token, index + 1, child);
+        }
+      } else if( !(k == key || k.equals(key)) ) {
+        return this;
+      } else {
+        change.removed = true;
+      }
+      if( bitmap == bit ) {
+        return null;
+      }
+      final int count = count();
+      if( owned(token) ) {
+        System.arraycopy(array, index + 2, array, index, 2 * count - index - 2);
+        array[2 * count - 2] = null;
+        array[2 * count - 1] = null;
+        bitmap ^= bit;
+        return this;
+      }
+      final Object[] copy = new Object[2 * count - 2];
+      System.arraycopy(array, 0, copy, 0, index);
+      System.arraycopy(array, index + 2, copy, index, 2 * count - index - 2);
+      return new BitmapNode(token, bitmap ^ bit, copy);
+    }
+
+    private BitmapNode editable(final Object token) {
+      return owned(token) ? this : new BitmapNode(token, bitmap, array.clone());
+    }
+
+    private BitmapNode set(final Object token, final int index, final Object value) {
+      final BitmapNode node = editable(token);
+      node.array[index] = value;
+      return node;
+    }
+  }
+
+  /**
+   * The node for keys whose hash codes are entirely equal, below the last level of bitmap nodes.
+   */
+  private static final class CollisionNode extends Node {
+
+    CollisionNode(final Object edit, final Object[] array) {
+      super(edit, array);
+    }
+
+    @Override
+    int count() {
+      return array.length / 2;
+    }
+
+    private int indexOf(final Object key) {
+      for( int i = 0; i < array.length; i += 2 ) {
+        if( array[i] == key || array[i].equals(key) ) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    Object find(final int shift, final int hash, final Object key) {
+      final int index = indexOf(key);
+      return index < 0 ? null : array[index + 1];
+    }
+
+    @Override
+    Node assoc(final Object token, final int shift, final int hash, final String key, final Object value, final Change change) {
+      final int index = indexOf(key);
+      if( index >= 0 ) {
+        if( array[index + 1] == value ) {
+          return this;
+        }
+        final Object[] copy = array.clone();
+        copy[index + 1] = value;
+        return new CollisionNode(token, copy);
+      }
+      change.added = true;
+      final Object[] copy = new Object[array.length + 2];
+      System.arraycopy(array, 0, copy, 0, array.length);
+      copy[array.length] = key;
+      copy[array.length + 1] = value;
+      return new CollisionNode(token, copy);
+    }
+
+    @Override
+    Node dissoc(final Object token, final int shift, final int hash, final Object key, final Change change) {
+      final int index = indexOf(key);
+      if( index < 0 ) {
+        return this;
+      }
+      change.removed = true;
+      if( array.length == 2 ) {
+        return null;
+      }
+      final Object[] copy = new Object[array.length - 2];
+      System.arraycopy(array, 0, copy, 0, index);
+      System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+      return new CollisionNode(token, copy);
+    }
+  }
+
+  /**
+   * Creates the subtree holding two keys whose hashes are equal up to the shift.
+   */
+  private static Node pair(final Object token, final int shift, final int hash1, final String key1, final Object value1, final int hash2, final String key2,
+      final Object value2) {
+    if( shift >= 32 ) {
+      return new CollisionNode(token, new Object[] { key1, value1, key2, value2 });
+    }
+    final int fragment1 = hash1 >>> shift & MASK;
+    final int fragment2 = hash2 >>> shift & MASK;
+    if( fragment1 == fragment2 ) {
+      return new BitmapNode(token, 1 << fragment1, new Object[] { null, pair(token, shift + BITS, hash1, key1, value1, hash2, key2, value2) });
+    }
+    final Object[] array = fragment1 < fragment2 ? new Object[] { key1, value1, key2, value2 } : new Object[] { key2, value2, key1, value1 };
+    return new BitmapNode(token, 1 << fragment1 | 1 << fragment2, array);
+  }
+
+  /**
+   * Walks the trie depth-first with an explicit stack, so iteration allocates nothing but the entries.
+   */
+  private static final class EntryIterator extends UnmodifiableIterator<Map.Entry<String, Object>> {
+    private final Object[][] arrays = new Object[MAX_DEPTH][];
+    private final int[] positions = new int[MAX_DEPTH];
+    private final int[] limits = new int[MAX_DEPTH];
+    private int depth = -1;
+    private String key;
+    private Object value;
+
+    EntryIterator(final Node root) {
+      if( root != null ) {
+        push(root);
+        advance();
+      }
+    }
+
+    private void push(final Node node) {
+      depth++;
+      arrays[depth] = node.array;
+      positions[depth] = 0;
+      limits[depth] = 2 * node.count();
+    }
+
+    private void advance() {
+      key = null;
+      while( depth >= 0 ) {
+        if( positions[depth] == limits[depth] ) {
+          arrays[depth] = null;
+          depth--;
+          continue;
+        }
+        final Object[] array = arrays[depth];
+        final int position = positions[depth];
+        positions[depth] = position + 2;
+        if( array[position] == null ) {
+          push((Node) array[position + 1]);
+        } else {
+          key = (String) array[position];
+          value = array[position + 1];
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return key != null;
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      if( key == null ) {
+        throw new NoSuchElementException();
+      }
+      final Map.Entry<String, Object> entry = Maps.immutableEntry(key, value);
+      advance();
+      return entry;
+    }
+  }
+}
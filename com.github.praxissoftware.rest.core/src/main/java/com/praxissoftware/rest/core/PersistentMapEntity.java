@@ -0,0 +1,204 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An immutable entity whose derived copies share structure with it. with() and without() cost O(log n) in the number of fields instead of the O(n) copy of
+ * ImmutableMap.copyOf(), so a decoration pipeline can derive a new version at every step. withLink() shares the fields but copies the links, so it costs O(n)
+ * in the number of links. Use a Builder for batch edits, and in particular to add several links; it copies each touched part of the entity once, however many
+ * edits touch it.
+ * @author Jason Rose
+ */
+public final class PersistentMapEntity extends AbstractImmutableMapEntity {
+
+  /**
+   * Collects edits to an entity without creating intermediate entities. A builder can keep going after build(); its later edits don't affect entities it
+   * already built.
+   * @author Jason Rose
+   */
+  public static final class Builder {
+    private final PersistentMap.Transient fields;
+    private ImmutableList.Builder<Link> links;
+
+    private Builder(final PersistentMap fields) {
+      this.fields = fields.asTransient();
+    }
+
+    /**
+     * Appends a Link to the entity's "links".
+     * @param link The Link to append.
+     * @return The builder, for method chaining.
+     */
+    public Builder addLink(final Link link) {
+      if( links == null ) {
+        links = ImmutableList.builder();
+        final List<Link> existing = existingLinks(fields.get("links"));
+        links.addAll(existing);
+      }
+      links.add(link);
+      return this;
+    }
+
+    /**
+     * Returns the entity holding the edits so far.
+     * @return The entity.
+     */
+    public PersistentMapEntity build() {
+      if( links != null ) {
+        final ImmutableList<Link> list = links.build();
+        fields.put("links", list);
+        links = ImmutableList.<Link> builder().addAll(list);
+      }
+      return new PersistentMapEntity(fields.persistent());
+    }
+
+    /**
+     * Maps the key to the value.
+     * @param key The key.
+     * @param value The value, which may not be null.
+     * @return The builder, for method chaining.
+     */
+    public Builder put(final String key, final Object value) {
+      if( "links".equals(key) ) {
+        links = null;
+      }
+      fields.put(key, value);
+      return this;
+    }
+
+    /**
+     * Maps all of the map's keys to their values.
+     * @param map The entries to add.
+     * @return The builder, for method chaining.
+     */
+    public Builder putAll(final Map<String, ? extends Object> map) {
+      for( final Map.Entry<String, ? extends Object> entry : map.entrySet() ) {
+        put(entry.getKey(), entry.getValue());
+      }
+      return this;
+    }
+
+    /**
+     * Removes the key.
+     * @param key The key.
+     * @return The builder, for method chaining.
+     */
+    public Builder remove(final String key) {
+      if( "links".equals(key) ) {
+        links = null;
+      }
+      fields.remove(key);
+      return this;
+    }
+  }
+
+  private static final PersistentMapEntity EMPTY = new PersistentMapEntity(PersistentMap.EMPTY);
+
+  private PersistentMapEntity(final PersistentMap fields) {
+    super(fields);
+  }
+
+  /**
+   * Returns a builder for a new entity.
+   * @return The builder.
+   */
+  public static Builder builder() {
+    return new Builder(PersistentMap.EMPTY);
+  }
+
+  /**
+   * Returns an entity with the same entries as the map.
+   * @param map The entries. Neither keys nor values may be null.
+   * @return The entity.
+   */
+  public static PersistentMapEntity copyOf(final Map<String, ? extends Object> map) {
+    return map instanceof PersistentMapEntity ? (PersistentMapEntity) map : builder().putAll(map).build();
+  }
+
+  /**
+   * Returns the empty entity.
+   * @return The empty entity.
+   */
+  public static PersistentMapEntity of() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns the entity's links.
+   * @return The entity's links, or an empty list if it has none.
+   */
+  public List<Link> getLinks() {
+    return existingLinks(get("links"));
+  }
+
+  /**
+   * Returns a builder that starts from this entity's entries.
+   * @return The builder.
+   */
+  public Builder toBuilder() {
+    return new Builder(fields());
+  }
+
+  /**
+   * Returns an entity with the key mapped to the value, sharing structure with this one.
+   * @param key The key.
+   * @param value The value, which may not be null.
+   * @return The derived entity, or this one if the key already maps to that very value.
+   */
+  public PersistentMapEntity with(final String key, final Object value) {
+    return derive(fields().with(key, value));
+  }
+
+  /**
+   * Returns an entity with the Link appended to its "links". The other fields are shared, but the list of links is copied, so adding links one at a time
+   * costs O(n^2); toBuilder().addLink() copies it once for any number of links.
+   * @param link The Link to append.
+   * @return The derived entity.
+   */
+  public PersistentMapEntity withLink(final Link link) {
+    return with("links", ImmutableList.<Link> builder().addAll(getLinks()).add(link).build());
+  }
+
+  /**
+   * Returns an entity without the key, sharing structure with this one.
+   * @param key The key.
+   * @return The derived entity, or this one if the key is absent.
+   */
+  public PersistentMapEntity without(final String key) {
+    return derive(fields().without(key));
+  }
+
+  private PersistentMapEntity derive(final PersistentMap derived) {
+    if( derived == fields() ) {
+      return this;
+    }
+    return derived.isEmpty() ? EMPTY : new PersistentMapEntity(derived);
+  }
+
+  private PersistentMap fields() {
+    return (PersistentMap) delegate();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Link> existingLinks(final Object links) {
+    return links == null ? ImmutableList.<Link> of() : (List<Link>) links;
+  }
+}
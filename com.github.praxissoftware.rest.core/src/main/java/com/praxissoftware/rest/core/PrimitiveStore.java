@@ -0,0 +1,176 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing table of primitive values keyed by String. Longs, ints, doubles and booleans are kept unboxed in a long[], alongside a tag recording which
+ * of them each slot holds, so the value can be boxed back to its original type when it is read through the Map view.
+ * @author Jason Rose
+ */
+final class PrimitiveStore {
+
+  static final byte INT = 1;
+  static final byte LONG = 2;
+  static final byte DOUBLE = 3;
+  static final byte BOOLEAN = 4;
+
+  private String[] keys = new String[8];
+  private long[] values = new long[8];
+  private byte[] kinds = new byte[8];
+  private int size;
+
+  /**
+   * Returns the slot holding the key, or -1.
+   */
+  int indexOf(final Object key) {
+    if( size == 0 || key == null ) {
+      return -1;
+    }
+    final int mask = keys.length - 1;
+    for( int i = spread(key.hashCode()) & mask;; i = i + 1 & mask ) {
+      final String candidate = keys[i];
+      if( candidate == null ) {
+        return -1;
+      }
+      if( candidate == key || candidate.equals(key) ) {
+        return i;
+      }
+    }
+  }
+
+  void put(final String key, final long value, final byte kind) {
+    int index = indexOf(key);
+    if( index < 0 ) {
+      if( (size + 1) * 4 > keys.length * 3 ) {
+        resize();
+      }
+      final int mask = keys.length - 1;
+      index = spread(key.hashCode()) & mask;
+      while( keys[index] != null ) {
+        index = index + 1 & mask;
+      }
+      keys[index] = key;
+      size++;
+    }
+    values[index] = value;
+    kinds[index] = kind;
+  }
+
+  /**
+   * Removes the key and returns its value, boxed, or null if the key wasn't present.
+   */
+  Object remove(final Object key) {
+    final int index = indexOf(key);
+    if( index < 0 ) {
+      return null;
+    }
+    final Object previous = box(index);
+    removeAt(index);
+    return previous;
+  }
+
+  /**
+   * Removes the slot, shifting later members of its probe run back so lookups never stop early.
+   */
+  void removeAt(final int index) {
+    final int mask = keys.length - 1;
+    int hole = index;
+    for( int i = hole + 1 & mask; keys[i] != null; i = i + 1 & mask ) {
+      final int home = spread(keys[i].hashCode()) & mask;
+      if( (i - home & mask) >= (i - hole & mask) ) {
+        keys[hole] = keys[i];
+        values[hole] = values[i];
+        kinds[hole] = kinds[i];
+        hole = i;
+      }
+    }
+    keys[hole] = null;
+    kinds[hole] = 0;
+    size--;
+  }
+
+  void clear() {
+    if( size > 0 ) {
+      Arrays.fill(keys, null);
+      Arrays.fill(kinds, (byte) 0);
+      size = 0;
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of slots, for iterating with keyAt().
+   */
+  int capacity() {
+    return keys.length;
+  }
+
+  String keyAt(final int index) {
+    return keys[index];
+  }
+
+  byte kindAt(final int index) {
+    return kinds[index];
+  }
+
+  long valueAt(final int index) {
+    return values[index];
+  }
+
+  Object box(final int index) {
+    final long value = values[index];
+    switch( kinds[index] ) {
+    case INT:
+      return Integer.valueOf((int) value);
+    case LONG:
+      return Long.valueOf(value);
+    case DOUBLE:
+      return Double.valueOf(Double.longBitsToDouble(value));
+    default:
+      return Boolean.valueOf(value != 0);
+    }
+  }
+
+  private void resize() {
+    final String[] oldKeys = keys;
+    final long[] oldValues = values;
+    final byte[] oldKinds = kinds;
+    keys = new String[oldKeys.length * 2];
+    values = new long[oldKeys.length * 2];
+    kinds = new byte[oldKeys.length * 2];
+    final int mask = keys.length - 1;
+    for( int i = 0; i < oldKeys.length; i++ ) {
+      if( oldKeys[i] != null ) {
+        int index = spread(oldKeys[i].hashCode()) & mask;
+        while( keys[index] != null ) {
+          index = index + 1 & mask;
+        }
+        keys[index] = oldKeys[i];
+        values[index] = oldValues[i];
+        kinds[index] = oldKinds[i];
+      }
+    }
+  }
+
+  private static int spread(final int hash) {
+    return hash ^ hash >>> 16;
+  }
+}
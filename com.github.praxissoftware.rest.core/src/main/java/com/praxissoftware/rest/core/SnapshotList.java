@@ -0,0 +1,242 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * An array-backed List, like ArrayList, that takes snapshots in constant time. A snapshot shares the array with the list and sees the elements it held when
+ * it was taken; the list only copies the array when it writes to a position a snapshot can see. Appending never writes to such a position, so a list that is
+ * only appended to, as links usually are, is never copied, no matter how many snapshots are taken along the way.
+ * <p>
+ * The list itself is for one thread at a time, like ArrayList, and its iterators are ArrayList's too: they support remove() and fail fast. snapshot() counts
+ * as a write unless nothing was written since the last one. Snapshots are immutable and may be read on any thread, including while the list goes on
+ * changing, so a serializer or a cache can take one instead of copying the list or iterating it under a lock.
+ * @author Jason Rose
+ */
+public class SnapshotList<E> extends AbstractList<E> implements RandomAccess {
+
+  private static final Object[] EMPTY = {};
+  private static final int MIN_CAPACITY = 4;
+
+  private Object[] elements;
+  private int size;
+  /** The number of leading positions that the latest snapshot of the array can see. Writing to one of them copies the array first. */
+  private int frozen;
+
+  public SnapshotList() {
+    elements = EMPTY;
+  }
+
+  /**
+   * Creates a list whose array is sized to hold the expected number of elements without growing.
+   * @param expectedSize The number of elements the list is expected to hold.
+   */
+  public SnapshotList(final int expectedSize) {
+    Preconditions.checkArgument(expectedSize >= 0, "expectedSize cannot be negative: %s", expectedSize);
+    elements = expectedSize == 0 ? EMPTY : new Object[expectedSize];
+  }
+
+  public SnapshotList(final Collection<? extends E> source) {
+    elements = source.toArray();
+    if( elements.getClass() != Object[].class ) {
+      elements = Arrays.copyOf(elements, elements.length, Object[].class);
+    }
+    size = elements.length;
+  }
+
+  /**
+   * Returns an immutable view of the list as it is now, without copying it.
+   * @return The snapshot.
+   */
+  public List<E> snapshot() {
+    if( frozen != size ) {
+      frozen = size;
+    }
+    return new Snapshot<E>(elements, size);
+  }
+
+  @Override
+  public boolean add(final E element) {
+    if( size == elements.length ) {
+      elements = Arrays.copyOf(elements, Math.max(MIN_CAPACITY, size + (size >> 1) + 1));
+      frozen = 0;
+    }
+    elements[size++] = element;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void add(final int index, final E element) {
+    Preconditions.checkPositionIndex(index, size);
+    if( index == size ) {
+      add(element);
+      return;
+    }
+    if( size == elements.length || index < frozen ) {
+      final Object[] copy = new Object[Math.max(MIN_CAPACITY, size == elements.length ? size + (size >> 1) + 1 : elements.length)];
+      System.arraycopy(elements, 0, copy, 0, index);
+      System.arraycopy(elements, index, copy, index + 1, size - index);
+      elements = copy;
+      frozen = 0;
+    } else {
+      System.arraycopy(elements, index, elements, index + 1, size - index);
+    }
+    elements[index] = element;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public boolean addAll(final Collection<? extends E> source) {
+    final Object[] added = source.toArray();
+    if( added.length == 0 ) {
+      return false;
+    }
+    if( size + added.length > elements.length ) {
+      elements = Arrays.copyOf(elements, Math.max(size + added.length, size + (size >> 1) + 1));
+      frozen = 0;
+    }
+    System.arraycopy(added, 0, elements, size, added.length);
+    size += added.length;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    if( frozen > 0 ) {
+      elements = EMPTY;
+      frozen = 0;
+    } else {
+      Arrays.fill(elements, 0, size, null);
+    }
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(final int index) {
+    Preconditions.checkElementIndex(index, size);
+    return (E) elements[index];
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E remove(final int index) {
+    Preconditions.checkElementIndex(index, size);
+    final E previous = (E) elements[index];
+    if( index < frozen ) {
+      final Object[] copy = new Object[elements.length];
+      System.arraycopy(elements, 0, copy, 0, index);
+      System.arraycopy(elements, index + 1, copy, index, size - index - 1);
+      elements = copy;
+      frozen = 0;
+    } else {
+      System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+      elements[size - 1] = null;
+    }
+    size--;
+    modCount++;
+    return previous;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E set(final int index, final E element) {
+    Preconditions.checkElementIndex(index, size);
+    if( index < frozen ) {
+      elements = elements.clone();
+      frozen = 0;
+    }
+    final E previous = (E) elements[index];
+    elements[index] = element;
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Object[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  /**
+   * A read-only window on a prefix of the array. The list never writes to that prefix again, and the final fields make the elements visible to any thread
+   * the snapshot reaches.
+   */
+  private static final class Snapshot<E> extends AbstractList<E> implements RandomAccess {
+    private final Object[] elements;
+    private final int size;
+
+    Snapshot(final Object[] elements, final int size) {
+      this.elements = elements;
+      this.size = size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(final int index) {
+      Preconditions.checkElementIndex(index, size);
+      return (E) elements[index];
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+      return new UnmodifiableIterator<E>() {
+        private int index;
+
+        @Override
+        public boolean hasNext() {
+          return index < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+          if( index == size ) {
+            throw new NoSuchElementException();
+          }
+          return (E) elements[index++];
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Object[] toArray() {
+      return Arrays.copyOf(elements, size);
+    }
+  }
+}
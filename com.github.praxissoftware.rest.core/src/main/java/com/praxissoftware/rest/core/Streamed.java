@@ -0,0 +1,100 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A member value whose elements come from an iterator and are pulled one at a time while the value is serialized, so they never all sit on the heap at once.
+ * It can be iterated only once. Serializers write streamed members after the other members of their map.
+ * @param <E> The element type.
+ * @see StreamingRepresentation
+ * @author Jason Rose
+ */
+public final class Streamed<E> implements Iterable<E> {
+
+  private final Supplier<? extends Iterable<? extends E>> head;
+  private Iterator<? extends E> source;
+  private final Supplier<? extends Iterable<? extends E>> tail;
+  private boolean consumed;
+
+  Streamed(final Supplier<? extends Iterable<? extends E>> head, final Iterator<? extends E> source, final Supplier<? extends Iterable<? extends E>> tail) {
+    this.head = head;
+    this.source = Preconditions.checkNotNull(source);
+    this.tail = tail;
+  }
+
+  /**
+   * Creates a streamed value that iterates the source.
+   * @param source The elements. It's consumed by the first iteration of the streamed value.
+   * @return The streamed value.
+   */
+  public static <E> Streamed<E> of(final Iterator<? extends E> source) {
+    final Supplier<Iterable<E>> empty = Suppliers.<Iterable<E>> ofInstance(Collections.<E> emptyList());
+    return new Streamed<E>(empty, source, empty);
+  }
+
+  /**
+   * Returns whether the elements have been iterated already.
+   * @return True if iterator() has been called.
+   */
+  public synchronized boolean isConsumed() {
+    return consumed;
+  }
+
+  /**
+   * Returns an iterator over the elements. The elements after the source's are only computed once the source is exhausted.
+   * @return The iterator.
+   * @throws IllegalStateException If the elements have been iterated already.
+   */
+  @Override
+  public synchronized Iterator<E> iterator() {
+    Preconditions.checkState(!consumed, "streamed values can only be iterated once");
+    consumed = true;
+    final Iterator<? extends E> rest = source;
+    source = null;
+    return new AbstractIterator<E>() {
+      private Iterator<? extends E> current = head.get().iterator();
+      private int stage;
+
+      @Override
+      protected E computeNext() {
+        while( !current.hasNext() ) {
+          if( stage == 0 ) {
+            current = rest;
+          } else if( stage == 1 ) {
+            current = tail.get().iterator();
+          } else {
+            return endOfData();
+          }
+          stage++;
+        }
+        return current.next();
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return isConsumed() ? "[streamed, consumed]" : "[streamed]";
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A Representation for very large collections, whose links and embedded items are pulled from iterators while it's serialized instead of being collected on
+ * the heap first. Serializers write to their target as they go, so memory stays bounded by their buffer, and a slow client slows down the iteration rather than
+ * letting it run ahead.
+ * <p>
+ * The "links" member writes the links of getLinks() first, then the streamed links, then the paging links of the page, if any. It's always written after the
+ * embedded items, so the paging links can be generated from the items actually sent. A streaming representation can be serialized only once.
+ * @author Jason Rose
+ */
+public class StreamingRepresentation extends AbstractMapEntity implements Representation {
+
+  private List<Link> links = Lists.newArrayList();
+  private CursorPage<?> page;
+
+  public StreamingRepresentation() {
+    this(Collections.<Link> emptyList().iterator());
+  }
+
+  /**
+   * Creates a representation whose links, after the ones in getLinks(), come from the iterator.
+   * @param streamedLinks The streamed links. Consumed during serialization.
+   */
+  public StreamingRepresentation(final Iterator<? extends Link> streamedLinks) {
+    super(adopt(Maps.<String, Object> newLinkedHashMap()));
+    put("links", new Streamed<Link>(new Supplier<List<Link>>() {
+      @Override
+      public List<Link> get() {
+        return links;
+      }
+    }, streamedLinks, new Supplier<List<Link>>() {
+      @Override
+      public List<Link> get() {
+        return page == null ? Collections.<Link> emptyList() : page.getLinks();
+      }
+    }));
+  }
+
+  /**
+   * Embeds a streamed collection of items.
+   * @param key The member name.
+   * @param items The items. Consumed during serialization.
+   */
+  public void embed(final String key, final Iterator<?> items) {
+    final Object streamedLinks = remove("links");
+    put(key, Streamed.of(items));
+    if( streamedLinks != null ) {
+      put("links", streamedLinks);
+    }
+  }
+
+  /**
+   * Embeds a page of items, and adds its next and prev links to the streamed links once it's been written.
+   * @param key The member name.
+   * @param page The page.
+   */
+  public void page(final String key, final CursorPage<?> page) {
+    embed(key, page);
+    this.page = page;
+  }
+
+  /**
+   * Returns the links that are written before the streamed ones. They're held in memory, so this is the place for a handful like "self".
+   * @return The eagerly held links.
+   */
+  @Override
+  public List<Link> getLinks() {
+    return links;
+  }
+
+  @Override
+  public void setLinks(final List<Link> links) {
+    this.links = links;
+  }
+}
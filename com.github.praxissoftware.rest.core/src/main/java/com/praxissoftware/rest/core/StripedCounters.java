@@ -0,0 +1,66 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed number of long counters, each split across stripes so that threads updating the same counter mostly touch different cache lines. Each thread
+ * sticks to the stripe its id hashes to. Sums are not atomic snapshots, which is fine for monitoring.
+ * @author Jason Rose
+ */
+final class StripedCounters {
+
+  /** Longs per cache line, which pads each stripe's row. */
+  private static final int LINE = 8;
+
+  private final AtomicLongArray cells;
+  private final int counters;
+  private final int rowLength;
+  private final int stripeMask;
+
+  StripedCounters(final int counters) {
+    this.counters = counters;
+    rowLength = (counters + LINE - 1) / LINE * LINE + LINE;
+    final int stripes = Math.min(64, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+    stripeMask = stripes - 1;
+    cells = new AtomicLongArray(stripes * rowLength);
+  }
+
+  void add(final int counter, final long delta) {
+    final long id = Thread.currentThread().getId();
+    final int stripe = (int) (id ^ id >>> 7) * 0x9e3779b9 >>> 16 & stripeMask;
+    cells.getAndAdd(stripe * rowLength + counter, delta);
+  }
+
+  long sum(final int counter) {
+    long sum = 0;
+    for( int i = counter; i < cells.length(); i += rowLength ) {
+      sum += cells.get(i);
+    }
+    return sum;
+  }
+
+  void reset() {
+    for( int i = 0; i < cells.length(); i++ ) {
+      cells.set(i, 0);
+    }
+  }
+
+  int size() {
+    return counters;
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+/**
+ * EntityMetrics that keep striped counters and power-of-two histograms of the events, cheap enough to leave installed in production, and expose them as an
+ * MXBean:
+ * 
+ * <pre>
+ * final StripedEntityMetrics metrics = new StripedEntityMetrics();
+ * metrics.register();
+ * EntityInstrumentation.install(metrics);
+ * </pre>
+ * @author Jason Rose
+ */
+public class StripedEntityMetrics implements EntityMetrics, StripedEntityMetricsMXBean {
+
+  /** The name register() uses. */
+  public static final String OBJECT_NAME = "com.praxissoftware.rest:type=EntityMetrics";
+
+  /** Bucket i counts values in [2^(i-1), 2^i), and bucket 0 counts zeros; the last bucket takes everything larger. */
+  private static final int BUCKETS = 32;
+
+  private static final EntitySource[] SOURCES = EntitySource.values();
+  private static final int LINKS_BUILT = SOURCES.length;
+  private static final int COERCION_FAILURES = LINKS_BUILT + 1;
+
+  private final StripedCounters counters = new StripedCounters(COERCION_FAILURES + 1);
+  private final StripedCounters entitySizes = new StripedCounters(BUCKETS);
+  private final StripedCounters linkListLengths = new StripedCounters(BUCKETS);
+
+  @Override
+  public void entityCreated(final EntitySource source, final int size) {
+    counters.add(source.ordinal(), 1);
+    entitySizes.add(bucket(size), 1);
+  }
+
+  @Override
+  public void linkBuilt() {
+    counters.add(LINKS_BUILT, 1);
+  }
+
+  @Override
+  public void linksEncoded(final int count) {
+    linkListLengths.add(bucket(count), 1);
+  }
+
+  @Override
+  public void coercionFailed(final String key) {
+    counters.add(COERCION_FAILURES, 1);
+  }
+
+  @Override
+  public Map<String, Long> getConstructions() {
+    final Map<String, Long> result = Maps.newLinkedHashMap();
+    for( final EntitySource source : SOURCES ) {
+      result.put(source.name(), Long.valueOf(counters.sum(source.ordinal())));
+    }
+    return result;
+  }
+
+  @Override
+  public long getDefensiveCopies() {
+    long copies = 0;
+    for( final EntitySource source : SOURCES ) {
+      if( source.isCopy() ) {
+        copies += counters.sum(source.ordinal());
+      }
+    }
+    return copies;
+  }
+
+  @Override
+  public Map<Long, Long> getEntitySizes() {
+    return histogram(entitySizes);
+  }
+
+  @Override
+  public long getLinksBuilt() {
+    return counters.sum(LINKS_BUILT);
+  }
+
+  @Override
+  public Map<Long, Long> getLinkListLengths() {
+    return histogram(linkListLengths);
+  }
+
+  @Override
+  public long getCoercionFailures() {
+    return counters.sum(COERCION_FAILURES);
+  }
+
+  @Override
+  public void reset() {
+    counters.reset();
+    entitySizes.reset();
+    linkListLengths.reset();
+  }
+
+  /**
+   * Registers these metrics with the platform MBeanServer under OBJECT_NAME.
+   * @throws JMException If registration fails, such as when other metrics are registered under the name already.
+   */
+  public void register() throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+  }
+
+  /**
+   * Unregisters the metrics registered under OBJECT_NAME from the platform MBeanServer, if there are any.
+   * @throws JMException If unregistration fails.
+   */
+  public static void unregister() throws JMException {
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    final ObjectName name = new ObjectName(OBJECT_NAME);
+    if( server.isRegistered(name) ) {
+      server.unregisterMBean(name);
+    }
+  }
+
+  private static int bucket(final int value) {
+    return value <= 0 ? 0 : Math.min(BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(value));
+  }
+
+  /**
+   * Returns the non-empty buckets, keyed by their lower bound.
+   */
+  private static Map<Long, Long> histogram(final StripedCounters buckets) {
+    final ImmutableSortedMap.Builder<Long, Long> result = ImmutableSortedMap.naturalOrder();
+    for( int i = 0; i < buckets.size(); i++ ) {
+      final long count = buckets.sum(i);
+      if( count > 0 ) {
+        result.put(Long.valueOf(i == 0 ? 0 : 1L << i - 1), Long.valueOf(count));
+      }
+    }
+    return result.build();
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Map;
+
+/**
+ * The JMX view of StripedEntityMetrics. Histograms map the lower bound of each power-of-two bucket to its count.
+ * @author Jason Rose
+ */
+public interface StripedEntityMetricsMXBean {
+
+  /**
+   * Returns the number of entities constructed, by EntitySource name.
+   * @return The number of entities constructed, by source.
+   */
+  Map<String, Long> getConstructions();
+
+  /**
+   * Returns the number of entities that copied their source.
+   * @return The number of defensive copies.
+   */
+  long getDefensiveCopies();
+
+  /**
+   * Returns the number of fields entities started with.
+   * @return The histogram of initial entity sizes.
+   */
+  Map<Long, Long> getEntitySizes();
+
+  /**
+   * Returns the number of Links built.
+   * @return The number of Links built.
+   */
+  long getLinksBuilt();
+
+  /**
+   * Returns the lengths of the link lists serializers wrote.
+   * @return The histogram of encoded link list lengths.
+   */
+  Map<Long, Long> getLinkListLengths();
+
+  /**
+   * Returns the number of typed getters that found a value of the wrong type.
+   * @return The number of coercion failures.
+   */
+  long getCoercionFailures();
+
+  /**
+   * Zeroes every counter.
+   */
+  void reset();
+}
@@ -0,0 +1,424 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * A compiled RFC 6570 URI template, up to and including level 4 (all operators, prefix and explode modifiers). Templates are parsed once by compile() and are
+ * immutable and thread-safe afterwards, so a single instance can expand the hrefs of every item of a collection. Expansion only allocates the resulting String
+ * and its builder.
+ * <p>
+ * Variable values may be null (undefined), Maps (associative arrays), Iterables or arrays (lists); anything else is expanded through String.valueOf().
+ * @see <a href="http://tools.ietf.org/html/rfc6570">RFC 6570</a>
+ * @see Link.Builder#href(UriTemplate, Object...)
+ * @author Jason Rose
+ */
+public final class UriTemplate {
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+  private static final String RESERVED = ":/?#[]@!$&'()*+,;=";
+
+  /**
+   * The expansion rules of an expression operator, from RFC 6570 appendix A.
+   */
+  private enum Operator {
+    SIMPLE('\0', "", ',', false, "", false),
+    RESERVED('+', "", ',', false, "", true),
+    FRAGMENT('#', "#", ',', false, "", true),
+    LABEL('.', ".", '.', false, "", false),
+    PATH('/', "/", '/', false, "", false),
+    PARAMETER(';', ";", ';', true, "", false),
+    QUERY('?', "?", '&', true, "=", false),
+    CONTINUATION('&', "&", '&', true, "=", false);
+
+    final char symbol;
+    final String first;
+    final char separator;
+    final boolean named;
+    final String ifEmpty;
+    final boolean allowReserved;
+
+    private Operator(final char symbol, final String first, final char separator, final boolean named, final String ifEmpty, final boolean allowReserved) {
+      this.symbol = symbol;
+      this.first = first;
+      this.separator = separator;
+      this.named = named;
+      this.ifEmpty = ifEmpty;
+      this.allowReserved = allowReserved;
+    }
+
+    static Operator of(final char symbol) {
+      for( final Operator operator : values() ) {
+        if( operator.symbol == symbol ) {
+          return operator;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final class VarSpec {
+    final String name;
+    final int index;
+    final int prefix;
+    final boolean explode;
+
+    VarSpec(final String name, final int index, final int prefix, final boolean explode) {
+      this.name = name;
+      this.index = index;
+      this.prefix = prefix;
+      this.explode = explode;
+    }
+  }
+
+  /**
+   * A literal run, already percent-encoded, or an expression.
+   */
+  private static final class Part {
+    final String literal;
+    final Operator operator;
+    final VarSpec[] variables;
+
+    Part(final String literal) {
+      this.literal = literal;
+      operator = null;
+      variables = null;
+    }
+
+    Part(final Operator operator, final VarSpec[] variables) {
+      literal = null;
+      this.operator = operator;
+      this.variables = variables;
+    }
+  }
+
+  private final String template;
+  private final Part[] parts;
+  private final List<String> names;
+  private final int literalLength;
+
+  private UriTemplate(final String template, final Part[] parts, final List<String> names, final int literalLength) {
+    this.template = template;
+    this.parts = parts;
+    this.names = names;
+    this.literalLength = literalLength;
+  }
+
+  /**
+   * Parses the template.
+   * @param template The template, such as <code>/widgets/{id}{?fields*}</code>.
+   * @return The compiled template.
+   * @throws IllegalArgumentException If the template is malformed.
+   */
+  public static UriTemplate compile(final String template) {
+    final List<Part> parts = Lists.newArrayList();
+    final List<String> names = Lists.newArrayList();
+    final StringBuilder literal = new StringBuilder();
+    int literalLength = 0;
+    int i = 0;
+    while( i < template.length() ) {
+      final char c = template.charAt(i);
+      if( c == '{' ) {
+        final int end = template.indexOf('}', i);
+        Preconditions.checkArgument(end > i + 1, "unterminated or empty expression at %s in %s", i, template);
+        if( literal.length() > 0 ) {
+          literalLength += literal.length();
+          parts.add(new Part(literal.toString()));
+          literal.setLength(0);
+        }
+        parts.add(parseExpression(template, i + 1, end, names));
+        i = end + 1;
+      } else {
+        Preconditions.checkArgument(c != '}', "unmatched } at %s in %s", i, template);
+        i = appendLiteral(template, i, literal);
+      }
+    }
+    if( literal.length() > 0 ) {
+      literalLength += literal.length();
+      parts.add(new Part(literal.toString()));
+    }
+    return new UriTemplate(template, parts.toArray(new Part[parts.size()]), ImmutableList.copyOf(names), literalLength);
+  }
+
+  /**
+   * Expands the template with named variables.
+   * @param variables The variable values by name. Missing names are undefined.
+   * @return The expanded URI reference.
+   */
+  public String expand(final Map<String, ?> variables) {
+    final Object[] values = new Object[names.size()];
+    for( int i = 0; i < values.length; i++ ) {
+      values[i] = variables.get(names.get(i));
+    }
+    return expandValues(values);
+  }
+
+  /**
+   * Expands the template with positional variables, which avoids building a Map per expansion.
+   * @param values The variable values, in the order of getVariableNames(). Missing trailing values are undefined.
+   * @return The expanded URI reference.
+   */
+  public String expand(final Object... values) {
+    return expandValues(values);
+  }
+
+  /**
+   * Returns the distinct variable names of the template, in order of first appearance.
+   * @return The variable names.
+   */
+  public List<String> getVariableNames() {
+    return names;
+  }
+
+  @Override
+  public boolean equals(final Object object) {
+    return object instanceof UriTemplate && template.equals(((UriTemplate) object).template);
+  }
+
+  @Override
+  public int hashCode() {
+    return template.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return template;
+  }
+
+  private String expandValues(final Object[] values) {
+    final StringBuilder out = new StringBuilder(literalLength + 16 * names.size());
+    for( final Part part : parts ) {
+      if( part.literal != null ) {
+        out.append(part.literal);
+      } else {
+        expandExpression(part, values, out);
+      }
+    }
+    return out.toString();
+  }
+
+  private static void expandExpression(final Part part, final Object[] values, final StringBuilder out) {
+    final Operator operator = part.operator;
+    boolean first = true;
+    for( final VarSpec spec : part.variables ) {
+      final Object value = spec.index < values.length ? values[spec.index] : null;
+      if( !isDefined(value) ) {
+        continue;
+      }
+      if( first ) {
+        out.append(operator.first);
+        first = false;
+      } else {
+        out.append(operator.separator);
+      }
+      if( value instanceof Map ) {
+        expandMap(operator, spec, (Map<?, ?>) value, out);
+      } else if( value instanceof Iterable || value instanceof Object[] ) {
+        expandList(operator, spec, value instanceof Iterable ? ((Iterable<?>) value).iterator() : Lists.newArrayList((Object[]) value).iterator(), out);
+      } else {
+        final String string = String.valueOf(value);
+        if( operator.named ) {
+          out.append(spec.name);
+          if( string.isEmpty() ) {
+            out.append(operator.ifEmpty);
+            continue;
+          }
+          out.append('=');
+        }
+        encode(string, prefixEnd(string, spec.prefix), operator.allowReserved, out);
+      }
+    }
+  }
+
+  private static void expandList(final Operator operator, final VarSpec spec, final Iterator<?> elements, final StringBuilder out) {
+    boolean first = true;
+    if( !spec.explode && operator.named ) {
+      out.append(spec.name).append('=');
+    }
+    while( elements.hasNext() ) {
+      final Object element = elements.next();
+      if( element == null ) {
+        continue;
+      }
+      if( !first ) {
+        out.append(spec.explode ? operator.separator : ',');
+      }
+      first = false;
+      final String string = String.valueOf(element);
+      if( spec.explode && operator.named ) {
+        out.append(spec.name);
+        if( string.isEmpty() ) {
+          out.append(operator.ifEmpty);
+          continue;
+        }
+        out.append('=');
+      }
+      encode(string, string.length(), operator.allowReserved, out);
+    }
+  }
+
+  private static void expandMap(final Operator operator, final VarSpec spec, final Map<?, ?> map, final StringBuilder out) {
+    boolean first = true;
+    if( !spec.explode && operator.named ) {
+      out.append(spec.name).append('=');
+    }
+    for( final Map.Entry<?, ?> entry : map.entrySet() ) {
+      if( entry.getValue() == null ) {
+        continue;
+      }
+      if( !first ) {
+        out.append(spec.explode ? operator.separator : ',');
+      }
+      first = false;
+      final String key = String.valueOf(entry.getKey());
+      final String value = String.valueOf(entry.getValue());
+      encode(key, key.length(), operator.allowReserved, out);
+      if( spec.explode ) {
+        if( value.isEmpty() && operator.named ) {
+          out.append(operator.ifEmpty);
+          continue;
+        }
+        out.append('=');
+      } else {
+        out.append(',');
+      }
+      encode(value, value.length(), operator.allowReserved, out);
+    }
+  }
+
+  private static boolean isDefined(final Object value) {
+    if( value == null ) {
+      return false;
+    }
+    if( value instanceof Map ) {
+      for( final Object element : ((Map<?, ?>) value).values() ) {
+        if( element != null ) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if( value instanceof Iterable || value instanceof Object[] ) {
+      for( final Object element : value instanceof Iterable ? (Iterable<?>) value : Lists.newArrayList((Object[]) value) ) {
+        if( element != null ) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the end index of a prefix of the given number of code points, or the whole length if there's no prefix modifier.
+   */
+  private static int prefixEnd(final String value, final int prefix) {
+    if( prefix <= 0 || prefix >= value.length() ) {
+      return value.length();
+    }
+    return value.offsetByCodePoints(0, Math.min(prefix, value.codePointCount(0, value.length())));
+  }
+
+  /**
+   * Appends the value, percent-encoding everything but unreserved characters, and with allowReserved also reserved characters and existing pct-encoded triplets.
+   */
+  private static void encode(final String value, final int end, final boolean allowReserved, final StringBuilder out) {
+    for( int i = 0; i < end; i++ ) {
+      final char c = value.charAt(i);
+      if( isUnreserved(c) ) {
+        out.append(c);
+      } else if( allowReserved && (RESERVED.indexOf(c) >= 0 || isPercentTriplet(value, i, end)) ) {
+        out.append(c);
+      } else if( c < 0x80 ) {
+        appendPercent(c, out);
+      } else {
+        final int length = Character.isHighSurrogate(c) && i + 1 < end ? 2 : 1;
+        for( final byte b : value.substring(i, i + length).getBytes(Charsets.UTF_8) ) {
+          appendPercent(b & 0xff, out);
+        }
+        i += length - 1;
+      }
+    }
+  }
+
+  private static boolean isUnreserved(final char c) {
+    return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '.' || c == '_' || c == '~';
+  }
+
+  private static boolean isPercentTriplet(final String value, final int index, final int end) {
+    return value.charAt(index) == '%' && index + 2 < end && Character.digit(value.charAt(index + 1), 16) >= 0 && Character.digit(value.charAt(index + 2), 16) >= 0;
+  }
+
+  private static void appendPercent(final int b, final StringBuilder out) {
+    out.append('%').append(HEX[b >> 4]).append(HEX[b & 0xf]);
+  }
+
+  /**
+   * Appends the literal character at the index, percent-encoding it unless it may appear in a URI as-is, and returns the index of the next character.
+   */
+  private static int appendLiteral(final String template, final int index, final StringBuilder literal) {
+    final char c = template.charAt(index);
+    if( isUnreserved(c) || RESERVED.indexOf(c) >= 0 || isPercentTriplet(template, index, template.length()) ) {
+      literal.append(c);
+      return index + 1;
+    }
+    final int length = Character.isHighSurrogate(c) && index + 1 < template.length() ? 2 : 1;
+    encode(template.substring(index, index + length), length, false, literal);
+    return index + length;
+  }
+
+  private static Part parseExpression(final String template, final int start, final int end, final List<String> names) {
+    int i = start;
+    final Operator operator = Operator.of(template.charAt(i));
+    if( operator != null ) {
+      i++;
+    } else {
+      Preconditions.checkArgument("=,!@|".indexOf(template.charAt(i)) < 0, "reserved operator %s in %s", template.charAt(i), template);
+    }
+    final List<VarSpec> specs = Lists.newArrayList();
+    for( final String varspec : template.substring(i, end).split(",", -1) ) {
+      String name = varspec;
+      int prefix = 0;
+      boolean explode = false;
+      if( varspec.endsWith("*") ) {
+        explode = true;
+        name = varspec.substring(0, varspec.length() - 1);
+      } else if( varspec.indexOf(':') >= 0 ) {
+        name = varspec.substring(0, varspec.indexOf(':'));
+        final String digits = varspec.substring(varspec.indexOf(':') + 1);
+        Preconditions.checkArgument(digits.matches("[1-9][0-9]{0,3}"), "invalid prefix %s in %s", varspec, template);
+        prefix = Integer.parseInt(digits);
+      }
+      Preconditions.checkArgument(name.matches("([A-Za-z0-9_]|%[0-9A-Fa-f]{2})+(\\.([A-Za-z0-9_]|%[0-9A-Fa-f]{2})+)*"), "invalid variable name '%s' in %s", name,
+          template);
+      int index = names.indexOf(name);
+      if( index < 0 ) {
+        index = names.size();
+        names.add(name);
+      }
+      specs.add(new VarSpec(name, index, prefix, explode));
+    }
+    return new Part(operator == null ? Operator.SIMPLE : operator, specs.toArray(new VarSpec[specs.size()]));
+  }
+}
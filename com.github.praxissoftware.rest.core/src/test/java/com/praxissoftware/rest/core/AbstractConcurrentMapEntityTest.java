@@ -0,0 +1,158 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class AbstractConcurrentMapEntityTest {
+
+  private static final Function<Object, Object> INCREMENT = new Function<Object, Object>() {
+    @Override
+    public Object apply(final Object current) {
+      return Long.valueOf(((Long) current).longValue() + 1);
+    }
+  };
+
+  @Test
+  public void testCopyConstructorSkipsNulls() {
+    final Map<String, Object> map = Maps.newHashMap();
+    map.put("one", "two");
+    map.put("three", null);
+    final C c = new C(map);
+    Assert.assertEquals(1, c.size());
+    Assert.assertEquals("two", c.get("one"));
+  }
+
+  @Test
+  public void testPutIfAbsent() {
+    final C c = new C();
+    Assert.assertNull(c.putIfAbsent("one", "two"));
+    Assert.assertEquals("two", c.putIfAbsent("one", "three"));
+    Assert.assertEquals("two", c.get("one"));
+  }
+
+  @Test
+  public void testCompute() {
+    final C c = new C();
+    Assert.assertEquals("a", c.compute("one", new Function<Object, Object>() {
+      @Override
+      public Object apply(final Object current) {
+        return current == null ? "a" : current + "b";
+      }
+    }));
+    Assert.assertEquals("ab", c.compute("one", new Function<Object, Object>() {
+      @Override
+      public Object apply(final Object current) {
+        return current + "b";
+      }
+    }));
+    Assert.assertNull(c.compute("one", new Function<Object, Object>() {
+      @Override
+      public Object apply(final Object current) {
+        return null;
+      }
+    }));
+    Assert.assertFalse(c.containsKey("one"));
+  }
+
+  @Test
+  public void testMerge() {
+    final C c = new C();
+    Assert.assertEquals(Long.valueOf(1), c.merge("count", Long.valueOf(1), INCREMENT));
+    Assert.assertEquals(Long.valueOf(2), c.merge("count", Long.valueOf(1), INCREMENT));
+  }
+
+  @Test
+  public void testReplaceAndRemove() {
+    final C c = new C();
+    c.put("one", "two");
+    Assert.assertFalse(c.replace("one", "x", "three"));
+    Assert.assertTrue(c.replace("one", "two", "three"));
+    Assert.assertFalse(c.remove("one", "two"));
+    Assert.assertTrue(c.remove("one", "three"));
+    Assert.assertTrue(c.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentMerges() throws Exception {
+    final C c = new C();
+    final int threads = 8;
+    final int iterations = 20000;
+    final List<Long> totals = run(threads, new Callable<Long>() {
+      @Override
+      public Long call() {
+        for( int i = 0; i < iterations; i++ ) {
+          c.merge("count", Long.valueOf(1), INCREMENT);
+          c.putIfAbsent("key" + i % 100, "value");
+          c.put("last", Thread.currentThread().getName());
+        }
+        return Long.valueOf(iterations);
+      }
+    });
+    Assert.assertEquals(threads, totals.size());
+    Assert.assertEquals(threads * iterations, c.getLong("count"));
+    Assert.assertEquals(102, c.size());
+  }
+
+  static <T> List<T> run(final int threads, final Callable<T> task) throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Future<T>> futures = Lists.newArrayList();
+      for( int i = 0; i < threads; i++ ) {
+        futures.add(executor.submit(new Callable<T>() {
+          @Override
+          public T call() throws Exception {
+            start.await();
+            return task.call();
+          }
+        }));
+      }
+      start.countDown();
+      final List<T> results = Lists.newArrayList();
+      for( final Future<T> future : futures ) {
+        results.add(future.get());
+      }
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static final class C extends AbstractConcurrentMapEntity {
+    public C() {
+      super();
+    }
+
+    public C(final Map<String, Object> map) {
+      super(map);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.net.URI;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class AbstractImmutableMapEntityTest {
+
+  @Test
+  public void testEqualsHashMap() {
+    final Map<String, Object> map = Maps.newHashMap();
+    map.put("one", "two");
+    map.put("three", Long.valueOf(4));
+    final I i = new I(map);
+    Assert.assertTrue(i.equals(map));
+    Assert.assertTrue(map.equals(i));
+    Assert.assertEquals(map.hashCode(), i.hashCode());
+  }
+
+  @Test
+  public void testLinkEqualsHashMap() {
+    for( final Link link : new Link[] { new Link.Builder().href("HTTP://Example.com/a").rel("self").build(),
+        new Link.Builder().href(URI.create("HTTP://Example.com/a")).rel("self").build() } ) {
+      final Map<String, Object> map = Maps.newHashMap(link);
+      Assert.assertTrue(link.equals(map));
+      Assert.assertTrue(map.equals(link));
+      Assert.assertEquals(map.hashCode(), link.hashCode());
+      Assert.assertTrue(Sets.<Object> newHashSet(link).contains(map));
+      map.put("href", URI.create("http://example.com/a"));
+      Assert.assertTrue(link.equals(map));
+      Assert.assertTrue(map.equals(link));
+      Assert.assertEquals(map.hashCode(), link.hashCode());
+    }
+  }
+
+  @Test
+  public void testNotEqualsHashMap() {
+    final I i = new I(ImmutableMap.<String, Object> of("one", "two"));
+    final Map<String, Object> map = Maps.newHashMap();
+    map.put("one", "three");
+    Assert.assertFalse(i.equals(map));
+    Assert.assertFalse(map.equals(i));
+    map.put("one", "two");
+    map.put("four", "five");
+    Assert.assertFalse(i.equals(map));
+    Assert.assertFalse(map.equals(i));
+  }
+
+  @Test
+  public void testEqualsOtherEntity() {
+    final I a = new I(ImmutableMap.<String, Object> of("one", "two"));
+    final I b = new I(ImmutableMap.<String, Object> of("one", "two"));
+    final I c = new I(ImmutableMap.<String, Object> of("one", "three"));
+    Assert.assertTrue(a.equals(a));
+    Assert.assertTrue(a.equals(b));
+    Assert.assertEquals(a.hashCode(), b.hashCode());
+    Assert.assertTrue(a.hashCode() != c.hashCode());
+    Assert.assertFalse(a.equals(c));
+    Assert.assertFalse(c.equals(a));
+  }
+
+  @Test
+  public void testEqualsNonMap() {
+    final I i = new I(ImmutableMap.<String, Object> of());
+    Assert.assertFalse(i.equals(null));
+    Assert.assertFalse(i.equals("{}"));
+    Assert.assertTrue(i.equals(Maps.newHashMap()));
+  }
+
+  @Test
+  public void testHashCodeIsStable() {
+    final I i = new I(ImmutableMap.<String, Object> of("one", "two"));
+    final int hash = i.hashCode();
+    Assert.assertEquals(hash, i.hashCode());
+    Assert.assertEquals(ImmutableMap.of("one", "two").hashCode(), hash);
+  }
+
+  private static final class I extends AbstractImmutableMapEntity {
+    public I(final Map<String, Object> map) {
+      super(map);
+    }
+  }
+}
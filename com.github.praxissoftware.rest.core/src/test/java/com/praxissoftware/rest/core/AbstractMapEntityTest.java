@@ -18,13 +18,16 @@ package com.praxissoftware.rest.core;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import junit.framework.Assert;
 
 import org.junit.Test;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
@@ -42,6 +45,32 @@ public class AbstractMapEntityTest {
     Assert.assertNotNull(a.get("test"));
   }
 
+  @Test
+  public void testAdoptedMapIsNotCopied() {
+    final Map<String, Object> map = Maps.newHashMap();
+    map.put("test", "one");
+    final A a = new A(AbstractMapEntity.adopt(map));
+    Assert.assertEquals("one", a.get("test"));
+    a.put("other", "two");
+    Assert.assertEquals("two", map.get("other"));
+  }
+
+  @Test
+  public void testAdoptedSortedMapKeepsOrder() {
+    final A a = new A(AbstractMapEntity.adopt(Maps.<String, Object> newTreeMap()));
+    a.put("b", "one");
+    a.put("a", "two");
+    Assert.assertEquals("a", a.keySet().iterator().next());
+  }
+
+  @Test
+  public void testExpectedSize() {
+    final A a = new A(100);
+    Assert.assertTrue(a.isEmpty());
+    a.put("one", "two");
+    Assert.assertEquals("two", a.get("one"));
+  }
+
   @Test
   public void testSortedMapConstructorPreservesSorting() {
     final A a = new A(Maps.<String, Object> newTreeMap());
@@ -207,6 +236,25 @@ public class AbstractMapEntityTest {
     Assert.assertFalse(map.equals(a));
   }
 
+  @Test
+  public void testOrderedPutAll() {
+    final Map<String, Object> concurrent = new ConcurrentHashMap<String, Object>();
+    final Map<String, Object> withNulls = Maps.newHashMap();
+    for( int i = 0; i < 10; i++ ) {
+      concurrent.put("k" + i, Integer.valueOf(i));
+      withNulls.put("k" + i, i % 3 == 0 ? null : Integer.valueOf(-i));
+    }
+    for( final FieldOrder order : new FieldOrder[] { FieldOrder.INSERTION, FieldOrder.SORTED } ) {
+      final A a = new A(order);
+      a.putAll(concurrent);
+      Assert.assertEquals(concurrent, a);
+      a.putAll(withNulls);
+      Assert.assertEquals(6, a.size());
+      Assert.assertFalse(a.containsKey("k3"));
+      Assert.assertEquals(Integer.valueOf(-4), a.get("k4"));
+    }
+  }
+
   @Test
   public void testRemove() {
     final A a = new A();
@@ -238,6 +286,265 @@ public class AbstractMapEntityTest {
     Assert.assertEquals("two", a.values().iterator().next());
   }
 
+  @Test
+  public void testTypedAccessors() {
+    final A a = new A();
+    a.putLong("long", 5L);
+    a.putInt("int", 6);
+    a.putDouble("double", 1.5);
+    a.putBoolean("bool", true);
+    Assert.assertEquals(5L, a.getLong("long"));
+    Assert.assertEquals(6, a.getInt("int"));
+    Assert.assertEquals(6L, a.getLong("int"));
+    Assert.assertEquals(1.5, a.getDouble("double"), 0);
+    Assert.assertEquals(1L, a.getLong("double"));
+    Assert.assertTrue(a.getBoolean("bool"));
+    Assert.assertEquals(7L, a.getLong("missing", 7L));
+    Assert.assertFalse(a.getBoolean("missing", false));
+  }
+
+  @Test
+  public void testTypedValuesAppearBoxedInMapView() {
+    final A a = new A();
+    a.put("name", "x");
+    a.putLong("long", 5L);
+    a.putInt("int", 6);
+    a.putDouble("double", 1.5);
+    a.putBoolean("bool", true);
+    final Map<String, Object> expected = Maps.newHashMap();
+    expected.put("name", "x");
+    expected.put("long", Long.valueOf(5));
+    expected.put("int", Integer.valueOf(6));
+    expected.put("double", Double.valueOf(1.5));
+    expected.put("bool", Boolean.TRUE);
+    Assert.assertEquals(expected, a);
+    Assert.assertEquals(a, expected);
+    Assert.assertEquals(expected.hashCode(), a.hashCode());
+    Assert.assertEquals(expected.entrySet(), a.entrySet());
+    Assert.assertEquals(expected.keySet(), a.keySet());
+    Assert.assertEquals(5, a.size());
+    Assert.assertEquals(Long.valueOf(5), a.get("long"));
+    Assert.assertTrue(a.containsKey("bool"));
+    Assert.assertTrue(a.containsValue(Double.valueOf(1.5)));
+    Assert.assertFalse(a.containsValue(Long.valueOf(6)));
+  }
+
+  @Test
+  public void testBoxedAndTypedPutsReplaceEachOther() {
+    final A a = new A();
+    a.put("one", "text");
+    a.putLong("one", 1L);
+    Assert.assertEquals(1, a.size());
+    Assert.assertEquals(Long.valueOf(1), a.put("one", (Object) "again"));
+    Assert.assertEquals("again", a.get("one"));
+    Assert.assertEquals(1, a.size());
+    a.putInt("one", 2);
+    Assert.assertEquals(Integer.valueOf(2), a.remove("one"));
+    Assert.assertTrue(a.isEmpty());
+  }
+
+  @Test
+  public void testTypedValuesAreRemovableThroughViews() {
+    final A a = new A();
+    a.putLong("one", 1L);
+    a.put("two", "2");
+    a.putDouble("three", 3.0);
+    final Iterator<Map.Entry<String, Object>> entries = a.entrySet().iterator();
+    while( entries.hasNext() ) {
+      if( !"two".equals(entries.next().getKey()) ) {
+        entries.remove();
+      }
+    }
+    Assert.assertEquals(ImmutableMap.of("two", "2"), a);
+    a.putLong("four", 4L);
+    a.clear();
+    Assert.assertTrue(a.isEmpty());
+  }
+
+  @Test
+  public void testTypedValuesMatchHashMapUnderChurn() {
+    final A a = new A();
+    final Map<String, Object> expected = Maps.newHashMap();
+    final Random random = new Random(42);
+    for( int i = 0; i < 5000; i++ ) {
+      final String key = "k" + random.nextInt(64);
+      switch( random.nextInt(3) ) {
+      case 0:
+        expected.put(key, Long.valueOf(i));
+        a.putLong(key, i);
+        break;
+      case 1:
+        Assert.assertEquals(expected.put(key, "v" + i), a.put(key, (Object) ("v" + i)));
+        break;
+      default:
+        Assert.assertEquals(expected.remove(key), a.remove(key));
+      }
+      Assert.assertEquals(expected.size(), a.size());
+    }
+    Assert.assertEquals(expected, a);
+  }
+
+  @Test
+  public void testTypedAccessorFailures() {
+    final A a = new A();
+    a.put("text", "x");
+    a.putLong("big", Long.MAX_VALUE);
+    a.putBoolean("bool", true);
+    try {
+      a.getLong("missing");
+      Assert.fail();
+    } catch( final NullPointerException npe ) {
+      // pass
+    }
+    try {
+      a.getLong("text");
+      Assert.fail();
+    } catch( final ClassCastException cce ) {
+      // pass
+    }
+    try {
+      a.getLong("bool");
+      Assert.fail();
+    } catch( final ClassCastException cce ) {
+      // pass
+    }
+    try {
+      a.getInt("big");
+      Assert.fail();
+    } catch( final IllegalArgumentException iae ) {
+      // pass
+    }
+  }
+
+  @Test
+  public void testTypedPutKeepsSortedOrder() {
+    final A a = new A(Maps.<String, Object> newTreeMap());
+    a.putLong("c", 3L);
+    a.putInt("a", 1);
+    a.put("b", "two");
+    final Iterator<String> keys = a.keySet().iterator();
+    Assert.assertEquals("a", keys.next());
+    Assert.assertEquals("b", keys.next());
+    Assert.assertEquals("c", keys.next());
+    Assert.assertEquals(3L, a.getLong("c"));
+  }
+
+  @Test
+  public void testMapPutKeepsBoxedTypes() {
+    final A a = new A();
+    a.putLong("n", 1L);
+    Assert.assertEquals(Long.valueOf(1), a.put("n", 2));
+    Assert.assertEquals(Integer.valueOf(2), a.get("n"));
+    a.put("c", 'x');
+    a.put("f", 0.5f);
+    a.put("s", (short) 3);
+    Assert.assertEquals(Character.valueOf('x'), a.get("c"));
+    Assert.assertEquals(Float.valueOf(0.5f), a.get("f"));
+    Assert.assertEquals(Short.valueOf((short) 3), a.get("s"));
+  }
+
+  @Test
+  public void testInsertionOrder() {
+    final A a = new A(FieldOrder.INSERTION);
+    a.put("c", 3L);
+    a.put("a", "one");
+    a.put("b", Boolean.TRUE);
+    a.put("c", "three");
+    Assert.assertEquals(Lists.newArrayList("c", "a", "b"), Lists.newArrayList(a.keySet()));
+    Assert.assertTrue(a.containsKey("b"));
+    Assert.assertEquals("three", a.get("c"));
+    Assert.assertEquals(Lists.newArrayList("c", "a", "b"), Lists.newArrayList(new A(FieldOrder.INSERTION, a).keySet()));
+  }
+
+  @Test
+  public void testSortedOrderIsCanonical() {
+    final A first = new A(FieldOrder.SORTED);
+    first.put("b", 2);
+    first.put("a", 1);
+    first.put("\u00e9", 3);
+    first.put("Z", 0);
+    final A second = new A(FieldOrder.SORTED, ImmutableMap.<String, Object> of("\u00e9", 3, "Z", 0, "a", 1, "b", 2));
+    Assert.assertEquals(Lists.newArrayList("Z", "a", "b", "\u00e9"), Lists.newArrayList(first.keySet()));
+    Assert.assertEquals(Lists.newArrayList(first.entrySet()), Lists.newArrayList(second.entrySet()));
+  }
+
+  @Test
+  public void testOrderedMatchesReferenceMapsUnderChurn() {
+    final A sorted = new A(FieldOrder.SORTED);
+    final A inserted = new A(FieldOrder.INSERTION);
+    final Map<String, Object> expectedSorted = Maps.newTreeMap();
+    final Map<String, Object> expectedInserted = Maps.newLinkedHashMap();
+    final Random random = new Random(42);
+    for( int i = 0; i < 5000; i++ ) {
+      final String key = "k" + random.nextInt(100);
+      if( random.nextInt(3) == 0 ) {
+        Assert.assertEquals(expectedSorted.remove(key), sorted.remove(key));
+        Assert.assertEquals(expectedInserted.remove(key), inserted.remove(key));
+      } else {
+        Assert.assertEquals(expectedSorted.put(key, "v" + i), sorted.put(key, "v" + i));
+        Assert.assertEquals(expectedInserted.put(key, "v" + i), inserted.put(key, "v" + i));
+      }
+    }
+    Assert.assertEquals(Lists.newArrayList(expectedSorted.entrySet()), Lists.newArrayList(sorted.entrySet()));
+    Assert.assertEquals(Lists.newArrayList(expectedInserted.entrySet()), Lists.newArrayList(inserted.entrySet()));
+    final A copy = new A(FieldOrder.SORTED, expectedInserted);
+    Assert.assertEquals(Lists.newArrayList(expectedSorted.entrySet()), Lists.newArrayList(copy.entrySet()));
+    for( final String key : expectedSorted.keySet() ) {
+      Assert.assertEquals(expectedSorted.get(key), copy.get(key));
+    }
+    for( final Iterator<String> keys = inserted.keySet().iterator(); keys.hasNext(); ) {
+      if( keys.next().hashCode() % 2 == 0 ) {
+        keys.remove();
+      }
+    }
+    for( final Iterator<String> keys = expectedInserted.keySet().iterator(); keys.hasNext(); ) {
+      if( keys.next().hashCode() % 2 == 0 ) {
+        keys.remove();
+      }
+    }
+    Assert.assertEquals(Lists.newArrayList(expectedInserted.entrySet()), Lists.newArrayList(inserted.entrySet()));
+    for( final String key : expectedInserted.keySet() ) {
+      Assert.assertEquals(expectedInserted.get(key), inserted.get(key));
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testTypedPutOnImmutable() {
+    new A(ImmutableMap.<String, Object> of()).put("a", 1L);
+  }
+
+  @Test
+  public void testFieldIsTypeChecked() {
+    final Field<String> name = Field.of("name", String.class);
+    for( final A a : new A[] { new A(), new A(FieldOrder.INSERTION), new A(FieldOrder.SORTED) } ) {
+      Assert.assertNull(a.get(name));
+      a.put(name, "one");
+      Assert.assertEquals("one", a.get(name));
+      a.put("name", 1L);
+      try {
+        a.get(name);
+        Assert.fail(a.getClass().getName());
+      } catch( final ClassCastException e ) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testFieldConvertsValues() {
+    final Field<Long> count = Field.of("count", Long.class, new Function<Object, Long>() {
+      @Override
+      public Long apply(final Object input) {
+        return Long.valueOf(input.toString());
+      }
+    });
+    final A a = new A();
+    a.put("count", "42");
+    Assert.assertEquals(Long.valueOf(42), a.get(count));
+    a.put("count", 7L);
+    Assert.assertEquals(Long.valueOf(7), a.get(count));
+  }
+
   private static final class A extends AbstractMapEntity {
     public A() {
       super();
@@ -246,5 +553,21 @@ public class AbstractMapEntityTest {
     public A(final Map<String, Object> map) {
       super(map);
     }
+
+    public A(final AbstractMapEntity.Adopted map) {
+      super(map);
+    }
+
+    public A(final int expectedSize) {
+      super(expectedSize);
+    }
+
+    public A(final FieldOrder order) {
+      super(order);
+    }
+
+    public A(final FieldOrder order, final Map<String, Object> map) {
+      super(order, map);
+    }
   }
 }
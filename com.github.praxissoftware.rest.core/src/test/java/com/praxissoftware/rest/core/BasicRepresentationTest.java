@@ -35,4 +35,23 @@ public class BasicRepresentationTest {
     rep.setLinks(links);
     Assert.assertEquals(links, rep.getLinks());
   }
+
+  @Test
+  public void testExpectedSize() {
+    final BasicRepresentation rep = new BasicRepresentation(16);
+    Assert.assertNotNull(rep.getLinks());
+    Assert.assertEquals(1, rep.size());
+  }
+
+  @Test
+  public void testSnapshotLinks() {
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.getLinks().add(new Link.Builder().href("/a").build());
+    final List<Link> snapshot = rep.snapshotLinks();
+    rep.getLinks().add(new Link.Builder().href("/b").build());
+    Assert.assertEquals(1, snapshot.size());
+    Assert.assertEquals(2, rep.getLinks().size());
+    rep.setLinks(Lists.newArrayList(rep.getLinks()));
+    Assert.assertEquals(rep.getLinks(), rep.snapshotLinks());
+  }
 }
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class ConcurrentRepresentationTest {
+
+  @Test
+  public void testDefaultState() {
+    final ConcurrentRepresentation rep = new ConcurrentRepresentation();
+    Assert.assertTrue(rep.getLinks() instanceof ConcurrentAppendList);
+    Assert.assertTrue(rep.getLinks().isEmpty());
+  }
+
+  @Test
+  public void testSetLinksCopiesIntoConcurrentList() {
+    final ConcurrentRepresentation rep = new ConcurrentRepresentation();
+    final List<Link> links = Lists.newArrayList(new Link.Builder().rel("a").build(), new Link.Builder().rel("b").build());
+    rep.setLinks(links);
+    Assert.assertTrue(rep.getLinks() instanceof ConcurrentAppendList);
+    Assert.assertEquals(links, rep.getLinks());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testLinksAreAppendOnly() {
+    final ConcurrentRepresentation rep = new ConcurrentRepresentation();
+    rep.getLinks().add(new Link.Builder().rel("a").build());
+    rep.getLinks().remove(0);
+  }
+
+  @Test
+  public void testConcurrentAppends() throws Exception {
+    final ConcurrentRepresentation rep = new ConcurrentRepresentation();
+    final int threads = 8;
+    final int iterations = 5000;
+    final AtomicInteger ids = new AtomicInteger();
+    AbstractConcurrentMapEntityTest.run(threads, new Callable<Void>() {
+      @Override
+      public Void call() {
+        final List<Link> links = rep.getLinks();
+        for( int i = 0; i < iterations; i++ ) {
+          links.add(new Link.Builder().href(URI.create("/" + ids.getAndIncrement())).build());
+          // readers run alongside the writers
+          links.get(links.size() - 1);
+        }
+        return null;
+      }
+    });
+    final List<Link> links = rep.getLinks();
+    Assert.assertEquals(threads * iterations, links.size());
+    final Set<URI> hrefs = Sets.newHashSet();
+    for( final Link link : links ) {
+      hrefs.add(link.getHref());
+    }
+    Assert.assertEquals(threads * iterations, hrefs.size());
+  }
+}
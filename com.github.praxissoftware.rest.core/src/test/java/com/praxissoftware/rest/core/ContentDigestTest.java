@@ -0,0 +1,79 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+
+public class ContentDigestTest {
+
+  @Test
+  public void testIndependentOfFieldOrderAndNumberType() {
+    final BasicRepresentation hashed = new BasicRepresentation(FieldOrder.HASHED);
+    final BasicRepresentation sorted = new BasicRepresentation(FieldOrder.SORTED);
+    hashed.put("count", 3);
+    hashed.put("name", "x");
+    hashed.put("big", BigInteger.TEN);
+    sorted.put("big", Long.valueOf(10));
+    sorted.put("name", "x");
+    sorted.put("count", 3L);
+    Assert.assertEquals(ContentDigest.of(hashed), ContentDigest.of(sorted));
+    Assert.assertEquals(ContentDigest.etag(hashed), ContentDigest.etag(sorted));
+  }
+
+  @Test
+  public void testDistinguishesContent() {
+    final HashCode base = ContentDigest.of(ImmutableMap.of("a", "bc"));
+    Assert.assertFalse(base.equals(ContentDigest.of(ImmutableMap.of("ab", "c"))));
+    Assert.assertFalse(base.equals(ContentDigest.of(ImmutableMap.of("a", ImmutableList.of("bc")))));
+    Assert.assertFalse(base.equals(ContentDigest.of(ImmutableMap.of("a", "bc", "d", "e"))));
+    Assert.assertFalse(ContentDigest.of(ImmutableList.of(ImmutableList.of(), "x")).equals(ContentDigest.of(ImmutableList.of(ImmutableList.of("x")))));
+    Assert.assertFalse(ContentDigest.of(ImmutableMap.of("a", 1)).equals(ContentDigest.of(ImmutableMap.of("a", 1.0))));
+  }
+
+  @Test
+  public void testLinksDigestRawHrefAndCacheIt() {
+    final Link link = new Link.Builder().href("not a uri").rel("self").build();
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.getLinks().add(link);
+    final HashCode digest = ContentDigest.of(rep);
+    Assert.assertNotNull(link.getEncodedForm(ContentDigest.class));
+    Assert.assertEquals(ContentDigest.of(ImmutableMap.of("href", "not a uri", "rel", "self")), ContentDigest.of(link));
+    rep.put("title", "changed");
+    Assert.assertFalse(digest.equals(ContentDigest.of(rep)));
+  }
+
+  @Test
+  public void testEtagIsQuotedHex() {
+    final String etag = ContentDigest.etag(Maps.newHashMap());
+    Assert.assertTrue(etag, etag.matches("\"[0-9a-f]{32}\""));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStreamedValuesAreRejected() {
+    final Map<String, Object> map = ImmutableMap.<String, Object> of("items", Streamed.of(Iterators.forArray("a")));
+    ContentDigest.of(map);
+  }
+}
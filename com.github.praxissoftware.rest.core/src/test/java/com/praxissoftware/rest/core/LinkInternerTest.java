@@ -0,0 +1,57 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.net.URI;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class LinkInternerTest {
+
+  @Test
+  public void testWeakInterning() {
+    final LinkInterner interner = LinkInterner.weak();
+    final Link first = new Link.Builder().interner(interner).href(URI.create("/")).rel("self").build();
+    final Link second = new Link.Builder().interner(interner).href(URI.create("/")).rel("self").build();
+    final Link other = new Link.Builder().interner(interner).href(URI.create("/")).rel("next").build();
+    Assert.assertSame(first, second);
+    Assert.assertNotSame(first, other);
+    Assert.assertEquals(1, interner.getHitCount());
+    Assert.assertEquals(2, interner.getMissCount());
+  }
+
+  @Test
+  public void testBoundedInterning() {
+    final LinkInterner interner = LinkInterner.bounded(10);
+    final Link first = interner.intern(new Link.Builder().rel("self").build());
+    Assert.assertSame(first, interner.intern(new Link.Builder().rel("self").build()));
+    for( int i = 0; i < 100; i++ ) {
+      interner.intern(new Link.Builder().rel("item" + i).build());
+    }
+    Assert.assertEquals(1, interner.getHitCount());
+    Assert.assertEquals(101, interner.getMissCount());
+  }
+
+  @Test
+  public void testBuilderWithoutInterner() {
+    final Link first = new Link.Builder().rel("self").build();
+    final Link second = new Link.Builder().rel("self").build();
+    Assert.assertNotSame(first, second);
+    Assert.assertEquals(first, second);
+  }
+}
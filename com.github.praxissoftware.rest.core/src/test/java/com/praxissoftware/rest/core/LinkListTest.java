@@ -0,0 +1,123 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class LinkListTest {
+
+  private static Link link(final String href, final String rel) {
+    return new Link.Builder().href(href).rel(rel).build();
+  }
+
+  @Test
+  public void testLookupByRel() {
+    final LinkList links = new LinkList();
+    final Link self = link("/a", "self");
+    final Link first = link("/b", "item");
+    final Link second = link("/c", "item");
+    links.add(self);
+    links.add(first);
+    links.add(new Link.Builder().href("/d").build());
+    links.add(second);
+    Assert.assertSame(self, links.getLink("self"));
+    Assert.assertSame(first, links.getLink("item"));
+    Assert.assertEquals(ImmutableList.of(first, second), links.getLinks("item"));
+    Assert.assertNull(links.getLink("next"));
+    Assert.assertTrue(links.getLinks("next").isEmpty());
+  }
+
+  @Test
+  public void testAppendsKeepTheIndex() {
+    final LinkList links = new LinkList();
+    links.add(link("/a", "item"));
+    Assert.assertEquals(1, links.getLinks("item").size());
+    for( int i = 0; i < 50; i++ ) {
+      links.add(link("/b" + i, "item"));
+    }
+    links.addAll(ImmutableList.of(link("/c", "next"), link("/d", "item")));
+    Assert.assertEquals(52, links.getLinks("item").size());
+    Assert.assertEquals("/d", links.getLinks("item").get(51).getRawHref());
+    Assert.assertEquals("/c", links.getLink("next").getRawHref());
+  }
+
+  @Test
+  public void testOtherChangesRebuildTheIndex() {
+    final LinkList links = new LinkList(ImmutableList.of(link("/a", "self"), link("/b", "item"), link("/c", "item")));
+    Assert.assertEquals("/b", links.getLink("item").getRawHref());
+    links.remove(1);
+    Assert.assertEquals("/c", links.getLink("item").getRawHref());
+    links.set(0, link("/d", "item"));
+    Assert.assertNull(links.getLink("self"));
+    Assert.assertEquals(2, links.getLinks("item").size());
+    links.add(0, link("/e", "self"));
+    Assert.assertEquals("/e", links.getLink("self").getRawHref());
+    links.subList(1, 3).clear();
+    Assert.assertTrue(links.getLinks("item").isEmpty());
+    links.clear();
+    Assert.assertNull(links.getLink("self"));
+  }
+
+  @Test
+  public void testConcurrentLookupsOnAnUnindexedList() throws InterruptedException {
+    final LinkList links = new LinkList();
+    for( int i = 0; i < 2000; i++ ) {
+      links.add(link("/" + i, "r" + i % 7));
+    }
+    final AtomicInteger failures = new AtomicInteger();
+    final Thread[] threads = new Thread[4];
+    for( int t = 0; t < threads.length; t++ ) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for( int i = 0; i < 7; i++ ) {
+            final List<Link> found = links.getLinks("r" + i);
+            if( found.size() != (2000 - i + 6) / 7 || !("/" + i).equals(links.getLink("r" + i).getRawHref()) ) {
+              failures.incrementAndGet();
+            }
+          }
+        }
+      };
+    }
+    for( final Thread thread : threads ) {
+      thread.start();
+    }
+    for( final Thread thread : threads ) {
+      thread.join();
+    }
+    Assert.assertEquals(0, failures.get());
+  }
+
+  @Test
+  public void testRepresentationLookup() {
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.getLinks().add(link("/a", "self"));
+    Assert.assertEquals("/a", rep.getLink("self").getRawHref());
+    final List<Link> plain = ImmutableList.of(link("/b", "item"), link("/c", "item"));
+    rep.setLinks(plain);
+    Assert.assertNull(rep.getLink("self"));
+    Assert.assertEquals(plain, rep.getLinks("item"));
+    rep.setLinks(new Link.BatchBuilder(link("/", "item"), 2).href("/x").href("/y").build());
+    Assert.assertTrue(rep.getLinks() instanceof LinkList);
+    Assert.assertEquals("/y", rep.getLinks("item").get(1).getRawHref());
+  }
+}
@@ -17,12 +17,16 @@ package com.praxissoftware.rest.core;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.Assert;
 
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 public class LinkTest {
 
@@ -37,6 +41,17 @@ public class LinkTest {
     Assert.assertEquals("1024", link.getLength());
   }
 
+  @Test
+  public void testFields() {
+    final Link link = new Link.Builder(ImmutableMap.of("href", "/a", "extra", "x")).rel("foo").length("1024").build();
+    Assert.assertEquals(URI.create("/a"), link.get(Link.HREF));
+    Assert.assertEquals("foo", link.get(Link.REL));
+    Assert.assertEquals("1024", link.get(Link.LENGTH));
+    Assert.assertEquals(Long.valueOf(1024), link.get(Link.LENGTH_IN_BYTES));
+    Assert.assertNull(link.get(Link.TITLE));
+    Assert.assertEquals("x", link.get(Field.of("extra", String.class)));
+  }
+
   @Test
   public void testHref() throws URISyntaxException {
     final Link link = new Link.Builder().href(new URI("/")).build();
@@ -80,6 +95,82 @@ public class LinkTest {
     Assert.assertEquals("two", link.getRel());
   }
   
+  @Test
+  public void testSeedMapKeysFillWellKnownFields() {
+    final Link link = new Link.Builder(ImmutableMap.of("rel", "one", "extra", "two")).type("text/foo").build();
+    Assert.assertEquals("one", link.getRel());
+    Assert.assertEquals("text/foo", link.getType());
+    Assert.assertEquals("two", link.get("extra"));
+    Assert.assertEquals(3, link.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSeedMapConflictsWithBuilder() {
+    new Link.Builder(ImmutableMap.of("rel", "one")).rel("two").build();
+  }
+
+  @Test
+  public void testMapContract() throws URISyntaxException {
+    final Link link = new Link.Builder(ImmutableMap.of("extra", "one")).href(new URI("/")).rel("two").build();
+    final Map<String, Object> expected = Maps.newHashMap();
+    expected.put("extra", "one");
+    expected.put("href", new URI("/"));
+    expected.put("rel", "two");
+    Assert.assertEquals(expected, link);
+    Assert.assertEquals(link, expected);
+    Assert.assertEquals(expected.hashCode(), link.hashCode());
+    Assert.assertEquals(expected.entrySet(), link.entrySet());
+    Assert.assertEquals(expected.keySet(), link.keySet());
+    Assert.assertTrue(link.containsKey("rel"));
+    Assert.assertFalse(link.containsKey("type"));
+    Assert.assertFalse(link.containsKey(null));
+    Assert.assertTrue(link.containsValue("two"));
+    Assert.assertNull(link.get("title"));
+  }
+
+  @Test
+  public void testRawHref() throws URISyntaxException {
+    final StringBuilder raw = new StringBuilder("/widgets/1");
+    final Link link = new Link.Builder().href(raw).rel("item").build();
+    raw.setLength(0);
+    Assert.assertEquals("/widgets/1", link.getRawHref());
+    Assert.assertEquals(new URI("/widgets/1"), link.getHref());
+    Assert.assertSame(link.getHref(), link.getHref());
+    Assert.assertEquals(new Link.Builder().href(new URI("/widgets/1")).rel("item").build(), link);
+    Assert.assertEquals("/", new Link.Builder().href(new URI("/")).build().getRawHref());
+    Assert.assertNull(new Link.Builder().build().getRawHref());
+  }
+
+  @Test
+  public void testInvalidRawHrefFailsOnRead() {
+    final Link link = new Link.Builder().href("not a uri").rel("item").build();
+    Assert.assertEquals("not a uri", link.getRawHref());
+    Assert.assertEquals("item", link.getRel());
+    try {
+      link.getHref();
+      Assert.fail();
+    } catch( final IllegalArgumentException e ) {
+      // pass
+    }
+  }
+
+  @Test
+  public void testComparingToleratesInvalidHref() throws URISyntaxException {
+    final Link first = new Link.Builder().href("a b c ^^").rel("item").build();
+    final Link second = new Link.Builder().href("a b c ^^").rel("item").build();
+    Assert.assertEquals(first, second);
+    Assert.assertEquals(first.hashCode(), second.hashCode());
+    Assert.assertEquals(first.entrySet(), second.entrySet());
+    Assert.assertEquals("{href=a b c ^^, rel=item}", first.toString());
+    Assert.assertFalse(first.equals(new Link.Builder().href("a b c").rel("item").build()));
+    final Link parsed = new Link.Builder().href(new URI("/a")).build();
+    final Link raw = new Link.Builder().href("/a").build();
+    Assert.assertEquals(parsed, raw);
+    Assert.assertEquals(raw, parsed);
+    Assert.assertEquals(parsed.hashCode(), raw.hashCode());
+    Assert.assertFalse(raw.equals(ImmutableMap.of("href", "/a")));
+  }
+
   @Test
   public void testImmutability() throws URISyntaxException {
     final Link link = new Link.Builder().build();
@@ -89,6 +180,12 @@ public class LinkTest {
     trySetting(link, "type", "test");
     trySetting(link, "length", "test");
     trySetting(link, "hrefLang", "test");
+    try {
+      link.clear();
+      Assert.fail("clear");
+    } catch (UnsupportedOperationException uoe) {
+      // pass
+    }
   }
 
   private void trySetting(Link link, String key, Object value) {
@@ -99,4 +196,21 @@ public class LinkTest {
       // pass
     }
   }
+
+  @Test
+  public void testBatchBuilder() {
+    final Link prototype = new Link.Builder(ImmutableMap.of("profile", "urn:x")).href("/ignored").rel("item").type("text/foo").build();
+    final Link.BatchBuilder batch = new Link.BatchBuilder(prototype, 3);
+    final UriTemplate template = UriTemplate.compile("/widgets/{id}");
+    final List<Link> links = batch.href("/a").href(URI.create("/b")).href(template, 3).build();
+    Assert.assertEquals(3, links.size());
+    Assert.assertEquals(new Link.Builder(ImmutableMap.of("profile", "urn:x")).href("/a").rel("item").type("text/foo").build(), links.get(0));
+    Assert.assertEquals(URI.create("/b"), links.get(1).getHref());
+    Assert.assertEquals("/widgets/3", links.get(2).getRawHref());
+    Assert.assertEquals("/ignored", prototype.getRawHref());
+    Assert.assertTrue(batch.hrefs(Lists.newArrayList("/c")).build().size() == 1);
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.setLinks(links);
+    Assert.assertSame(links, rep.getLinks());
+  }
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class PersistentMapEntityTest {
+
+  @Test
+  public void testWithAndWithoutLeaveTheOriginalAlone() {
+    final PersistentMapEntity original = PersistentMapEntity.copyOf(ImmutableMap.of("a", 1, "b", 2));
+    final PersistentMapEntity added = original.with("c", 3);
+    final PersistentMapEntity removed = added.without("a");
+    Assert.assertEquals(ImmutableMap.of("a", 1, "b", 2), original);
+    Assert.assertEquals(ImmutableMap.of("a", 1, "b", 2, "c", 3), added);
+    Assert.assertEquals(ImmutableMap.of("b", 2, "c", 3), removed);
+    Assert.assertSame(original, original.without("z"));
+    Assert.assertSame(PersistentMapEntity.of(), original.without("a").without("b"));
+  }
+
+  @Test
+  public void testChurnMatchesHashMap() {
+    final Random random = new Random(42);
+    final Map<String, Object> expected = Maps.newHashMap();
+    PersistentMapEntity entity = PersistentMapEntity.of();
+    final List<PersistentMapEntity> versions = Lists.newArrayList();
+    final List<Map<String, Object>> snapshots = Lists.newArrayList();
+    for( int i = 0; i < 20000; i++ ) {
+      final String key = "k" + random.nextInt(2000);
+      if( random.nextInt(3) == 0 ) {
+        expected.remove(key);
+        entity = entity.without(key);
+      } else {
+        expected.put(key, i);
+        entity = entity.with(key, i);
+      }
+      if( i % 1000 == 0 ) {
+        versions.add(entity);
+        snapshots.add(ImmutableMap.copyOf(expected));
+      }
+    }
+    Assert.assertEquals(expected, entity);
+    Assert.assertEquals(expected.hashCode(), entity.hashCode());
+    Assert.assertEquals(snapshots, versions);
+  }
+
+  @Test
+  public void testBuilderChurnMatchesHashMap() {
+    final Random random = new Random(7);
+    final Map<String, Object> expected = Maps.newHashMap();
+    final PersistentMapEntity.Builder builder = PersistentMapEntity.builder();
+    PersistentMapEntity previous = builder.build();
+    Map<String, Object> previousExpected = ImmutableMap.of();
+    for( int i = 0; i < 20000; i++ ) {
+      final String key = "k" + random.nextInt(500);
+      if( random.nextInt(3) == 0 ) {
+        expected.remove(key);
+        builder.remove(key);
+      } else {
+        expected.put(key, i);
+        builder.put(key, i);
+      }
+      if( i % 500 == 0 ) {
+        Assert.assertEquals(previousExpected, previous);
+        previous = builder.build();
+        previousExpected = ImmutableMap.copyOf(expected);
+      }
+    }
+    Assert.assertEquals(expected, builder.build());
+    Assert.assertEquals(previousExpected, previous);
+  }
+
+  @Test
+  public void testHashCollisions() {
+    // "Aa" and "BB" share a hash code, so every string made of them collides
+    final List<String> keys = Lists.newArrayList("");
+    for( int i = 0; i < 4; i++ ) {
+      final List<String> longer = Lists.newArrayList();
+      for( final String key : keys ) {
+        longer.add(key + "Aa");
+        longer.add(key + "BB");
+      }
+      keys.clear();
+      keys.addAll(longer);
+    }
+    PersistentMapEntity entity = PersistentMapEntity.of();
+    for( final String key : keys ) {
+      entity = entity.with(key, key.length());
+    }
+    Assert.assertEquals(16, entity.size());
+    Assert.assertEquals(Integer.valueOf(8), entity.get("AaBBAaBB"));
+    for( final String key : keys ) {
+      entity = entity.without(key);
+    }
+    Assert.assertTrue(entity.isEmpty());
+  }
+
+  @Test
+  public void testBuilder() {
+    final PersistentMapEntity.Builder builder = PersistentMapEntity.builder();
+    for( int i = 0; i < 100; i++ ) {
+      builder.put("k" + i, i);
+    }
+    final PersistentMapEntity first = builder.remove("k0").build();
+    builder.put("k1", "changed").remove("k2");
+    final PersistentMapEntity second = builder.build();
+    Assert.assertEquals(99, first.size());
+    Assert.assertEquals(Integer.valueOf(1), first.get("k1"));
+    Assert.assertEquals(98, second.size());
+    Assert.assertEquals("changed", second.get("k1"));
+    Assert.assertEquals(first.without("k2").with("k1", "changed"), second);
+    Assert.assertEquals(first, first.toBuilder().put("k100", 100).build().without("k100"));
+  }
+
+  @Test
+  public void testLinks() {
+    final Link self = new Link.Builder().rel("self").build();
+    final Link next = new Link.Builder().rel("next").build();
+    final PersistentMapEntity entity = PersistentMapEntity.of().with("title", "t");
+    Assert.assertEquals(ImmutableList.of(), entity.getLinks());
+    final PersistentMapEntity linked = entity.withLink(self).withLink(next);
+    Assert.assertEquals(ImmutableList.of(self, next), linked.getLinks());
+    Assert.assertEquals(ImmutableList.of(self, next, self), linked.toBuilder().addLink(self).build().getLinks());
+    Assert.assertEquals(ImmutableList.of(), entity.getLinks());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutable() {
+    PersistentMapEntity.of().with("a", 1).put("b", 2);
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullValue() {
+    PersistentMapEntity.of().with("a", null);
+  }
+}
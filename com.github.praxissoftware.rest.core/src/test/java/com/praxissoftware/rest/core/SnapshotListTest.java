@@ -0,0 +1,126 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class SnapshotListTest {
+
+  @Test
+  public void testBehavesLikeArrayList() {
+    final SnapshotList<String> list = new SnapshotList<String>();
+    final List<String> expected = Lists.newArrayList();
+    for( int i = 0; i < 20; i++ ) {
+      list.add("e" + i);
+      expected.add("e" + i);
+    }
+    list.add(3, "x");
+    expected.add(3, "x");
+    list.remove(7);
+    expected.remove(7);
+    list.set(0, "y");
+    expected.set(0, "y");
+    list.subList(10, 14).clear();
+    expected.subList(10, 14).clear();
+    Assert.assertEquals(expected, list);
+    Assert.assertEquals(expected.hashCode(), list.hashCode());
+    list.clear();
+    Assert.assertTrue(list.isEmpty());
+  }
+
+  @Test
+  public void testSnapshotIsUnaffectedByWrites() {
+    final SnapshotList<String> list = new SnapshotList<String>(ImmutableList.of("a", "b", "c"));
+    final List<String> snapshot = list.snapshot();
+    list.add("d");
+    list.set(0, "x");
+    list.remove(1);
+    list.add(0, "y");
+    Assert.assertEquals(ImmutableList.of("a", "b", "c"), snapshot);
+    Assert.assertEquals(ImmutableList.of("y", "x", "c", "d"), list);
+    list.clear();
+    Assert.assertEquals(ImmutableList.of("a", "b", "c"), snapshot);
+  }
+
+  @Test
+  public void testIteratorRemoves() {
+    final SnapshotList<String> list = new SnapshotList<String>(ImmutableList.of("a", "b", "c", "d"));
+    final List<String> snapshot = list.snapshot();
+    final Iterator<String> iterator = list.iterator();
+    iterator.next();
+    iterator.remove();
+    Assert.assertEquals(ImmutableList.of("b", "c", "d"), list);
+    list.removeAll(ImmutableList.of("c"));
+    list.retainAll(ImmutableList.of("d"));
+    Assert.assertEquals(ImmutableList.of("d"), list);
+    Assert.assertEquals(ImmutableList.of("a", "b", "c", "d"), snapshot);
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void testIteratorFailsFast() {
+    final SnapshotList<String> list = new SnapshotList<String>(ImmutableList.of("a", "b"));
+    for( final String element : list ) {
+      list.add(element);
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSnapshotIsReadOnly() {
+    final SnapshotList<String> list = new SnapshotList<String>();
+    list.add("a");
+    list.snapshot().add("b");
+  }
+
+  @Test
+  public void testSnapshotsReadOnOtherThreads() throws Exception {
+    final SnapshotList<Integer> list = new SnapshotList<Integer>();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final List<Future<Long>> sums = Lists.newArrayList();
+      for( int i = 0; i < 1000; i++ ) {
+        list.add(Integer.valueOf(i));
+        final List<Integer> snapshot = list.snapshot();
+        sums.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() {
+            long sum = 0;
+            for( final Integer value : snapshot ) {
+              sum += value.intValue();
+            }
+            return Long.valueOf(sum);
+          }
+        }));
+      }
+      for( int i = 0; i < sums.size(); i++ ) {
+        Assert.assertEquals((long) i * (i + 1) / 2, sums.get(i).get().longValue());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class StreamingRepresentationTest {
+
+  private static final UriTemplate NEXT = UriTemplate.compile("/widgets{?after}");
+  private static final UriTemplate PREV = UriTemplate.compile("/widgets{?before}");
+
+  private static Link link(final String rel) {
+    return new Link.Builder().rel(rel).build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Link> links(final StreamingRepresentation rep) {
+    return Lists.newArrayList((Iterable<Link>) rep.get("links"));
+  }
+
+  @Test
+  public void testLinksAreStreamedOnce() {
+    final StreamingRepresentation rep = new StreamingRepresentation(ImmutableList.of(link("a"), link("b")).iterator());
+    rep.getLinks().add(link("self"));
+    Assert.assertEquals(ImmutableList.of(link("self"), link("a"), link("b")), links(rep));
+    Assert.assertTrue(((Streamed<?>) rep.get("links")).isConsumed());
+    try {
+      links(rep);
+      Assert.fail();
+    } catch( final IllegalStateException e ) {
+      // pass
+    }
+  }
+
+  @Test
+  public void testLinksStayAfterEmbeddedItems() {
+    final StreamingRepresentation rep = new StreamingRepresentation();
+    rep.put("count", 2);
+    rep.embed("items", ImmutableList.of("x", "y").iterator());
+    Assert.assertEquals(ImmutableList.of("count", "items", "links"), ImmutableList.copyOf(rep.keySet()));
+  }
+
+  @Test
+  public void testPagingLinks() {
+    final Iterator<Integer> source = ImmutableList.of(1, 2, 3, 4, 5).iterator();
+    final CursorPage<Integer> page = new CursorPage<Integer>(source, 3, Functions.toStringFunction()).nextLink(NEXT).prevLink(PREV);
+    final StreamingRepresentation rep = new StreamingRepresentation();
+    rep.page("items", page);
+    Assert.assertEquals(ImmutableList.of(1, 2, 3), Lists.newArrayList((Iterable<?>) rep.get("items")));
+    final List<Link> links = links(rep);
+    Assert.assertEquals(2, links.size());
+    Assert.assertEquals("next", links.get(0).getRel());
+    Assert.assertEquals(URI.create("/widgets?after=3"), links.get(0).getHref());
+    Assert.assertEquals("prev", links.get(1).getRel());
+    Assert.assertEquals("/widgets?before=1", links.get(1).getRawHref());
+    Assert.assertEquals(4, source.next().intValue());
+  }
+
+  @Test
+  public void testLastPageHasNoNextLink() {
+    final CursorPage<String> page = new CursorPage<String>(ImmutableList.of("a", "b").iterator(), 2, new Function<String, String>() {
+      @Override
+      public String apply(final String input) {
+        return input.toUpperCase();
+      }
+    }).nextLink(NEXT);
+    Assert.assertEquals(ImmutableList.of("a", "b"), Lists.newArrayList(page));
+    Assert.assertEquals(2, page.getCount());
+    Assert.assertTrue(page.getLinks().isEmpty());
+  }
+}
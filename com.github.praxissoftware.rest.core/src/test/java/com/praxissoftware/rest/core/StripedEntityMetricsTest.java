@@ -0,0 +1,134 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+public class StripedEntityMetricsTest {
+
+  private final StripedEntityMetrics metrics = new StripedEntityMetrics();
+
+  @Before
+  public void setUp() {
+    EntityInstrumentation.install(metrics);
+  }
+
+  @After
+  public void tearDown() throws JMException {
+    EntityInstrumentation.install(null);
+    StripedEntityMetrics.unregister();
+  }
+
+  @Test
+  public void testCountsConstructionsBySource() {
+    new BasicRepresentation();
+    new BasicRepresentation(FieldOrder.SORTED);
+    new Link.Builder().href("/a").rel("self").build();
+    final Map<String, Object> source = Maps.newHashMap();
+    source.put("a", "b");
+    new Entity(source);
+    new Entity(new TreeMap<String, Object>(source));
+    new Entity(ImmutableMap.copyOf(source));
+    final Map<String, Long> constructions = metrics.getConstructions();
+    Assert.assertEquals(Long.valueOf(2), constructions.get("EMPTY"));
+    Assert.assertEquals(Long.valueOf(1), constructions.get("HASH_COPY"));
+    Assert.assertEquals(Long.valueOf(1), constructions.get("SORTED_COPY"));
+    Assert.assertEquals(Long.valueOf(1), constructions.get("SHARED"));
+    Assert.assertEquals(Long.valueOf(1), constructions.get("ADOPTED"));
+    Assert.assertEquals(2, metrics.getDefensiveCopies());
+    Assert.assertEquals(1, metrics.getLinksBuilt());
+    Assert.assertEquals(ImmutableMap.of(0L, 2L, 1L, 3L, 2L, 1L), metrics.getEntitySizes());
+  }
+
+  @Test
+  public void testCountsCoercionFailures() {
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.put("text", "x");
+    try {
+      rep.getLong("text");
+      Assert.fail();
+    } catch( final ClassCastException e ) {
+      // pass
+    }
+    Assert.assertEquals(1, metrics.getCoercionFailures());
+    metrics.reset();
+    Assert.assertEquals(0, metrics.getCoercionFailures());
+  }
+
+  @Test
+  public void testCountsFailedConversions() {
+    final Link link = new Link.Builder().href("/a").length("large").build();
+    try {
+      link.get(Link.LENGTH_IN_BYTES);
+      Assert.fail();
+    } catch( final ClassCastException e ) {
+      Assert.assertTrue(e.getMessage().startsWith("length "));
+    }
+    Assert.assertEquals(1, metrics.getCoercionFailures());
+  }
+
+  @Test
+  public void testCountsAcrossThreads() throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(4);
+    for( int t = 0; t < 4; t++ ) {
+      new Thread() {
+        @Override
+        public void run() {
+          for( int i = 0; i < 1000; i++ ) {
+            metrics.linksEncoded(i);
+          }
+          done.countDown();
+        }
+      }.start();
+    }
+    done.await();
+    long total = 0;
+    for( final Long count : metrics.getLinkListLengths().values() ) {
+      total += count.longValue();
+    }
+    Assert.assertEquals(4000, total);
+    Assert.assertEquals(Long.valueOf(4 * 488), metrics.getLinkListLengths().get(512L));
+  }
+
+  @Test
+  public void testJmx() throws JMException {
+    metrics.register();
+    new BasicRepresentation();
+    final Object built = ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(StripedEntityMetrics.OBJECT_NAME), "LinksBuilt");
+    Assert.assertEquals(Long.valueOf(0), built);
+    Assert.assertNotNull(ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName(StripedEntityMetrics.OBJECT_NAME), "Constructions"));
+  }
+
+  private static final class Entity extends AbstractMapEntity {
+    Entity(final Map<String, Object> source) {
+      super(source);
+    }
+  }
+}
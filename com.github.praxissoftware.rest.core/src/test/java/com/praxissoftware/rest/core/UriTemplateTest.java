@@ -0,0 +1,147 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.core;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+public class UriTemplateTest {
+
+  /**
+   * The variables of the RFC 6570 section 3.2 examples.
+   */
+  private static final Map<String, Object> VARIABLES;
+
+  static {
+    final Map<String, Object> variables = Maps.newHashMap();
+    variables.put("count", ImmutableList.of("one", "two", "three"));
+    variables.put("dom", ImmutableList.of("example", "com"));
+    variables.put("dub", "me/too");
+    variables.put("hello", "Hello World!");
+    variables.put("half", "50%");
+    variables.put("var", "value");
+    variables.put("who", "fred");
+    variables.put("base", "http://example.com/home/");
+    variables.put("path", "/foo/bar");
+    variables.put("list", ImmutableList.of("red", "green", "blue"));
+    variables.put("keys", ImmutableMap.of("semi", ";", "dot", ".", "comma", ","));
+    variables.put("v", "6");
+    variables.put("x", "1024");
+    variables.put("y", "768");
+    variables.put("empty", "");
+    variables.put("empty_keys", ImmutableMap.of());
+    VARIABLES = variables;
+  }
+
+  private static void assertExpansion(final String expected, final String template) {
+    Assert.assertEquals(expected, UriTemplate.compile(template).expand(VARIABLES));
+  }
+
+  @Test
+  public void testSimpleExpansion() {
+    assertExpansion("value", "{var}");
+    assertExpansion("Hello%20World%21", "{hello}");
+    assertExpansion("50%25", "{half}");
+    assertExpansion("OX", "O{empty}X");
+    assertExpansion("OX", "O{undef}X");
+    assertExpansion("1024,768", "{x,y}");
+    assertExpansion("?1024,", "?{x,empty}");
+    assertExpansion("val", "{var:3}");
+    assertExpansion("red,green,blue", "{list}");
+    assertExpansion("red,green,blue", "{list*}");
+    assertExpansion("semi,%3B,dot,.,comma,%2C", "{keys}");
+    assertExpansion("semi=%3B,dot=.,comma=%2C", "{keys*}");
+  }
+
+  @Test
+  public void testReservedAndFragmentExpansion() {
+    assertExpansion("http://example.com/home/index", "{+base}index");
+    assertExpansion("/foo/bar/here", "{+path}/here");
+    assertExpansion("Hello%20World!", "{+hello}");
+    assertExpansion("50%25", "{+half}");
+    assertExpansion("X#value", "X{#var}");
+    assertExpansion("#/foo/b", "{#path:6}");
+    assertExpansion("#red,green,blue", "{#list*}");
+  }
+
+  @Test
+  public void testLabelPathAndParameterExpansion() {
+    assertExpansion("www.example.com", "www{.dom*}");
+    assertExpansion("X.red,green,blue", "X{.list}");
+    assertExpansion("X", "X{.empty_keys}");
+    assertExpansion("/value/1024/here", "{/var,x}/here");
+    assertExpansion("/red/green/blue/value", "{/list*,var}");
+    assertExpansion("/v/value", "{/var:1,var}");
+    assertExpansion(";x=1024;y=768;empty", "{;x,y,empty}");
+    assertExpansion(";list=red;list=green;list=blue", "{;list*}");
+    assertExpansion(";semi=%3B;dot=.;comma=%2C", "{;keys*}");
+  }
+
+  @Test
+  public void testQueryExpansion() {
+    assertExpansion("?x=1024&y=768&empty=", "{?x,y,empty}");
+    assertExpansion("?list=red,green,blue", "{?list}");
+    assertExpansion("?list=red&list=green&list=blue", "{?list*}");
+    assertExpansion("?fixed=yes&x=1024", "?fixed=yes{&x}");
+    assertExpansion("?var=val", "{?var:3}");
+    assertExpansion("", "{?undef}");
+  }
+
+  @Test
+  public void testPositionalExpansion() {
+    final UriTemplate template = UriTemplate.compile("/widgets/{id}{?fields,id}");
+    Assert.assertEquals(Arrays.asList("id", "fields"), template.getVariableNames());
+    Assert.assertEquals("/widgets/7?fields=a,b&id=7", template.expand(7, new String[] { "a", "b" }));
+    Assert.assertEquals("/widgets/7?id=7", template.expand(7));
+  }
+
+  @Test
+  public void testLiteralsAndUnicode() {
+    Assert.assertEquals("/caf%C3%A9/%F0%9F%98%80", UriTemplate.compile("/caf\u00e9/{v}").expand("\ud83d\ude00"));
+    Assert.assertEquals("/a%20b", UriTemplate.compile("/a b").expand());
+  }
+
+  @Test
+  public void testMalformedTemplates() {
+    for( final String template : new String[] { "{", "{}", "}", "{var:0}", "{var:10000}", "{=var}", "{va r}", "{var,}" } ) {
+      try {
+        UriTemplate.compile(template);
+        Assert.fail(template);
+      } catch( final IllegalArgumentException e ) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testLinkBuilderDefersUri() {
+    final UriTemplate template = UriTemplate.compile("/widgets/{id}");
+    final Link link = new Link.Builder().href(template, 42).rel("item").build();
+    Assert.assertEquals(URI.create("/widgets/42"), link.getHref());
+    Assert.assertSame(link.getHref(), link.getHref());
+    Assert.assertEquals(new Link.Builder().href(URI.create("/widgets/42")).rel("item").build(), link);
+    Assert.assertEquals(URI.create("/widgets/42"), new Link.Builder().href(template, ImmutableMap.of("id", 42)).build().getHref());
+  }
+}
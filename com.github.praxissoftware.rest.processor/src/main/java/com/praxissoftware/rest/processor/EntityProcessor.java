@@ -0,0 +1,439 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates an AbstractFieldEntity for each interface marked with GenerateEntity. The generated class has a Java field per property, getters and setters
+ * that read and write it directly, getSlot() and setSlot() methods that switch over the schema's slots for the Map view, and an accept() method that hands the
+ * fields to the encoders in order, unboxed, with no map lookups.
+ * <p>
+ * The processor refers to the core types by name, so it doesn't need Core on its own classpath, only on that of the code it compiles.
+ * @author Jason Rose
+ */
+@SupportedAnnotationTypes(EntityProcessor.GENERATE_ENTITY)
+public class EntityProcessor extends AbstractProcessor {
+
+  static final String GENERATE_ENTITY = "com.praxissoftware.rest.core.GenerateEntity";
+  private static final String REPRESENTATION = "com.praxissoftware.rest.core.Representation";
+  private static final String CORE = "com.praxissoftware.rest.core.";
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment round) {
+    final TypeElement annotation = processingEnv.getElementUtils().getTypeElement(GENERATE_ENTITY);
+    if( annotation == null ) {
+      return false;
+    }
+    for( final Element element : round.getElementsAnnotatedWith(annotation) ) {
+      if( element.getKind() != ElementKind.INTERFACE ) {
+        error("@GenerateEntity only applies to interfaces", element);
+      } else if( !((TypeElement) element).getTypeParameters().isEmpty() ) {
+        error("@GenerateEntity interfaces cannot have type parameters", element);
+      } else {
+        generate((TypeElement) element, annotation);
+      }
+    }
+    return true;
+  }
+
+  private void generate(final TypeElement type, final TypeElement annotation) {
+    final Map<String, Property> properties = new LinkedHashMap<String, Property>();
+    if( !collect(type, (DeclaredType) type.asType(), properties) ) {
+      return;
+    }
+    final List<Property> slots = new ArrayList<Property>(properties.values());
+    for( final Property property : slots ) {
+      if( property.getter == null ) {
+        error("setter without a getter for property " + property.key, property.setterElement);
+        return;
+      }
+    }
+    if( slots.size() > Long.SIZE ) {
+      error("@GenerateEntity supports at most 64 properties", type);
+      return;
+    }
+    final PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+    final String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+    final String simpleName = className(type, annotation);
+    final String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    try {
+      final PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter());
+      try {
+        new Source(out, type, packageName, simpleName, slots, isRepresentation(type), generatedAnnotation()).write();
+      } finally {
+        out.close();
+      }
+    } catch( final IOException e ) {
+      error("could not write " + qualifiedName + ": " + e.getMessage(), type);
+    }
+  }
+
+  /**
+   * Collects the properties of the interface, then those of its superinterfaces, with their types as seen from the annotated interface.
+   * @return Whether every abstract method is a property accessor.
+   */
+  private boolean collect(final TypeElement type, final DeclaredType root, final Map<String, Property> properties) {
+    boolean valid = true;
+    for( final ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements()) ) {
+      if( method.getModifiers().contains(Modifier.STATIC) || !method.getModifiers().contains(Modifier.ABSTRACT) ) {
+        continue;
+      }
+      final ExecutableType signature = (ExecutableType) processingEnv.getTypeUtils().asMemberOf(root, method);
+      final String name = method.getSimpleName().toString();
+      final int params = method.getParameters().size();
+      if( params == 0 && name.length() > 3 && name.startsWith("get") && signature.getReturnType().getKind() != TypeKind.VOID ) {
+        valid &= addGetter(properties, decapitalize(name.substring(3)), method, signature.getReturnType());
+      } else if( params == 0 && name.length() > 2 && name.startsWith("is") && signature.getReturnType().getKind() == TypeKind.BOOLEAN ) {
+        valid &= addGetter(properties, decapitalize(name.substring(2)), method, signature.getReturnType());
+      } else if( params == 1 && name.length() > 3 && name.startsWith("set") && signature.getReturnType().getKind() == TypeKind.VOID ) {
+        valid &= addSetter(properties, decapitalize(name.substring(3)), method, signature.getParameterTypes().get(0));
+      } else {
+        error("not a property getter or setter: " + name, method);
+        valid = false;
+      }
+    }
+    for( final TypeMirror parent : type.getInterfaces() ) {
+      valid &= collect((TypeElement) processingEnv.getTypeUtils().asElement(parent), root, properties);
+    }
+    return valid;
+  }
+
+  private boolean addGetter(final Map<String, Property> properties, final String key, final ExecutableElement method, final TypeMirror type) {
+    final Property property = property(properties, key);
+    if( property.getter != null ) {
+      return true;
+    }
+    if( type.getKind().isPrimitive() && !Source.isSupportedPrimitive(type.getKind()) ) {
+      error("unsupported property type " + type + "; use int, long, double, boolean or a reference type", method);
+      return false;
+    }
+    if( property.type != null && !processingEnv.getTypeUtils().isSameType(property.type, type) ) {
+      error("getter and setter of " + key + " disagree on its type", method);
+      return false;
+    }
+    property.getter = method.getSimpleName().toString();
+    property.type = type;
+    return true;
+  }
+
+  private boolean addSetter(final Map<String, Property> properties, final String key, final ExecutableElement method, final TypeMirror type) {
+    final Property property = property(properties, key);
+    if( property.setter != null ) {
+      return true;
+    }
+    if( property.type != null && !processingEnv.getTypeUtils().isSameType(property.type, type) ) {
+      error("getter and setter of " + key + " disagree on its type", method);
+      return false;
+    }
+    property.setter = method.getSimpleName().toString();
+    property.setterElement = method;
+    property.type = type;
+    return true;
+  }
+
+  private static Property property(final Map<String, Property> properties, final String key) {
+    Property property = properties.get(key);
+    if( property == null ) {
+      property = new Property(key);
+      properties.put(key, property);
+    }
+    return property;
+  }
+
+  private String className(final TypeElement type, final TypeElement annotation) {
+    for( final AnnotationMirror mirror : type.getAnnotationMirrors() ) {
+      if( mirror.getAnnotationType().asElement().equals(annotation) ) {
+        for( final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet() ) {
+          final String value = String.valueOf(entry.getValue().getValue());
+          if( entry.getKey().getSimpleName().contentEquals("value") && !value.isEmpty() ) {
+            return value;
+          }
+        }
+      }
+    }
+    return type.getSimpleName() + "Entity";
+  }
+
+  /**
+   * Returns the name of the Generated annotation of the JDK the processor runs on, which moved in Java 9, or null if it has none.
+   */
+  private String generatedAnnotation() {
+    for( final String name : new String[] { "javax.annotation.Generated", "javax.annotation.processing.Generated" } ) {
+      if( processingEnv.getElementUtils().getTypeElement(name) != null ) {
+        return name;
+      }
+    }
+    return null;
+  }
+
+  private boolean isRepresentation(final TypeElement type) {
+    final TypeElement representation = processingEnv.getElementUtils().getTypeElement(REPRESENTATION);
+    return representation != null && processingEnv.getTypeUtils().isAssignable(type.asType(), representation.asType());
+  }
+
+  private void error(final String message, final Element element) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  /**
+   * Decapitalizes a property name the way java.beans.Introspector does: "Name" becomes "name", but "URL" stays "URL".
+   */
+  static String decapitalize(final String name) {
+    if( name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0)) ) {
+      return name;
+    }
+    return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+  }
+
+  /**
+   * A property of the interface, which becomes a field and a slot of the generated class.
+   */
+  static final class Property {
+    final String key;
+    String getter;
+    String setter;
+    ExecutableElement setterElement;
+    TypeMirror type;
+
+    Property(final String key) {
+      this.key = key;
+    }
+
+    String field() {
+      return SourceVersion.isKeyword(key) ? key + "_" : key;
+    }
+
+    /**
+     * Returns the field qualified with this, so properties named like the generated methods' parameters don't shadow it.
+     */
+    String ref() {
+      return "this." + field();
+    }
+  }
+
+  /**
+   * Writes the source of one generated class.
+   */
+  private static final class Source {
+    private final PrintWriter out;
+    private final TypeElement type;
+    private final String packageName;
+    private final String simpleName;
+    private final List<Property> slots;
+    private final boolean representation;
+    private final String generated;
+
+    Source(final PrintWriter out, final TypeElement type, final String packageName, final String simpleName, final List<Property> slots,
+        final boolean representation, final String generated) {
+      this.out = out;
+      this.type = type;
+      this.packageName = packageName;
+      this.simpleName = simpleName;
+      this.slots = slots;
+      this.representation = representation;
+      this.generated = generated;
+    }
+
+    static boolean isSupportedPrimitive(final TypeKind kind) {
+      return kind == TypeKind.INT || kind == TypeKind.LONG || kind == TypeKind.DOUBLE || kind == TypeKind.BOOLEAN;
+    }
+
+    void write() {
+      if( !packageName.isEmpty() ) {
+        out.println("package " + packageName + ";");
+        out.println();
+      }
+      if( generated != null ) {
+        out.println("@" + generated + "(\"" + EntityProcessor.class.getName() + "\")");
+      }
+      out.println("@SuppressWarnings(\"unchecked\")");
+      out.println("public class " + simpleName + " extends " + CORE + "AbstractFieldEntity implements " + type.getQualifiedName() + " {");
+      out.println();
+      writeSchema();
+      for( final Property property : slots ) {
+        out.println("  private " + property.type + " " + property.field() + ";");
+      }
+      out.println();
+      writeConstructors();
+      for( int slot = 0; slot < slots.size(); slot++ ) {
+        writeAccessors(slots.get(slot), slot);
+      }
+      writeAccept();
+      writeGetSlot();
+      writeSetSlot();
+      out.println("}");
+    }
+
+    private void writeSchema() {
+      final StringBuilder keys = new StringBuilder();
+      for( final Property property : slots ) {
+        keys.append(keys.length() == 0 ? "" : ", ").append('"').append(property.key).append('"');
+      }
+      out.println("  private static final " + CORE + "AbstractFieldEntity.Schema SCHEMA = " + CORE + "AbstractFieldEntity.Schema.of(" + keys + ");");
+      out.println();
+    }
+
+    private void writeConstructors() {
+      out.println("  public " + simpleName + "() {");
+      out.println("    super(SCHEMA);");
+      for( int slot = 0; slot < slots.size(); slot++ ) {
+        final Property property = slots.get(slot);
+        // like BasicRepresentation, a representation starts out with an empty LinkList
+        if( representation && property.key.equals("links") ) {
+          out.println("    " + property.ref() + " = new " + CORE + "LinkList();");
+          out.println("    setPresent(" + slot + ", true);");
+        }
+      }
+      out.println("  }");
+      out.println();
+      out.println("  public " + simpleName + "(final java.util.Map<String, ?> source) {");
+      out.println("    this();");
+      out.println("    putAll(source);");
+      out.println("  }");
+      out.println();
+    }
+
+    private void writeAccessors(final Property property, final int slot) {
+      final String field = property.ref();
+      out.println("  @Override");
+      out.println("  public " + property.type + " " + property.getter + "() {");
+      out.println("    return " + field + ";");
+      out.println("  }");
+      out.println();
+      if( property.setter != null ) {
+        out.println("  @Override");
+        out.println("  public void " + property.setter + "(final " + property.type + " value) {");
+        out.println("    " + field + " = value;");
+        out.println("    setPresent(" + slot + ", " + (property.type.getKind().isPrimitive() ? "true" : "value != null") + ");");
+        out.println("  }");
+        out.println();
+      }
+    }
+
+    private void writeAccept() {
+      out.println("  @Override");
+      out.println("  public void accept(final " + CORE + "FieldVisitor visitor) throws java.io.IOException {");
+      for( int slot = 0; slot < slots.size(); slot++ ) {
+        final Property property = slots.get(slot);
+        final String test = property.type.getKind().isPrimitive() ? "isPresent(" + slot + ")" : property.ref() + " != null";
+        out.println("    if( " + test + " ) {");
+        out.println("      visitor.visit(\"" + property.key + "\", " + (property.type.getKind().isPrimitive() ? "" : "(Object) ") + property.ref() + ");");
+        out.println("    }");
+      }
+      out.println("    acceptOverflow(visitor);");
+      out.println("  }");
+      out.println();
+    }
+
+    private void writeGetSlot() {
+      out.println("  @Override");
+      out.println("  protected Object getSlot(final int slot) {");
+      out.println("    switch( slot ) {");
+      for( int slot = 0; slot < slots.size(); slot++ ) {
+        final Property property = slots.get(slot);
+        out.println("    case " + slot + ":");
+        out.println("      return " + box(property) + ";");
+      }
+      out.println("    default:");
+      out.println("      throw new IndexOutOfBoundsException(String.valueOf(slot));");
+      out.println("    }");
+      out.println("  }");
+      out.println();
+    }
+
+    private void writeSetSlot() {
+      out.println("  @Override");
+      out.println("  protected void setSlot(final int slot, final Object value) {");
+      out.println("    switch( slot ) {");
+      for( int slot = 0; slot < slots.size(); slot++ ) {
+        final Property property = slots.get(slot);
+        out.println("    case " + slot + ":");
+        out.println("      " + property.ref() + " = " + unbox(property) + ";");
+        out.println("      break;");
+      }
+      out.println("    default:");
+      out.println("      throw new IndexOutOfBoundsException(String.valueOf(slot));");
+      out.println("    }");
+      out.println("  }");
+    }
+
+    private static String box(final Property property) {
+      final String field = property.ref();
+      switch( property.type.getKind() ) {
+      case INT:
+        return "Integer.valueOf(" + field + ")";
+      case LONG:
+        return "Long.valueOf(" + field + ")";
+      case DOUBLE:
+        return "Double.valueOf(" + field + ")";
+      case BOOLEAN:
+        return "Boolean.valueOf(" + field + ")";
+      default:
+        return field;
+      }
+    }
+
+    /**
+     * Returns the expression that converts the Object named value to the field's type, or its default if value is null. Any Number fits a numeric field,
+     * as with AbstractMapEntity's typed getters; anything else fails with a ClassCastException before the field is touched.
+     */
+    private static String unbox(final Property property) {
+      switch( property.type.getKind() ) {
+      case INT:
+        return "value == null ? 0 : com.google.common.primitives.Ints.checkedCast(((Number) value).longValue())";
+      case LONG:
+        return "value == null ? 0L : ((Number) value).longValue()";
+      case DOUBLE:
+        return "value == null ? 0.0 : ((Number) value).doubleValue()";
+      case BOOLEAN:
+        return "value != null && ((Boolean) value).booleanValue()";
+      default:
+        return "(" + property.type + ") value";
+      }
+    }
+  }
+}
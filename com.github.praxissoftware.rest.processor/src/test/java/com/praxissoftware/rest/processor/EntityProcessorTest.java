@@ -0,0 +1,172 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.processor;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.EntityInstrumentation;
+import com.praxissoftware.rest.core.Field;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.StripedEntityMetrics;
+import com.praxissoftware.rest.serialization.binary.BinaryCodec;
+import com.praxissoftware.rest.serialization.json.JsonEncoder;
+
+public class EntityProcessorTest {
+
+  @Test
+  public void testFieldsBackTheMapView() {
+    final OrderEntity order = new OrderEntity();
+    order.setId("o-1");
+    order.setTotal(1250L);
+    Assert.assertEquals("o-1", order.get("id"));
+    Assert.assertEquals(Long.valueOf(1250), order.get("total"));
+    order.put("itemCount", Long.valueOf(3));
+    order.put("paid", Boolean.TRUE);
+    Assert.assertEquals(3, order.getItemCount());
+    Assert.assertTrue(order.isPaid());
+    Assert.assertEquals("o-1", order.get(Field.of("id", String.class)));
+  }
+
+  @Test
+  public void testPrimitivesAreAbsentUntilSet() {
+    final OrderEntity order = new OrderEntity();
+    Assert.assertFalse(order.containsKey("total"));
+    Assert.assertNull(order.get("total"));
+    Assert.assertEquals(1, order.size());
+    order.setTotal(0L);
+    Assert.assertEquals(Long.valueOf(0), order.get("total"));
+    Assert.assertEquals(Long.valueOf(0), order.remove("total"));
+    Assert.assertFalse(order.containsKey("total"));
+  }
+
+  @Test
+  public void testUnknownKeysOverflow() {
+    final OrderEntity order = new OrderEntity();
+    order.setId("o-1");
+    order.put("note", "fragile");
+    Assert.assertEquals("fragile", order.get("note"));
+    Assert.assertEquals(ImmutableList.of("id", "links", "note"), ImmutableList.copyOf(order.keySet()));
+    order.put("note", null);
+    Assert.assertEquals(2, order.size());
+  }
+
+  @Test
+  public void testWrongTypeIsRejected() {
+    final OrderEntity order = new OrderEntity();
+    order.setTotal(5L);
+    try {
+      order.put("total", "five");
+      Assert.fail();
+    } catch( final ClassCastException e ) {
+      // expected
+    }
+    Assert.assertEquals(5L, order.getTotal());
+  }
+
+  @Test
+  public void testTypedReadFailureIsCounted() {
+    final StripedEntityMetrics metrics = new StripedEntityMetrics();
+    EntityInstrumentation.install(metrics);
+    try {
+      final OrderEntity order = new OrderEntity();
+      order.put("note", "fragile");
+      order.get(Field.of("note", Long.class));
+      Assert.fail();
+    } catch( final ClassCastException e ) {
+      Assert.assertEquals(1, metrics.getCoercionFailures());
+    } finally {
+      EntityInstrumentation.install(null);
+    }
+  }
+
+  @Test
+  public void testEqualsMap() {
+    final OrderEntity order = new OrderEntity();
+    order.setId("o-1");
+    order.setPaid(false);
+    order.put("note", "fragile");
+    final Map<String, Object> map = Maps.newHashMap();
+    map.put("id", "o-1");
+    map.put("paid", Boolean.FALSE);
+    map.put("note", "fragile");
+    map.put("links", ImmutableList.of());
+    Assert.assertEquals(map, order);
+    Assert.assertEquals(order, map);
+    Assert.assertEquals(map.hashCode(), order.hashCode());
+    Assert.assertEquals(order, new OrderEntity(map));
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    final OrderEntity order = new OrderEntity();
+    order.setId("o-1");
+    order.put("note", "fragile");
+    Iterables.removeIf(order.keySet(), new com.google.common.base.Predicate<String>() {
+      @Override
+      public boolean apply(final String key) {
+        return !key.equals("links");
+      }
+    });
+    Assert.assertEquals(ImmutableList.of("links"), ImmutableList.copyOf(order.keySet()));
+    Assert.assertNull(order.getId());
+  }
+
+  @Test
+  public void testJsonMatchesTheMapView() {
+    final OrderEntity order = new OrderEntity();
+    order.setId("o-1");
+    order.setTotal(1250L);
+    order.setItemCount(2);
+    order.setPaid(true);
+    order.setTags(ImmutableList.of("gift"));
+    order.put("note", "fragile");
+    order.getLinks().add(new Link.Builder().href("/orders/o-1").rel("self").build());
+    final JsonEncoder encoder = new JsonEncoder();
+    final String json = new String(encoder.encode(order), Charsets.UTF_8);
+    Assert.assertEquals(new String(encoder.encode(Maps.newLinkedHashMap(order)), Charsets.UTF_8), json);
+    Assert.assertEquals("{\"id\":\"o-1\",\"total\":1250,\"itemCount\":2,\"paid\":true,\"tags\":[\"gift\"],"
+        + "\"links\":[{\"href\":\"/orders/o-1\",\"rel\":\"self\"}],\"note\":\"fragile\"}", json);
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    final OrderEntity order = new OrderEntity();
+    order.setId("o-1");
+    order.setTotal(1250L);
+    order.setItemCount(2);
+    order.put("rate", Double.valueOf(0.5));
+    order.put("note", "fragile");
+    final BinaryCodec codec = new BinaryCodec();
+    final Map<String, Object> parsed = codec.decode(codec.encode(order), Maps.<String, Object> newLinkedHashMap());
+    Assert.assertEquals(order, parsed);
+    Assert.assertEquals(Integer.valueOf(2), parsed.get("itemCount"));
+  }
+
+  @Test
+  public void testDecapitalize() {
+    Assert.assertEquals("itemCount", EntityProcessor.decapitalize("ItemCount"));
+    Assert.assertEquals("URL", EntityProcessor.decapitalize("URL"));
+    Assert.assertEquals("x", EntityProcessor.decapitalize("X"));
+  }
+}
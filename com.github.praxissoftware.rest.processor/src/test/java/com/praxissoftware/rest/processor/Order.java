@@ -0,0 +1,51 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.processor;
+
+import java.util.List;
+
+import com.praxissoftware.rest.core.GenerateEntity;
+import com.praxissoftware.rest.core.Representation;
+
+/**
+ * A representation generated by the processor as OrderEntity, for the tests.
+ * @author Jason Rose
+ */
+@GenerateEntity
+public interface Order extends Representation {
+
+  String getId();
+
+  void setId(String id);
+
+  long getTotal();
+
+  void setTotal(long total);
+
+  int getItemCount();
+
+  void setItemCount(int itemCount);
+
+  double getRate();
+
+  boolean isPaid();
+
+  void setPaid(boolean paid);
+
+  List<String> getTags();
+
+  void setTags(List<String> tags);
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * A wire format for Representations, Links and other map entities. Codecs are stateless and thread-safe, so one instance per format can serve every request.
+ * @author Jason Rose
+ */
+public interface Codec {
+
+  /**
+   * Returns the media type of the format, for content negotiation.
+   * @return The media type.
+   */
+  String getMediaType();
+
+  /**
+   * Encodes the value to the stream and flushes it.
+   * @param value The value to encode.
+   * @param stream The stream to write to.
+   * @throws IOException If writing to the stream fails.
+   */
+  void encode(Object value, OutputStream stream) throws IOException;
+
+  /**
+   * Encodes the value to a byte array.
+   * @param value The value to encode.
+   * @return The encoded value.
+   */
+  byte[] encode(Object value);
+
+  /**
+   * Decodes a top-level map from the stream into the target.
+   * @param stream The stream to read, which is not closed.
+   * @param target The map to fill, typically an AbstractMapEntity subclass.
+   * @return The target.
+   * @throws IOException If reading fails or the input is malformed.
+   */
+  <T extends Map<String, Object>> T decode(InputStream stream, T target) throws IOException;
+
+  /**
+   * Decodes a top-level map from the bytes into the target.
+   * @param bytes The encoded map.
+   * @param target The map to fill, typically an AbstractMapEntity subclass.
+   * @return The target.
+   * @throws IOException If the input is malformed.
+   */
+  <T extends Map<String, Object>> T decode(byte[] bytes, T target) throws IOException;
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.praxissoftware.rest.serialization.Codec;
+
+/**
+ * The binary Codec, for service-to-service hops where JSON's size and parsing cost aren't worth its readability.
+ * @author Jason Rose
+ */
+public class BinaryCodec implements Codec {
+
+  public static final String MEDIA_TYPE = "application/vnd.praxissoftware.rest+binary";
+
+  private final BinaryEncoder encoder;
+
+  public BinaryCodec() {
+    this(new BinaryEncoder());
+  }
+
+  public BinaryCodec(final BinaryEncoder encoder) {
+    this.encoder = Preconditions.checkNotNull(encoder);
+  }
+
+  @Override
+  public String getMediaType() {
+    return MEDIA_TYPE;
+  }
+
+  @Override
+  public void encode(final Object value, final OutputStream stream) throws IOException {
+    encoder.encode(value, stream);
+  }
+
+  @Override
+  public byte[] encode(final Object value) {
+    return encoder.encode(value);
+  }
+
+  @Override
+  public <T extends Map<String, Object>> T decode(final InputStream stream, final T target) throws IOException {
+    return BinaryParser.parse(stream, target);
+  }
+
+  @Override
+  public <T extends Map<String, Object>> T decode(final byte[] bytes, final T target) throws IOException {
+    return BinaryParser.parse(bytes, target);
+  }
+}
@@ -0,0 +1,322 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.google.common.collect.Iterables;
+import com.praxissoftware.rest.core.AbstractFieldEntity;
+import com.praxissoftware.rest.core.AbstractImmutableMapEntity;
+import com.praxissoftware.rest.core.EntityInstrumentation;
+import com.praxissoftware.rest.core.EntityMetrics;
+import com.praxissoftware.rest.core.FieldVisitor;
+import com.praxissoftware.rest.core.Link;
+
+/**
+ * Encodes Representations, Links and other map entities in the binary format described by BinaryFormat. Map keys and the low-cardinality members of Links
+ * are dictionary-encoded, so a link-heavy message spells out each key and rel once.
+ * <p>
+ * Supported values are the same as JsonEncoder's. Encoders are stateless and thread-safe; each thread reuses its own buffer and dictionary. Like JsonEncoder,
+ * the encoder caches the bytes of immutable entities that are encoded more than once and splices them into later messages.
+ * @author Jason Rose
+ */
+public class BinaryEncoder {
+
+  /**
+   * The encoded form cached on an immutable entity the first time it's encoded, which says to cache its fragment the next time.
+   */
+  private static final Object SEEN = new Object();
+
+  /**
+   * The largest buffer a thread's writer keeps between calls. encode(Object) grows the buffer to hold the whole message, so a writer that encoded a larger
+   * one is dropped rather than pinning its buffer to the thread.
+   */
+  private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+  /**
+   * The most symbols a message may add before its writer is dropped; clearing the dictionary doesn't shrink its table.
+   */
+  private static final int MAX_RETAINED_SYMBOLS = 4096;
+
+  private final ThreadLocal<BinaryWriter> writers = new ThreadLocal<BinaryWriter>() {
+    @Override
+    protected BinaryWriter initialValue() {
+      return new BinaryWriter();
+    }
+  };
+
+  /**
+   * Encodes the value to the stream and flushes it.
+   * @param value The value to encode.
+   * @param stream The stream to write to.
+   * @throws IOException If writing to the stream fails.
+   */
+  public void encode(final Object value, final OutputStream stream) throws IOException {
+    final BinaryWriter writer = writers.get().reset(stream);
+    try {
+      writer.writeBytes(BinaryFormat.MAGIC);
+      encode(value, writer);
+      writer.flush();
+    } finally {
+      release(writer);
+    }
+  }
+
+  /**
+   * Encodes the value to a byte array.
+   * @param value The value to encode.
+   * @return The encoded message.
+   */
+  public byte[] encode(final Object value) {
+    final BinaryWriter writer = writers.get().reset(null);
+    try {
+      writer.writeBytes(BinaryFormat.MAGIC);
+      encode(value, writer);
+      return writer.toByteArray();
+    } catch( final IOException e ) {
+      // in-memory writers don't do I/O
+      throw new AssertionError(e);
+    } finally {
+      release(writer);
+    }
+  }
+
+  /**
+   * Resets the thread's writer, or drops it if its buffer or dictionary grew too large to keep.
+   */
+  private void release(final BinaryWriter writer) {
+    final boolean oversized = writer.capacity() > MAX_RETAINED_BUFFER || writer.symbolCount() > MAX_RETAINED_SYMBOLS;
+    writer.reset(null);
+    if( oversized ) {
+      writers.remove();
+    }
+  }
+
+  private void encode(final Object value, final BinaryWriter writer) throws IOException {
+    if( value == null ) {
+      writer.writeByte(BinaryFormat.NULL);
+    } else if( value instanceof String ) {
+      writer.writeByte(BinaryFormat.STRING);
+      writer.writeString((String) value);
+    } else if( value instanceof AbstractImmutableMapEntity ) {
+      encodeImmutable((AbstractImmutableMapEntity) value, writer);
+    } else if( value instanceof AbstractFieldEntity ) {
+      encodeFields((AbstractFieldEntity) value, writer);
+    } else if( value instanceof Map ) {
+      encodeMap((Map<?, ?>) value, writer);
+    } else if( value instanceof Collection ) {
+      writer.writeByte(BinaryFormat.LIST);
+      writer.writeVarint(((Collection<?>) value).size());
+      for( final Object element : (Collection<?>) value ) {
+        encode(element, writer);
+      }
+    } else if( value instanceof Iterable ) {
+      // the count comes first, so a streamed iterable is collected here; encode large collections as JSON
+      final Object[] elements = Iterables.toArray((Iterable<?>) value, Object.class);
+      encode(elements, writer);
+    } else if( value instanceof Object[] ) {
+      final Object[] elements = (Object[]) value;
+      writer.writeByte(BinaryFormat.LIST);
+      writer.writeVarint(elements.length);
+      for( final Object element : elements ) {
+        encode(element, writer);
+      }
+    } else if( value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+      writer.writeByte(BinaryFormat.INT);
+      writer.writeZigZag(((Number) value).intValue());
+    } else if( value instanceof Long ) {
+      writer.writeByte(BinaryFormat.LONG);
+      writer.writeZigZag(((Long) value).longValue());
+    } else if( value instanceof BigDecimal ) {
+      writer.writeByte(BinaryFormat.DECIMAL);
+      writer.writeString(value.toString());
+    } else if( value instanceof BigInteger ) {
+      writer.writeByte(BinaryFormat.BIG_INTEGER);
+      writer.writeString(value.toString());
+    } else if( value instanceof Number ) {
+      writer.writeByte(BinaryFormat.DOUBLE);
+      writer.writeDouble(((Number) value).doubleValue());
+    } else if( value instanceof Boolean ) {
+      writer.writeByte(((Boolean) value).booleanValue() ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+    } else {
+      writer.writeByte(BinaryFormat.STRING);
+      writer.writeString(value.toString());
+    }
+  }
+
+  /**
+   * Splices the entity's cached fragment if it has one. Otherwise it's encoded directly the first time, and to a fragment that is cached the second time.
+   */
+  private void encodeImmutable(final AbstractImmutableMapEntity entity, final BinaryWriter writer) throws IOException {
+    final Object form = entity.getEncodedForm(getClass());
+    if( form instanceof BinaryWriter.Fragment ) {
+      writer.writeFragment((BinaryWriter.Fragment) form);
+    } else if( form == null ) {
+      entity.setEncodedForm(getClass(), SEEN);
+      encodeEntity(entity, writer);
+    } else {
+      final BinaryWriter fragment = BinaryWriter.fragment();
+      encodeEntity(entity, fragment);
+      final BinaryWriter.Fragment encoded = fragment.toFragment();
+      entity.setEncodedForm(getClass(), encoded);
+      writer.writeFragment(encoded);
+    }
+  }
+
+  private void encodeEntity(final AbstractImmutableMapEntity entity, final BinaryWriter writer) throws IOException {
+    if( entity instanceof Link ) {
+      encodeLink((Link) entity, writer);
+    } else {
+      encodeMap(entity, writer);
+    }
+  }
+
+  /**
+   * Writes the members of the Link by key, with the raw href and dictionary-encoded rel, type and hrefLang, and only walks its entries for other members.
+   */
+  private void encodeLink(final Link link, final BinaryWriter writer) throws IOException {
+    writer.writeByte(BinaryFormat.LINK);
+    writer.writeVarint(link.size());
+    int written = 0;
+    final String href = link.getRawHref();
+    if( href != null ) {
+      writer.writeSymbol("href");
+      writer.writeByte(BinaryFormat.STRING);
+      writer.writeString(href);
+      written++;
+    }
+    written += encodeMember("rel", link.getRel(), true, writer);
+    written += encodeMember("type", link.getType(), true, writer);
+    written += encodeMember("title", link.getTitle(), false, writer);
+    written += encodeMember("hrefLang", link.getHrefLang(), true, writer);
+    written += encodeMember("length", link.getLength(), false, writer);
+    if( written < link.size() ) {
+      for( final Map.Entry<String, Object> entry : link.entrySet() ) {
+        final String key = entry.getKey();
+        final Integer symbol = BinaryFormat.SYMBOL_INDEX.get(key);
+        // the well-known members are the symbols from "href" to "length"
+        if( symbol == null || symbol.intValue() < 1 || symbol.intValue() > 6 ) {
+          writer.writeSymbol(key);
+          encode(entry.getValue(), writer);
+        }
+      }
+    }
+  }
+
+  private int encodeMember(final String key, final String value, final boolean symbol, final BinaryWriter writer) throws IOException {
+    if( value == null ) {
+      return 0;
+    }
+    writer.writeSymbol(key);
+    if( symbol ) {
+      writer.writeByte(BinaryFormat.SYMBOL);
+      writer.writeSymbol(value);
+    } else {
+      writer.writeByte(BinaryFormat.STRING);
+      writer.writeString(value);
+    }
+    return 1;
+  }
+
+  /**
+   * Writes the map's entries. Null values are left out, since decoders drop them anyway, which is why the entries are counted first.
+   */
+  private void encodeMap(final Map<?, ?> map, final BinaryWriter writer) throws IOException {
+    int count = 0;
+    for( final Iterator<?> values = map.values().iterator(); values.hasNext(); ) {
+      if( values.next() != null ) {
+        count++;
+      }
+    }
+    writer.writeByte(BinaryFormat.MAP);
+    writer.writeVarint(count);
+    for( final Map.Entry<?, ?> entry : map.entrySet() ) {
+      if( entry.getValue() != null ) {
+        final String key = String.valueOf(entry.getKey());
+        if( key.equals("links") ) {
+          recordLinks(entry.getValue());
+        }
+        writer.writeSymbol(key);
+        encode(entry.getValue(), writer);
+      }
+    }
+  }
+
+  /**
+   * Writes the entity's fields as the entity hands them over, primitives unboxed, instead of walking its Map view.
+   */
+  private void encodeFields(final AbstractFieldEntity entity, final BinaryWriter writer) throws IOException {
+    writer.writeByte(BinaryFormat.MAP);
+    writer.writeVarint(entity.size());
+    entity.accept(new FieldWriter(writer));
+  }
+
+  private static void recordLinks(final Object links) {
+    final EntityMetrics metrics = EntityInstrumentation.current();
+    if( metrics != null && links instanceof Collection ) {
+      metrics.linksEncoded(((Collection<?>) links).size());
+    }
+  }
+
+  private final class FieldWriter implements FieldVisitor {
+    private final BinaryWriter writer;
+
+    FieldWriter(final BinaryWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void visit(final String name, final Object value) throws IOException {
+      if( name.equals("links") ) {
+        recordLinks(value);
+      }
+      writer.writeSymbol(name);
+      encode(value, writer);
+    }
+
+    @Override
+    public void visit(final String name, final int value) throws IOException {
+      writer.writeSymbol(name);
+      writer.writeByte(BinaryFormat.INT);
+      writer.writeZigZag(value);
+    }
+
+    @Override
+    public void visit(final String name, final long value) throws IOException {
+      writer.writeSymbol(name);
+      writer.writeByte(BinaryFormat.LONG);
+      writer.writeZigZag(value);
+    }
+
+    @Override
+    public void visit(final String name, final double value) throws IOException {
+      writer.writeSymbol(name);
+      writer.writeByte(BinaryFormat.DOUBLE);
+      writer.writeDouble(value);
+    }
+
+    @Override
+    public void visit(final String name, final boolean value) throws IOException {
+      writer.writeSymbol(name);
+      writer.writeByte(value ? BinaryFormat.TRUE : BinaryFormat.FALSE);
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.binary;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The constants of the binary format. A message is the magic bytes "PXB", a version byte and one value. A value is a tag byte followed by its payload:
+ * <ul>
+ * <li>NULL, FALSE, TRUE: nothing.</li>
+ * <li>INT, LONG: a zigzag varint.</li>
+ * <li>DOUBLE: eight bytes of IEEE 754, big-endian.</li>
+ * <li>STRING, DECIMAL, BIG_INTEGER: a varint byte length, then UTF-8.</li>
+ * <li>SYMBOL: a symbol.</li>
+ * <li>MAP, LINK: a varint count, then that many pairs of a symbol key and a value.</li>
+ * <li>LIST: a varint count, then that many values.</li>
+ * </ul>
+ * A symbol is dictionary-encoded: a varint v, where odd v refers to entry v >>> 1 of the message's dictionary, and even v is followed by v >>> 1 bytes of UTF-8
+ * that are appended to it. The dictionary starts out with the SYMBOLS, so well-known keys and rels never appear in the message. Map keys are always symbols, as
+ * are the rel, type and hrefLang of Links.
+ * @author Jason Rose
+ */
+final class BinaryFormat {
+
+  static final byte[] MAGIC = { 'P', 'X', 'B', 1 };
+
+  static final byte NULL = 0;
+  static final byte FALSE = 1;
+  static final byte TRUE = 2;
+  static final byte INT = 3;
+  static final byte LONG = 4;
+  static final byte DOUBLE = 5;
+  static final byte STRING = 6;
+  static final byte SYMBOL = 7;
+  static final byte DECIMAL = 8;
+  static final byte BIG_INTEGER = 9;
+  static final byte MAP = 10;
+  static final byte LINK = 11;
+  static final byte LIST = 12;
+
+  /**
+   * The initial dictionary. Symbols a message defines are numbered after these, so any change here, appending included, changes the format: bump the version
+   * byte of MAGIC with it.
+   */
+  static final String[] SYMBOLS = { "links", "href", "rel", "type", "title", "hrefLang", "length", "self", "next", "prev", "item", "first", "last", "up",
+      "collection", "edit", "alternate", "related", "describedby", "profile", "application/json" };
+
+  static final Map<String, Integer> SYMBOL_INDEX;
+
+  static {
+    final ImmutableMap.Builder<String, Integer> index = ImmutableMap.builder();
+    for( int i = 0; i < SYMBOLS.length; i++ ) {
+      index.put(SYMBOLS[i], Integer.valueOf(i));
+    }
+    SYMBOL_INDEX = index.build();
+  }
+
+  private BinaryFormat() {
+  }
+}
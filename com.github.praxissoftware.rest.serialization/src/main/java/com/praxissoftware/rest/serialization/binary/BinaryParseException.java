@@ -0,0 +1,42 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.binary;
+
+import java.io.IOException;
+
+/**
+ * Signals malformed binary input.
+ * @author Jason Rose
+ */
+public class BinaryParseException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long offset;
+
+  public BinaryParseException(final String message, final long offset) {
+    super(message + " at offset " + offset);
+    this.offset = offset;
+  }
+
+  /**
+   * Returns the offset of the offending byte in the input.
+   * @return The offset of the offending byte in the input.
+   */
+  public long getOffset() {
+    return offset;
+  }
+}
@@ -0,0 +1,385 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.LinkList;
+
+/**
+ * Decodes a binary message whose value is a map straight into a target map, typically an AbstractMapEntity subclass.
+ * <p>
+ * Strings are decoded straight from the input array, and each dictionary entry is decoded once per message, so repeated keys and rels share one String.
+ * Links keep their href raw, so decoding never parses a URI. Nested maps become HashMaps, lists become ArrayLists and Links become Links, except that a
+ * "links" member holding only Links becomes a LinkList, so rel lookups are indexed. Null members of maps are dropped.
+ * @author Jason Rose
+ */
+public final class BinaryParser {
+
+  private static final int MAX_DEPTH = 512;
+
+  private final byte[] bytes;
+  private final int limit;
+  private int position;
+  private String[] symbols;
+  private int symbolCount;
+  private int depth;
+
+  private BinaryParser(final byte[] bytes, final int offset, final int length) {
+    this.bytes = bytes;
+    position = offset;
+    limit = offset + length;
+    symbols = Arrays.copyOf(BinaryFormat.SYMBOLS, BinaryFormat.SYMBOLS.length + 32);
+    symbolCount = BinaryFormat.SYMBOLS.length;
+  }
+
+  /**
+   * Decodes the whole stream into the target.
+   * @param stream The stream to read, which is not closed.
+   * @param target The map to fill.
+   * @return The target.
+   * @throws IOException If reading fails or the input is not a single binary message holding a map.
+   */
+  public static <T extends Map<String, Object>> T parse(final InputStream stream, final T target) throws IOException {
+    return parse(ByteStreams.toByteArray(stream), target);
+  }
+
+  /**
+   * Decodes the bytes into the target.
+   * @param bytes The message.
+   * @param target The map to fill.
+   * @return The target.
+   * @throws BinaryParseException If the input is not a single binary message holding a map.
+   */
+  public static <T extends Map<String, Object>> T parse(final byte[] bytes, final T target) throws BinaryParseException {
+    return parse(bytes, 0, bytes.length, target);
+  }
+
+  /**
+   * Decodes a range of the bytes into the target.
+   * @param bytes The array holding the message.
+   * @param offset The start of the message.
+   * @param length The length of the message.
+   * @param target The map to fill.
+   * @return The target.
+   * @throws BinaryParseException If the range is not a single binary message holding a map.
+   */
+  public static <T extends Map<String, Object>> T parse(final byte[] bytes, final int offset, final int length, final T target) throws BinaryParseException {
+    final BinaryParser parser = new BinaryParser(bytes, offset, length);
+    for( final byte b : BinaryFormat.MAGIC ) {
+      if( parser.readByte() != b ) {
+        throw parser.error("not a binary message, or an unsupported version");
+      }
+    }
+    final byte tag = parser.readByte();
+    if( tag != BinaryFormat.MAP && tag != BinaryFormat.LINK ) {
+      throw parser.error("the message doesn't hold a map");
+    }
+    parser.readMembers(target);
+    if( parser.position != parser.limit ) {
+      throw parser.error("trailing bytes");
+    }
+    return target;
+  }
+
+  private Object readValue() throws BinaryParseException {
+    final byte tag = readByte();
+    switch( tag ) {
+    case BinaryFormat.NULL:
+      return null;
+    case BinaryFormat.FALSE:
+      return Boolean.FALSE;
+    case BinaryFormat.TRUE:
+      return Boolean.TRUE;
+    case BinaryFormat.INT:
+      final long value = readZigZag();
+      if( value != (int) value ) {
+        throw error("int out of range");
+      }
+      return Integer.valueOf((int) value);
+    case BinaryFormat.LONG:
+      return Long.valueOf(readZigZag());
+    case BinaryFormat.DOUBLE:
+      return Double.valueOf(Double.longBitsToDouble(readFixed64()));
+    case BinaryFormat.STRING:
+      return readString(readLength(readVarint()));
+    case BinaryFormat.SYMBOL:
+      return readSymbol();
+    case BinaryFormat.DECIMAL:
+      try {
+        return new BigDecimal(readString(readLength(readVarint())));
+      } catch( final NumberFormatException e ) {
+        throw error("invalid decimal");
+      }
+    case BinaryFormat.BIG_INTEGER:
+      try {
+        return new BigInteger(readString(readLength(readVarint())));
+      } catch( final NumberFormatException e ) {
+        throw error("invalid integer");
+      }
+    case BinaryFormat.MAP:
+      return readMembers(Maps.<String, Object> newHashMap());
+    case BinaryFormat.LINK:
+      return readLink();
+    case BinaryFormat.LIST:
+      return readList();
+    default:
+      throw error("unknown tag " + tag);
+    }
+  }
+
+  private <T extends Map<String, Object>> T readMembers(final T target) throws BinaryParseException {
+    enter();
+    final int count = readCount();
+    for( int i = 0; i < count; i++ ) {
+      final String key = readSymbol();
+      final Object value = key == BinaryFormat.SYMBOLS[0] && position < limit && bytes[position] == BinaryFormat.LIST ? readLinks() : readValue();
+      if( value != null ) {
+        target.put(key, value);
+      }
+    }
+    depth--;
+    return target;
+  }
+
+  private List<Object> readList() throws BinaryParseException {
+    enter();
+    final int count = readCount();
+    final List<Object> list = Lists.newArrayListWithCapacity(count);
+    for( int i = 0; i < count; i++ ) {
+      list.add(readValue());
+    }
+    depth--;
+    return list;
+  }
+
+  /**
+   * Reads a list tagged LIST into a LinkList, falling back to an ArrayList at the first element that isn't a Link.
+   */
+  @SuppressWarnings("unchecked")
+  private List<Object> readLinks() throws BinaryParseException {
+    position++;
+    enter();
+    final int count = readCount();
+    List<Object> list = (List<Object>) (List<?>) new LinkList(count);
+    boolean links = true;
+    for( int i = 0; i < count; i++ ) {
+      final Object value = readValue();
+      if( links && !(value instanceof Link) ) {
+        final List<Object> copy = Lists.newArrayListWithCapacity(count);
+        copy.addAll(list);
+        list = copy;
+        links = false;
+      }
+      list.add(value);
+    }
+    depth--;
+    return list;
+  }
+
+  private Link readLink() throws BinaryParseException {
+    enter();
+    final int count = readCount();
+    String href = null;
+    String rel = null;
+    String type = null;
+    String title = null;
+    String hrefLang = null;
+    String length = null;
+    Map<String, Object> extras = null;
+    for( int i = 0; i < count; i++ ) {
+      final String key = readSymbol();
+      final Object value = readValue();
+      if( value == null ) {
+        continue;
+      }
+      // symbols are shared instances, so the well-known keys compare by identity
+      if( key == BinaryFormat.SYMBOLS[1] ) {
+        href = string(value);
+      } else if( key == BinaryFormat.SYMBOLS[2] ) {
+        rel = string(value);
+      } else if( key == BinaryFormat.SYMBOLS[3] ) {
+        type = string(value);
+      } else if( key == BinaryFormat.SYMBOLS[4] ) {
+        title = string(value);
+      } else if( key == BinaryFormat.SYMBOLS[5] ) {
+        hrefLang = string(value);
+      } else if( key == BinaryFormat.SYMBOLS[6] ) {
+        length = string(value);
+      } else {
+        if( extras == null ) {
+          extras = Maps.newHashMap();
+        }
+        extras.put(key, value);
+      }
+    }
+    depth--;
+    final Link.Builder builder = extras == null ? new Link.Builder() : new Link.Builder(extras);
+    try {
+      return builder.href(href).rel(rel).type(type).title(title).hrefLang(hrefLang).length(length).build();
+    } catch( final IllegalArgumentException e ) {
+      throw error("invalid link: " + e.getMessage());
+    }
+  }
+
+  private String string(final Object value) throws BinaryParseException {
+    if( !(value instanceof String) ) {
+      throw error("link members must be strings");
+    }
+    return (String) value;
+  }
+
+  private String readSymbol() throws BinaryParseException {
+    final long v = readVarint();
+    if( (v & 1) != 0 ) {
+      final long index = v >>> 1;
+      if( index >= symbolCount ) {
+        throw error("unknown symbol " + index);
+      }
+      return symbols[(int) index];
+    }
+    final String symbol = readString(readLength(v >>> 1));
+    if( symbolCount == symbols.length ) {
+      symbols = Arrays.copyOf(symbols, symbols.length * 2);
+    }
+    symbols[symbolCount++] = symbol;
+    return symbol;
+  }
+
+  /**
+   * Decodes a string of the given byte length from the input array. ASCII, the common case, is copied straight into the String.
+   */
+  private String readString(final int length) throws BinaryParseException {
+    final int start = position;
+    position += length;
+    for( int i = start; i < position; i++ ) {
+      if( bytes[i] < 0 ) {
+        return readUtf8(start, length);
+      }
+    }
+    return new String(bytes, start, length, Charsets.ISO_8859_1);
+  }
+
+  /**
+   * Decodes UTF-8, rejecting malformed sequences rather than replacing them, as the JSON parser does.
+   */
+  private String readUtf8(final int start, final int length) throws BinaryParseException {
+    final char[] chars = new char[length];
+    int count = 0;
+    int i = start;
+    final int end = start + length;
+    while( i < end ) {
+      final int b = bytes[i++] & 0xff;
+      if( b < 0x80 ) {
+        chars[count++] = (char) b;
+        continue;
+      }
+      final int extra = b >= 0xf0 ? 3 : b >= 0xe0 ? 2 : b >= 0xc0 ? 1 : -1;
+      if( extra < 0 || b > 0xf4 || i + extra > end ) {
+        throw error("malformed UTF-8");
+      }
+      int codePoint = b & (0x3f >> extra);
+      for( int k = 0; k < extra; k++ ) {
+        final int continuation = bytes[i++] & 0xff;
+        if( (continuation & 0xc0) != 0x80 ) {
+          throw error("malformed UTF-8");
+        }
+        codePoint = codePoint << 6 | continuation & 0x3f;
+      }
+      final int min = extra == 1 ? 0x80 : extra == 2 ? 0x800 : 0x10000;
+      if( codePoint < min || codePoint > 0x10ffff || codePoint >= 0xd800 && codePoint <= 0xdfff ) {
+        throw error("malformed UTF-8");
+      }
+      if( codePoint >= 0x10000 ) {
+        chars[count++] = (char) ((codePoint - 0x10000 >>> 10) + 0xd800);
+        chars[count++] = (char) ((codePoint - 0x10000 & 0x3ff) + 0xdc00);
+      } else {
+        chars[count++] = (char) codePoint;
+      }
+    }
+    return new String(chars, 0, count);
+  }
+
+  private byte readByte() throws BinaryParseException {
+    if( position >= limit ) {
+      throw error("unexpected end of input");
+    }
+    return bytes[position++];
+  }
+
+  private long readVarint() throws BinaryParseException {
+    long result = 0;
+    for( int shift = 0; shift < 64; shift += 7 ) {
+      final byte b = readByte();
+      result |= (long) (b & 0x7f) << shift;
+      if( b >= 0 ) {
+        return result;
+      }
+    }
+    throw error("varint too long");
+  }
+
+  private long readZigZag() throws BinaryParseException {
+    final long v = readVarint();
+    return v >>> 1 ^ -(v & 1);
+  }
+
+  private long readFixed64() throws BinaryParseException {
+    long result = 0;
+    for( int i = 0; i < 8; i++ ) {
+      result = result << 8 | readByte() & 0xff;
+    }
+    return result;
+  }
+
+  /**
+   * Checks that a byte length fits in the rest of the input.
+   */
+  private int readLength(final long length) throws BinaryParseException {
+    if( length < 0 || length > limit - position ) {
+      throw error("length " + length + " exceeds the input");
+    }
+    return (int) length;
+  }
+
+  /**
+   * Reads an element count. Every element takes at least a byte, which bounds the count by the rest of the input before anything is allocated for it.
+   */
+  private int readCount() throws BinaryParseException {
+    return readLength(readVarint());
+  }
+
+  private void enter() throws BinaryParseException {
+    if( ++depth > MAX_DEPTH ) {
+      throw error("nesting too deep");
+    }
+  }
+
+  private BinaryParseException error(final String message) {
+    return new BinaryParseException(message, position);
+  }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Buffers a binary message and drains it to a stream, if it has one, as the buffer fills. It also holds the message's dictionary, so both are reused across
+ * messages.
+ * <p>
+ * A fragment writer encodes a single value that can be spliced into any message. It never refers to the message's dictionary, so it spells out every symbol
+ * that isn't well-known and records it; splicing the fragment then adds those symbols to the message's dictionary, just as decoding it does.
+ * @author Jason Rose
+ */
+final class BinaryWriter {
+
+  /**
+   * An encoded value that can be spliced into any message, with the symbols it adds to the dictionary, in order.
+   */
+  static final class Fragment {
+    final byte[] bytes;
+    final String[] literals;
+
+    Fragment(final byte[] bytes, final String[] literals) {
+      this.bytes = bytes;
+      this.literals = literals;
+    }
+  }
+
+  private byte[] buffer;
+  private int position;
+  private OutputStream stream;
+  private final Map<String, Integer> symbols = Maps.newHashMap();
+  private int symbolCount;
+  private final List<String> literals;
+
+  BinaryWriter() {
+    buffer = new byte[8192];
+    literals = null;
+  }
+
+  private BinaryWriter(final int capacity) {
+    buffer = new byte[capacity];
+    literals = Lists.newArrayList();
+  }
+
+  /**
+   * Returns a new in-memory writer for a fragment.
+   */
+  static BinaryWriter fragment() {
+    return new BinaryWriter(64);
+  }
+
+  /**
+   * Discards any buffered output and the dictionary, and points the writer at a new stream, or at memory if it's null.
+   */
+  BinaryWriter reset(final OutputStream stream) {
+    position = 0;
+    this.stream = stream;
+    symbols.clear();
+    symbolCount = 0;
+    return this;
+  }
+
+  /**
+   * Returns the size of the buffer, which an in-memory writer grows to hold its whole output.
+   */
+  int capacity() {
+    return buffer.length;
+  }
+
+  /**
+   * Returns the number of symbols the message has added to the dictionary so far.
+   */
+  int symbolCount() {
+    return symbolCount;
+  }
+
+  void flush() throws IOException {
+    if( stream != null ) {
+      drain();
+      stream.flush();
+    }
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, position);
+  }
+
+  /**
+   * Returns what a fragment writer has written.
+   */
+  Fragment toFragment() {
+    return new Fragment(toByteArray(), literals.toArray(new String[literals.size()]));
+  }
+
+  /**
+   * Splices a fragment into the output and adds its symbols to the dictionary. A symbol already in the dictionary takes a second index, which is never used.
+   */
+  void writeFragment(final Fragment fragment) throws IOException {
+    writeBytes(fragment.bytes);
+    for( final String literal : fragment.literals ) {
+      if( literals != null ) {
+        literals.add(literal);
+      } else if( !symbols.containsKey(literal) ) {
+        symbols.put(literal, Integer.valueOf(BinaryFormat.SYMBOLS.length + symbolCount));
+      }
+      symbolCount++;
+    }
+  }
+
+  void writeByte(final byte b) throws IOException {
+    ensure(1);
+    buffer[position++] = b;
+  }
+
+  void writeBytes(final byte[] bytes) throws IOException {
+    ensure(bytes.length);
+    System.arraycopy(bytes, 0, buffer, position, bytes.length);
+    position += bytes.length;
+  }
+
+  void writeVarint(final long value) throws IOException {
+    ensure(10);
+    long v = value;
+    while( (v & ~0x7fL) != 0 ) {
+      buffer[position++] = (byte) (v & 0x7f | 0x80);
+      v >>>= 7;
+    }
+    buffer[position++] = (byte) v;
+  }
+
+  void writeZigZag(final long value) throws IOException {
+    writeVarint(value << 1 ^ value >> 63);
+  }
+
+  void writeDouble(final double value) throws IOException {
+    ensure(8);
+    final long bits = Double.doubleToLongBits(value);
+    for( int shift = 56; shift >= 0; shift -= 8 ) {
+      buffer[position++] = (byte) (bits >>> shift);
+    }
+  }
+
+  /**
+   * Writes the varint byte length and the UTF-8 of the string.
+   */
+  void writeString(final String value) throws IOException {
+    final int length = utf8Length(value);
+    writeVarint(length);
+    writeUtf8(value, length);
+  }
+
+  /**
+   * Writes a dictionary reference to the symbol if the message has used it before, or the symbol itself otherwise.
+   */
+  void writeSymbol(final String symbol) throws IOException {
+    Integer index = BinaryFormat.SYMBOL_INDEX.get(symbol);
+    if( index == null && literals == null ) {
+      index = symbols.get(symbol);
+    }
+    if( index != null ) {
+      writeVarint((long) index.intValue() << 1 | 1);
+    } else {
+      if( literals != null ) {
+        literals.add(symbol);
+      } else {
+        symbols.put(symbol, Integer.valueOf(BinaryFormat.SYMBOLS.length + symbolCount));
+      }
+      symbolCount++;
+      final int length = utf8Length(symbol);
+      writeVarint((long) length << 1);
+      writeUtf8(symbol, length);
+    }
+  }
+
+  /**
+   * Returns the UTF-8 length of the string, in which unpaired surrogates count as the single byte of '?', like String.getBytes() writes them.
+   */
+  private static int utf8Length(final String value) {
+    final int length = value.length();
+    int bytes = length;
+    for( int i = 0; i < length; i++ ) {
+      final char c = value.charAt(i);
+      if( c >= 0x80 ) {
+        if( c < 0x800 ) {
+          bytes += 1;
+        } else if( Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)) ) {
+          bytes += 2;
+          i++;
+        } else if( c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE ) {
+          bytes += 2;
+        }
+      }
+    }
+    return bytes;
+  }
+
+  private void writeUtf8(final String value, final int bytes) throws IOException {
+    ensure(bytes);
+    final int length = value.length();
+    for( int i = 0; i < length; i++ ) {
+      final char c = value.charAt(i);
+      if( c < 0x80 ) {
+        buffer[position++] = (byte) c;
+      } else if( c < 0x800 ) {
+        buffer[position++] = (byte) (0xc0 | c >> 6);
+        buffer[position++] = (byte) (0x80 | c & 0x3f);
+      } else if( Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)) ) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+        buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+      } else if( c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE ) {
+        buffer[position++] = '?';
+      } else {
+        buffer[position++] = (byte) (0xe0 | c >> 12);
+        buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buffer[position++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+  }
+
+  private void drain() throws IOException {
+    if( position > 0 ) {
+      stream.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+
+  private void ensure(final int bytes) throws IOException {
+    if( buffer.length - position < bytes ) {
+      if( stream != null ) {
+        drain();
+      }
+      if( buffer.length - position < bytes ) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+      }
+    }
+  }
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.AbstractFieldEntity;
+import com.praxissoftware.rest.core.AbstractImmutableMapEntity;
+import com.praxissoftware.rest.core.EntityInstrumentation;
+import com.praxissoftware.rest.core.EntityMetrics;
+import com.praxissoftware.rest.core.FieldVisitor;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.Streamed;
+
+/**
+ * Encodes Representations, Links and other map entities as JSON. The encoder knows the structure of the core types, so it writes them with direct calls
+ * instead of reflection, and it writes the names of well-known members from pre-encoded bytes.
+ * <p>
+ * Supported values are Maps (including every AbstractMapEntity), Iterables, arrays of objects, Strings, Numbers, Booleans and null; anything else is written as
+ * its toString(). Encoders are stateless and thread-safe; each thread reuses its own writer buffer.
+ * <p>
+ * Streamed members are written after the other members of their map, pulling one element at a time; when encoding to a stream or channel, the writer drains
+ * its fixed-size buffer as it fills, so a StreamingRepresentation of any size is encoded in bounded memory.
+ * <p>
+ * Immutable entities, such as Links, are encoded to bytes once they turn up a second time, and the bytes are cached on the entity and copied into every later
+ * output. Entities that are only ever encoded once, such as per-request links, are never copied.
+ * @author Jason Rose
+ */
+public class JsonEncoder {
+
+  public static final JsonName LINKS = JsonName.of("links");
+  public static final JsonName HREF = JsonName.of("href");
+  public static final JsonName REL = JsonName.of("rel");
+  public static final JsonName TYPE = JsonName.of("type");
+  public static final JsonName TITLE = JsonName.of("title");
+  public static final JsonName HREF_LANG = JsonName.of("hrefLang");
+  public static final JsonName LENGTH = JsonName.of("length");
+
+  private static final Map<String, JsonName> WELL_KNOWN = index(LINKS, HREF, REL, TYPE, TITLE, HREF_LANG, LENGTH);
+
+  /**
+   * The encoded form cached on an immutable entity the first time it's encoded, which says to cache its bytes the next time.
+   */
+  private static final Object SEEN = new Object();
+
+  /**
+   * The largest buffer a thread's writer keeps between calls. encode(Object) grows the buffer to hold the whole document, so a writer that encoded a larger
+   * one is dropped rather than pinning its buffer to the thread.
+   */
+  private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+  private final ThreadLocal<JsonWriter> writers = new ThreadLocal<JsonWriter>() {
+    @Override
+    protected JsonWriter initialValue() {
+      return new JsonWriter(8192);
+    }
+  };
+
+  /**
+   * Encodes the value to the stream and flushes it.
+   * @param value The value to encode.
+   * @param stream The stream to write to.
+   * @throws IOException If writing to the stream fails.
+   */
+  public void encode(final Object value, final OutputStream stream) throws IOException {
+    final JsonWriter writer = writers.get().reset(stream);
+    try {
+      encode(value, writer);
+      writer.flush();
+    } finally {
+      writer.reset();
+    }
+  }
+
+  /**
+   * Encodes the value to the channel.
+   * @param value The value to encode.
+   * @param channel The channel to write to.
+   * @throws IOException If writing to the channel fails.
+   */
+  public void encode(final Object value, final WritableByteChannel channel) throws IOException {
+    final JsonWriter writer = writers.get().reset(channel);
+    try {
+      encode(value, writer);
+      writer.flush();
+    } finally {
+      writer.reset();
+    }
+  }
+
+  /**
+   * Encodes the value to a byte array.
+   * @param value The value to encode.
+   * @return The UTF-8 encoded JSON.
+   */
+  public byte[] encode(final Object value) {
+    final JsonWriter writer = writers.get().reset();
+    try {
+      encode(value, writer);
+      return writer.toByteArray();
+    } catch( final IOException e ) {
+      // in-memory writers don't do I/O
+      throw new AssertionError(e);
+    } finally {
+      writer.reset();
+      if( writer.capacity() > MAX_RETAINED_BUFFER ) {
+        writers.remove();
+      }
+    }
+  }
+
+  /**
+   * Encodes the value as the next value of the writer.
+   * @param value The value to encode.
+   * @param writer The writer to write to.
+   * @throws IOException If the writer fails to drain its buffer.
+   */
+  public void encode(final Object value, final JsonWriter writer) throws IOException {
+    if( value == null ) {
+      writer.nullValue();
+    } else if( value instanceof String ) {
+      writer.value((String) value);
+    } else if( value instanceof AbstractImmutableMapEntity ) {
+      encodeImmutable((AbstractImmutableMapEntity) value, writer);
+    } else if( value instanceof AbstractFieldEntity ) {
+      encodeFields((AbstractFieldEntity) value, writer);
+    } else if( value instanceof Map ) {
+      encodeMap((Map<?, ?>) value, writer);
+    } else if( value instanceof Iterable ) {
+      writer.beginArray();
+      for( final Object element : (Iterable<?>) value ) {
+        encode(element, writer);
+      }
+      writer.endArray();
+    } else if( value instanceof Object[] ) {
+      writer.beginArray();
+      for( final Object element : (Object[]) value ) {
+        encode(element, writer);
+      }
+      writer.endArray();
+    } else if( value instanceof Number ) {
+      encodeNumber((Number) value, writer);
+    } else if( value instanceof Boolean ) {
+      writer.value(((Boolean) value).booleanValue());
+    } else {
+      writer.value(value.toString());
+    }
+  }
+
+  /**
+   * Copies the entity's cached bytes if it has them. Otherwise it's encoded directly the first time, and to bytes that are cached the second time.
+   */
+  private void encodeImmutable(final AbstractImmutableMapEntity entity, final JsonWriter writer) throws IOException {
+    final Object form = entity.getEncodedForm(formatKey());
+    if( form instanceof byte[] ) {
+      writer.rawValue((byte[]) form);
+    } else if( form == null ) {
+      entity.setEncodedForm(formatKey(), SEEN);
+      encodeEntity(entity, writer);
+    } else {
+      final JsonWriter fragment = new JsonWriter(256);
+      encodeEntity(entity, fragment);
+      final byte[] bytes = fragment.toByteArray();
+      entity.setEncodedForm(formatKey(), bytes);
+      writer.rawValue(bytes);
+    }
+  }
+
+  /**
+   * Returns the key the encoder caches encoded forms under: its class, since a subclass may encode differently.
+   */
+  Object formatKey() {
+    return getClass();
+  }
+
+  private void encodeEntity(final AbstractImmutableMapEntity entity, final JsonWriter writer) throws IOException {
+    if( entity instanceof Link ) {
+      encodeLink((Link) entity, writer);
+    } else {
+      encodeMap(entity, writer);
+    }
+  }
+
+  /**
+   * Writes the well-known members of the Link by key, and only walks its entries when it carries other members as well. The href is written in its raw form,
+   * so Links built from strings or templates never create a URI object.
+   */
+  private void encodeLink(final Link link, final JsonWriter writer) throws IOException {
+    writer.beginObject();
+    int written = 0;
+    final String href = link.getRawHref();
+    if( href != null ) {
+      writer.name(HREF);
+      writer.value(href);
+      written++;
+    }
+    written += encodeMember(REL, link, writer);
+    written += encodeMember(TYPE, link, writer);
+    written += encodeMember(TITLE, link, writer);
+    written += encodeMember(HREF_LANG, link, writer);
+    written += encodeMember(LENGTH, link, writer);
+    if( written < link.size() ) {
+      for( final Map.Entry<String, Object> entry : link.entrySet() ) {
+        final JsonName name = WELL_KNOWN.get(entry.getKey());
+        if( name == null || name == LINKS ) {
+          writer.name(entry.getKey());
+          encode(entry.getValue(), writer);
+        }
+      }
+    }
+    writer.endObject();
+  }
+
+  private int encodeMember(final JsonName name, final Link link, final JsonWriter writer) throws IOException {
+    final Object value = link.get(name.getName());
+    if( value == null ) {
+      return 0;
+    }
+    writer.name(name);
+    encode(value, writer);
+    return 1;
+  }
+
+  /**
+   * Writes the members of the map, leaving Streamed members until after the others, since they may be long and may depend on each other's iteration.
+   */
+  private void encodeMap(final Map<?, ?> map, final JsonWriter writer) throws IOException {
+    writer.beginObject();
+    int streamed = 0;
+    for( final Map.Entry<?, ?> entry : map.entrySet() ) {
+      if( entry.getValue() instanceof Streamed ) {
+        streamed++;
+      } else {
+        encodeMember(entry, writer);
+      }
+    }
+    if( streamed > 0 ) {
+      for( final Map.Entry<?, ?> entry : map.entrySet() ) {
+        if( entry.getValue() instanceof Streamed ) {
+          encodeMember(entry, writer);
+        }
+      }
+    }
+    writer.endObject();
+  }
+
+  private void encodeMember(final Map.Entry<?, ?> entry, final JsonWriter writer) throws IOException {
+    encodeMember(String.valueOf(entry.getKey()), entry.getValue(), writer);
+  }
+
+  private void encodeMember(final String key, final Object value, final JsonWriter writer) throws IOException {
+    writeName(key, value, writer);
+    encode(value, writer);
+  }
+
+  private static void writeName(final String key, final Object value, final JsonWriter writer) throws IOException {
+    final JsonName name = WELL_KNOWN.get(key);
+    if( name != null ) {
+      writer.name(name);
+      if( name == LINKS ) {
+        recordLinks(value);
+      }
+    } else {
+      writer.name(key);
+    }
+  }
+
+  /**
+   * Writes the entity's fields as the entity hands them over, primitives unboxed, instead of walking its Map view. Streamed members still go last.
+   */
+  private void encodeFields(final AbstractFieldEntity entity, final JsonWriter writer) throws IOException {
+    writer.beginObject();
+    final FieldWriter fields = new FieldWriter(writer);
+    entity.accept(fields);
+    if( fields.streamed != null ) {
+      for( final Map.Entry<String, Object> entry : fields.streamed ) {
+        encodeMember(entry.getKey(), entry.getValue(), writer);
+      }
+    }
+    writer.endObject();
+  }
+
+  private static void recordLinks(final Object links) {
+    final EntityMetrics metrics = EntityInstrumentation.current();
+    if( metrics != null && links instanceof Collection ) {
+      metrics.linksEncoded(((Collection<?>) links).size());
+    }
+  }
+
+  private void encodeNumber(final Number number, final JsonWriter writer) throws IOException {
+    if( number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte ) {
+      writer.value(number.longValue());
+    } else if( number instanceof Double ) {
+      writer.value(number.doubleValue());
+    } else if( number instanceof Float ) {
+      writer.value(number.floatValue());
+    } else if( number instanceof BigDecimal || number instanceof BigInteger ) {
+      writer.numberValue(number.toString());
+    } else {
+      writer.value(number.doubleValue());
+    }
+  }
+
+  private final class FieldWriter implements FieldVisitor {
+    private final JsonWriter writer;
+    private List<Map.Entry<String, Object>> streamed;
+
+    FieldWriter(final JsonWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void visit(final String name, final Object value) throws IOException {
+      if( value instanceof Streamed ) {
+        if( streamed == null ) {
+          streamed = Lists.newArrayListWithCapacity(1);
+        }
+        streamed.add(Maps.immutableEntry(name, value));
+      } else {
+        encodeMember(name, value, writer);
+      }
+    }
+
+    @Override
+    public void visit(final String name, final int value) throws IOException {
+      writer.name(name);
+      writer.value(value);
+    }
+
+    @Override
+    public void visit(final String name, final long value) throws IOException {
+      writer.name(name);
+      writer.value(value);
+    }
+
+    @Override
+    public void visit(final String name, final double value) throws IOException {
+      writer.name(name);
+      writer.value(value);
+    }
+
+    @Override
+    public void visit(final String name, final boolean value) throws IOException {
+      writer.name(name);
+      writer.value(value);
+    }
+  }
+
+  private static Map<String, JsonName> index(final JsonName... names) {
+    final ImmutableMap.Builder<String, JsonName> builder = ImmutableMap.builder();
+    for( final JsonName name : names ) {
+      builder.put(name.getName(), name);
+    }
+    return builder.build();
+  }
+}
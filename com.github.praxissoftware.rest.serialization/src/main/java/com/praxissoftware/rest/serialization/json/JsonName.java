@@ -0,0 +1,70 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.IOException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An object member name whose UTF-8 bytes, quotes and trailing colon have been encoded once up front, so writing it is a plain array copy.
+ * @author Jason Rose
+ */
+public final class JsonName {
+
+  private final String name;
+  private final byte[] encoded;
+
+  private JsonName(final String name, final byte[] encoded) {
+    this.name = name;
+    this.encoded = encoded;
+  }
+
+  /**
+   * Returns the pre-encoded form of the name.
+   * @param name The member name.
+   * @return The pre-encoded form of the name.
+   */
+  public static JsonName of(final String name) {
+    Preconditions.checkNotNull(name);
+    final JsonWriter writer = new JsonWriter(name.length() * 6 + 3);
+    try {
+      writer.writeString(name);
+      writer.writeRaw((byte) ':');
+    } catch( final IOException e ) {
+      // nothing is flushed while the buffer is large enough for the worst case
+      throw new AssertionError(e);
+    }
+    return new JsonName(name, writer.toByteArray());
+  }
+
+  byte[] encoded() {
+    return encoded;
+  }
+
+  /**
+   * Returns the unencoded member name.
+   * @return The unencoded member name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
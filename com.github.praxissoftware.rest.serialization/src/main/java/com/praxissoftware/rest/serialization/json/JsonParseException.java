@@ -0,0 +1,47 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.IOException;
+
+/**
+ * Signals malformed JSON input.
+ * @author Jason Rose
+ */
+public class JsonParseException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long offset;
+
+  public JsonParseException(final String message, final long offset) {
+    super(message + " at offset " + offset);
+    this.offset = offset;
+  }
+
+  public JsonParseException(final String message, final long offset, final Throwable cause) {
+    this(message, offset);
+    initCause(cause);
+  }
+
+  /**
+   * Returns the offset of the offending byte in the input.
+   * @return The offset of the offending byte in the input.
+   */
+  public long getOffset() {
+    return offset;
+  }
+}
@@ -0,0 +1,666 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.LinkList;
+
+/**
+ * An incremental JSON parser that materializes a top-level object straight into a target map, typically an AbstractMapEntity subclass, without building an
+ * intermediate map first. Input is fed in ByteBuffer chunks of any size, so a body never has to be buffered whole; tokens may span chunks.
+ * <p>
+ * Members named "links" whose value is an array are parsed into Links on the fly, and collected in a LinkList so rel lookups are indexed. Other nested objects become HashMaps and arrays become ArrayLists. Integers
+ * become Longs (BigIntegers if they don't fit), other numbers Doubles. As with AbstractMapEntity.put(), null members of objects are dropped; nulls in arrays
+ * are kept.
+ * <p>
+ * Parsers are not thread-safe, but may be reused for further documents through reset().
+ * @author Jason Rose
+ */
+public class JsonParser<T extends Map<String, Object>> {
+
+  private static final int MAX_DEPTH = 512;
+  private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+  private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+  private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+  private static final String LINKS = "links";
+  private static final String[] LINK_FIELDS = { "href", "rel", "type", "title", "hrefLang", "length" };
+
+  private enum State {
+    START, VALUE, VALUE_OR_END, KEY, KEY_OR_END, COLON, AFTER_VALUE, STRING, ESCAPE, UNICODE, NUMBER, LITERAL, DONE
+  }
+
+  private enum Kind {
+    OBJECT, LINK, ARRAY, LINKS
+  }
+
+  /**
+   * One level of nesting. Frames are pooled and reused across documents.
+   */
+  private static final class Frame {
+    Kind kind;
+    Map<String, Object> map;
+    List<Object> list;
+    String key;
+    final String[] linkFields = new String[LINK_FIELDS.length];
+    Map<String, Object> linkExtras;
+
+    void reset(final Kind kind) {
+      this.kind = kind;
+      map = null;
+      list = null;
+      key = null;
+      Arrays.fill(linkFields, null);
+      linkExtras = null;
+    }
+  }
+
+  private T target;
+  private State state;
+  private long offset;
+
+  private Frame[] frames = new Frame[16];
+  private int depth;
+
+  private char[] chars = new char[64];
+  private int length;
+  private boolean stringIsKey;
+  private int utf8Remaining;
+  private int utf8CodePoint;
+  private int utf8Minimum;
+  private int unicodeDigits;
+  private int unicodeValue;
+  private byte[] literal;
+  private int literalIndex;
+
+  private final String[] keyCache = new String[128];
+
+  /**
+   * Creates a parser that will fill the target.
+   * @param target The map that the top-level object is parsed into.
+   */
+  public JsonParser(final T target) {
+    reset(target);
+  }
+
+  /**
+   * Parses the whole stream into the target.
+   * @param stream The stream to read, which is not closed.
+   * @param target The map to fill.
+   * @return The target.
+   * @throws IOException If reading fails or the input is not a single JSON object.
+   */
+  public static <T extends Map<String, Object>> T parse(final InputStream stream, final T target) throws IOException {
+    final JsonParser<T> parser = new JsonParser<T>(target);
+    final byte[] buffer = new byte[8192];
+    final ByteBuffer chunk = ByteBuffer.wrap(buffer);
+    int read;
+    while( (read = stream.read(buffer)) != -1 ) {
+      chunk.clear();
+      chunk.limit(read);
+      parser.feed(chunk);
+    }
+    return parser.finish();
+  }
+
+  /**
+   * Parses the bytes into the target.
+   * @param bytes The UTF-8 encoded JSON.
+   * @param target The map to fill.
+   * @return The target.
+   * @throws JsonParseException If the input is not a single JSON object.
+   */
+  public static <T extends Map<String, Object>> T parse(final byte[] bytes, final T target) throws JsonParseException {
+    final JsonParser<T> parser = new JsonParser<T>(target);
+    parser.feed(ByteBuffer.wrap(bytes));
+    return parser.finish();
+  }
+
+  /**
+   * Prepares the parser for a new document.
+   * @param target The map that the next top-level object is parsed into.
+   * @return The parser, for method chaining.
+   */
+  public JsonParser<T> reset(final T target) {
+    this.target = Preconditions.checkNotNull(target);
+    state = State.START;
+    offset = 0;
+    depth = 0;
+    length = 0;
+    return this;
+  }
+
+  /**
+   * Consumes every remaining byte of the chunk. The chunk's position is advanced to its limit.
+   * @param chunk The next bytes of the document.
+   * @throws JsonParseException If the input is malformed.
+   */
+  public void feed(final ByteBuffer chunk) throws JsonParseException {
+    while( chunk.hasRemaining() ) {
+      final int b = chunk.get() & 0xff;
+      if( !consume(b) ) {
+        // the byte terminated a number and still needs to be handled as structure
+        consume(b);
+      }
+      offset++;
+    }
+  }
+
+  /**
+   * Signals the end of input.
+   * @return The filled target.
+   * @throws JsonParseException If the document is incomplete.
+   */
+  public T finish() throws JsonParseException {
+    if( state == State.NUMBER ) {
+      endNumber();
+    }
+    if( state != State.DONE ) {
+      throw new JsonParseException("unexpected end of input", offset);
+    }
+    return target;
+  }
+
+  /**
+   * Handles one byte.
+   * @return False if the byte ended a number without being consumed.
+   */
+  private boolean consume(final int b) throws JsonParseException {
+    switch( state ) {
+    case STRING:
+      string(b);
+      return true;
+    case ESCAPE:
+      escape(b);
+      return true;
+    case UNICODE:
+      unicode(b);
+      return true;
+    case NUMBER:
+      if( b >= '0' && b <= '9' || b == '.' || b == 'e' || b == 'E' || b == '-' || b == '+' ) {
+        append((char) b);
+        return true;
+      }
+      endNumber();
+      return false;
+    case LITERAL:
+      if( b != literal[literalIndex] ) {
+        throw unexpected(b);
+      }
+      if( ++literalIndex == literal.length ) {
+        value(literal == TRUE ? Boolean.TRUE : literal == FALSE ? Boolean.FALSE : null);
+      }
+      return true;
+    default:
+      structure(b);
+      return true;
+    }
+  }
+
+  private void structure(final int b) throws JsonParseException {
+    if( b == ' ' || b == '\n' || b == '\r' || b == '\t' ) {
+      return;
+    }
+    switch( state ) {
+    case START:
+      if( b != '{' ) {
+        throw unexpected(b);
+      }
+      beginObject();
+      break;
+    case VALUE_OR_END:
+      if( b == ']' ) {
+        endArray();
+      } else {
+        beginValue(b);
+      }
+      break;
+    case VALUE:
+      beginValue(b);
+      break;
+    case KEY_OR_END:
+      if( b == '}' ) {
+        endObject();
+        break;
+      }
+      // fall through
+    case KEY:
+      if( b != '"' ) {
+        throw unexpected(b);
+      }
+      beginString(true);
+      break;
+    case COLON:
+      if( b != ':' ) {
+        throw unexpected(b);
+      }
+      state = State.VALUE;
+      break;
+    case AFTER_VALUE:
+      final Kind kind = frames[depth - 1].kind;
+      if( b == ',' ) {
+        state = kind == Kind.OBJECT || kind == Kind.LINK ? State.KEY : State.VALUE;
+      } else if( b == '}' && (kind == Kind.OBJECT || kind == Kind.LINK) ) {
+        endObject();
+      } else if( b == ']' && (kind == Kind.ARRAY || kind == Kind.LINKS) ) {
+        endArray();
+      } else {
+        throw unexpected(b);
+      }
+      break;
+    default:
+      // DONE
+      throw unexpected(b);
+    }
+  }
+
+  private void beginValue(final int b) throws JsonParseException {
+    switch( b ) {
+    case '{':
+      beginObject();
+      break;
+    case '[':
+      beginArray();
+      break;
+    case '"':
+      beginString(false);
+      break;
+    case 't':
+      beginLiteral(TRUE);
+      break;
+    case 'f':
+      beginLiteral(FALSE);
+      break;
+    case 'n':
+      beginLiteral(NULL);
+      break;
+    default:
+      if( b == '-' || b >= '0' && b <= '9' ) {
+        length = 0;
+        append((char) b);
+        state = State.NUMBER;
+      } else {
+        throw unexpected(b);
+      }
+    }
+  }
+
+  private void beginObject() throws JsonParseException {
+    if( depth == 0 ) {
+      push(Kind.OBJECT).map = target;
+    } else if( frames[depth - 1].kind == Kind.LINKS ) {
+      push(Kind.LINK);
+    } else {
+      push(Kind.OBJECT).map = Maps.newHashMap();
+    }
+    state = State.KEY_OR_END;
+  }
+
+  private void endObject() throws JsonParseException {
+    final Frame frame = frames[--depth];
+    if( depth == 0 ) {
+      state = State.DONE;
+    } else if( frame.kind == Kind.LINK ) {
+      value(buildLink(frame));
+    } else {
+      value(frame.map);
+    }
+  }
+
+  private void beginArray() throws JsonParseException {
+    final Frame parent = frames[depth - 1];
+    final boolean links = parent.kind == Kind.OBJECT && LINKS.equals(parent.key);
+    push(links ? Kind.LINKS : Kind.ARRAY).list = links ? newLinkList() : Lists.newArrayList();
+    state = State.VALUE_OR_END;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Object> newLinkList() {
+    // only Links are ever added to a LINKS frame's list
+    return (List<Object>) (List<?>) new LinkList();
+  }
+
+  private void endArray() throws JsonParseException {
+    value(frames[--depth].list);
+  }
+
+  private Frame push(final Kind kind) throws JsonParseException {
+    if( depth == MAX_DEPTH ) {
+      throw new JsonParseException("nesting deeper than " + MAX_DEPTH, offset);
+    }
+    if( depth == frames.length ) {
+      frames = Arrays.copyOf(frames, depth * 2);
+    }
+    Frame frame = frames[depth];
+    if( frame == null ) {
+      frame = new Frame();
+      frames[depth] = frame;
+    }
+    frame.reset(kind);
+    depth++;
+    return frame;
+  }
+
+  /**
+   * Delivers a completed value to the enclosing container.
+   */
+  private void value(final Object value) throws JsonParseException {
+    final Frame frame = frames[depth - 1];
+    switch( frame.kind ) {
+    case OBJECT:
+      if( value != null ) {
+        frame.map.put(frame.key, value);
+      }
+      break;
+    case LINK:
+      linkMember(frame, value);
+      break;
+    case LINKS:
+      if( !(value instanceof Link) ) {
+        throw new JsonParseException("links must only contain objects", offset);
+      }
+      frame.list.add(value);
+      break;
+    default:
+      frame.list.add(value);
+    }
+    state = State.AFTER_VALUE;
+  }
+
+  private void linkMember(final Frame frame, final Object value) {
+    final int index = linkField(frame.key);
+    if( index >= 0 && (value == null || value instanceof String) ) {
+      frame.linkFields[index] = (String) value;
+      if( frame.linkExtras != null ) {
+        frame.linkExtras.remove(frame.key);
+      }
+    } else if( value != null ) {
+      if( index >= 0 ) {
+        frame.linkFields[index] = null;
+      }
+      if( frame.linkExtras == null ) {
+        frame.linkExtras = Maps.newLinkedHashMap();
+      }
+      frame.linkExtras.put(frame.key, value);
+    }
+  }
+
+  private Link buildLink(final Frame frame) throws JsonParseException {
+    final Link.Builder builder = frame.linkExtras == null ? new Link.Builder() : new Link.Builder(frame.linkExtras);
+    final String[] fields = frame.linkFields;
+    if( fields[0] != null ) {
+      try {
+        builder.href(URI.create(fields[0]));
+      } catch( final IllegalArgumentException e ) {
+        throw new JsonParseException("invalid href", offset, e);
+      }
+    }
+    return builder.rel(fields[1]).type(fields[2]).title(fields[3]).hrefLang(fields[4]).length(fields[5]).build();
+  }
+
+  private static int linkField(final String key) {
+    for( int i = 0; i < LINK_FIELDS.length; i++ ) {
+      if( LINK_FIELDS[i] == key ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void beginLiteral(final byte[] expected) {
+    literal = expected;
+    literalIndex = 1;
+    state = State.LITERAL;
+  }
+
+  private void endNumber() throws JsonParseException {
+    if( !isNumber() ) {
+      throw new JsonParseException("malformed number " + new String(chars, 0, length), offset);
+    }
+    final String text = new String(chars, 0, length);
+    Object number = null;
+    if( isIntegral() ) {
+      if( length < 19 ) {
+        number = Long.valueOf(Long.parseLong(text));
+      } else {
+        final BigInteger big = new BigInteger(text);
+        number = big.bitLength() < 64 ? (Object) Long.valueOf(big.longValue()) : big;
+      }
+    } else {
+      number = Double.valueOf(text);
+    }
+    value(number);
+  }
+
+  private boolean isIntegral() {
+    for( int i = 0; i < length; i++ ) {
+      final char c = chars[i];
+      if( c == '.' || c == 'e' || c == 'E' ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the buffered number against the JSON grammar: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+   */
+  private boolean isNumber() {
+    int i = 0;
+    if( i < length && chars[i] == '-' ) {
+      i++;
+    }
+    if( i < length && chars[i] == '0' ) {
+      i++;
+    } else {
+      final int start = i;
+      i = digits(i);
+      if( i == start ) {
+        return false;
+      }
+    }
+    if( i < length && chars[i] == '.' ) {
+      final int start = ++i;
+      i = digits(i);
+      if( i == start ) {
+        return false;
+      }
+    }
+    if( i < length && (chars[i] == 'e' || chars[i] == 'E') ) {
+      i++;
+      if( i < length && (chars[i] == '+' || chars[i] == '-') ) {
+        i++;
+      }
+      final int start = i;
+      i = digits(i);
+      if( i == start ) {
+        return false;
+      }
+    }
+    return i == length;
+  }
+
+  private int digits(final int from) {
+    int i = from;
+    while( i < length && chars[i] >= '0' && chars[i] <= '9' ) {
+      i++;
+    }
+    return i;
+  }
+
+  private void beginString(final boolean key) {
+    stringIsKey = key;
+    length = 0;
+    utf8Remaining = 0;
+    state = State.STRING;
+  }
+
+  private void string(final int b) throws JsonParseException {
+    if( utf8Remaining > 0 ) {
+      if( (b & 0xc0) != 0x80 ) {
+        throw new JsonParseException("malformed UTF-8", offset);
+      }
+      utf8CodePoint = utf8CodePoint << 6 | b & 0x3f;
+      if( --utf8Remaining == 0 ) {
+        appendCodePoint(utf8CodePoint);
+      }
+    } else if( b == '"' ) {
+      endString();
+    } else if( b == '\\' ) {
+      state = State.ESCAPE;
+    } else if( b < 0x20 ) {
+      throw unexpected(b);
+    } else if( b < 0x80 ) {
+      append((char) b);
+    } else if( (b & 0xe0) == 0xc0 ) {
+      utf8CodePoint = b & 0x1f;
+      utf8Remaining = 1;
+      utf8Minimum = 0x80;
+    } else if( (b & 0xf0) == 0xe0 ) {
+      utf8CodePoint = b & 0x0f;
+      utf8Remaining = 2;
+      utf8Minimum = 0x800;
+    } else if( (b & 0xf8) == 0xf0 ) {
+      utf8CodePoint = b & 0x07;
+      utf8Remaining = 3;
+      utf8Minimum = 0x10000;
+    } else {
+      throw new JsonParseException("malformed UTF-8", offset);
+    }
+  }
+
+  private void escape(final int b) throws JsonParseException {
+    state = State.STRING;
+    switch( b ) {
+    case '"':
+    case '\\':
+    case '/':
+      append((char) b);
+      break;
+    case 'b':
+      append('\b');
+      break;
+    case 'f':
+      append('\f');
+      break;
+    case 'n':
+      append('\n');
+      break;
+    case 'r':
+      append('\r');
+      break;
+    case 't':
+      append('\t');
+      break;
+    case 'u':
+      unicodeDigits = 0;
+      unicodeValue = 0;
+      state = State.UNICODE;
+      break;
+    default:
+      throw unexpected(b);
+    }
+  }
+
+  private void unicode(final int b) throws JsonParseException {
+    final int digit = Character.digit(b, 16);
+    if( digit < 0 ) {
+      throw unexpected(b);
+    }
+    unicodeValue = unicodeValue << 4 | digit;
+    if( ++unicodeDigits == 4 ) {
+      append((char) unicodeValue);
+      state = State.STRING;
+    }
+  }
+
+  private void endString() throws JsonParseException {
+    if( stringIsKey ) {
+      frames[depth - 1].key = key();
+      state = State.COLON;
+    } else {
+      value(new String(chars, 0, length));
+    }
+  }
+
+  /**
+   * Returns the buffered key, reusing a previously decoded String with the same characters if there is one. Documents repeat the same few keys many times.
+   * Well-known keys always come back as the shared constants, so they can be compared by identity.
+   */
+  private String key() {
+    int hash = 0;
+    for( int i = 0; i < length; i++ ) {
+      hash = 31 * hash + chars[i];
+    }
+    final int slot = (hash ^ hash >>> 16) & keyCache.length - 1;
+    final String cached = keyCache[slot];
+    if( cached != null && cached.length() == length ) {
+      boolean same = true;
+      for( int i = 0; i < length && same; i++ ) {
+        same = cached.charAt(i) == chars[i];
+      }
+      if( same ) {
+        return cached;
+      }
+    }
+    String key = new String(chars, 0, length);
+    if( LINKS.equals(key) ) {
+      key = LINKS;
+    } else {
+      for( final String field : LINK_FIELDS ) {
+        if( field.equals(key) ) {
+          key = field;
+        }
+      }
+    }
+    keyCache[slot] = key;
+    return key;
+  }
+
+  private void appendCodePoint(final int codePoint) throws JsonParseException {
+    if( codePoint < utf8Minimum || codePoint > Character.MAX_CODE_POINT || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE ) {
+      throw new JsonParseException("malformed UTF-8", offset);
+    }
+    if( codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT ) {
+      append((char) ((codePoint >>> 10) + (Character.MIN_HIGH_SURROGATE - (Character.MIN_SUPPLEMENTARY_CODE_POINT >>> 10))));
+      append((char) ((codePoint & 0x3ff) + Character.MIN_LOW_SURROGATE));
+    } else {
+      append((char) codePoint);
+    }
+  }
+
+  private void append(final char c) {
+    if( length == chars.length ) {
+      chars = Arrays.copyOf(chars, length * 2);
+    }
+    chars[length++] = c;
+  }
+
+  private JsonParseException unexpected(final int b) {
+    return new JsonParseException(b < 0x20 || b >= 0x7f ? "unexpected byte 0x" + Integer.toHexString(b) : "unexpected '" + (char) b + "'", offset);
+  }
+}
@@ -0,0 +1,497 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A streaming JSON writer that encodes UTF-8 straight into a reusable byte buffer. When the buffer fills up it is drained to the target OutputStream or
+ * WritableByteChannel; a writer without a target grows its buffer instead, and its output can be read back with toByteArray().
+ * <p>
+ * Writers are not thread-safe, but they are meant to be reused: reset() points an existing writer (and its buffer) at a new target.
+ * @author Jason Rose
+ */
+public class JsonWriter {
+
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+  private static final int MIN_BUFFER_SIZE = 16;
+  private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+  private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+  private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+  private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+  private static final byte[] MIN_LONG = { '-', '9', '2', '2', '3', '3', '7', '2', '0', '3', '6', '8', '5', '4', '7', '7', '5', '8', '0', '8' };
+
+  private byte[] buffer;
+  private ByteBuffer channelView;
+  private int position;
+  private OutputStream stream;
+  private WritableByteChannel channel;
+
+  /** Whether the container at each depth has had a member written to it yet. Index 0 is the top level. */
+  private boolean[] started = new boolean[16];
+  /** Whether the container at each depth is an object rather than an array. */
+  private boolean[] objects = new boolean[16];
+  private int depth;
+  private boolean afterName;
+
+  /**
+   * Creates an in-memory writer.
+   */
+  public JsonWriter() {
+    this(512);
+  }
+
+  /**
+   * Creates an in-memory writer.
+   * @param initialCapacity The initial size of the buffer, in bytes.
+   */
+  public JsonWriter(final int initialCapacity) {
+    buffer = new byte[Math.max(initialCapacity, MIN_BUFFER_SIZE)];
+  }
+
+  /**
+   * Creates a writer that drains to the stream.
+   * @param stream The stream to write to.
+   */
+  public JsonWriter(final OutputStream stream) {
+    this(DEFAULT_BUFFER_SIZE);
+    reset(stream);
+  }
+
+  /**
+   * Creates a writer that drains to the channel.
+   * @param channel The channel to write to.
+   */
+  public JsonWriter(final WritableByteChannel channel) {
+    this(DEFAULT_BUFFER_SIZE);
+    reset(channel);
+  }
+
+  /**
+   * Discards any buffered output and state, and turns this into an in-memory writer.
+   * @return The writer, for method chaining.
+   */
+  public JsonWriter reset() {
+    position = 0;
+    depth = 0;
+    started[0] = false;
+    afterName = false;
+    stream = null;
+    channel = null;
+    return this;
+  }
+
+  /**
+   * Discards any buffered output and state, and points the writer at a new stream.
+   * @param stream The stream to write to.
+   * @return The writer, for method chaining.
+   */
+  public JsonWriter reset(final OutputStream stream) {
+    reset();
+    this.stream = Preconditions.checkNotNull(stream);
+    return this;
+  }
+
+  /**
+   * Discards any buffered output and state, and points the writer at a new channel.
+   * @param channel The channel to write to.
+   * @return The writer, for method chaining.
+   */
+  public JsonWriter reset(final WritableByteChannel channel) {
+    reset();
+    this.channel = Preconditions.checkNotNull(channel);
+    return this;
+  }
+
+  public JsonWriter beginArray() throws IOException {
+    beforeValue();
+    writeRaw((byte) '[');
+    push(false);
+    return this;
+  }
+
+  public JsonWriter endArray() throws IOException {
+    pop(false);
+    writeRaw((byte) ']');
+    return this;
+  }
+
+  public JsonWriter beginObject() throws IOException {
+    beforeValue();
+    writeRaw((byte) '{');
+    push(true);
+    return this;
+  }
+
+  public JsonWriter endObject() throws IOException {
+    pop(true);
+    writeRaw((byte) '}');
+    return this;
+  }
+
+  /**
+   * Writes the name of the next object member.
+   * @param name The member name.
+   * @return The writer, for method chaining.
+   * @throws IOException If draining the buffer fails.
+   */
+  public JsonWriter name(final String name) throws IOException {
+    beforeName();
+    writeString(name);
+    writeRaw((byte) ':');
+    return this;
+  }
+
+  /**
+   * Writes the name of the next object member by copying its pre-encoded bytes.
+   * @param name The member name.
+   * @return The writer, for method chaining.
+   * @throws IOException If draining the buffer fails.
+   */
+  public JsonWriter name(final JsonName name) throws IOException {
+    beforeName();
+    final byte[] encoded = name.encoded();
+    writeRaw(encoded, 0, encoded.length);
+    return this;
+  }
+
+  public JsonWriter value(final String value) throws IOException {
+    if( value == null ) {
+      return nullValue();
+    }
+    beforeValue();
+    writeString(value);
+    return this;
+  }
+
+  public JsonWriter value(final boolean value) throws IOException {
+    beforeValue();
+    final byte[] bytes = value ? TRUE : FALSE;
+    writeRaw(bytes, 0, bytes.length);
+    return this;
+  }
+
+  public JsonWriter value(final long value) throws IOException {
+    beforeValue();
+    if( value == Long.MIN_VALUE ) {
+      writeRaw(MIN_LONG, 0, MIN_LONG.length);
+      return this;
+    }
+    ensure(20);
+    long remaining = value;
+    if( remaining < 0 ) {
+      buffer[position++] = '-';
+      remaining = -remaining;
+    }
+    final int digits = digits(remaining);
+    int index = position + digits;
+    position = index;
+    do {
+      buffer[--index] = (byte) ('0' + (int) (remaining % 10));
+      remaining /= 10;
+    } while( remaining != 0 );
+    return this;
+  }
+
+  /**
+   * Writes a floating point value.
+   * @param value The value to write.
+   * @return The writer, for method chaining.
+   * @throws IOException If draining the buffer fails.
+   * @throws IllegalArgumentException If the value is NaN or infinite, which JSON cannot represent.
+   */
+  public JsonWriter value(final double value) throws IOException {
+    Preconditions.checkArgument(!Double.isNaN(value) && !Double.isInfinite(value), "JSON cannot represent %s", value);
+    beforeValue();
+    writeAscii(Double.toString(value));
+    return this;
+  }
+
+  /**
+   * Writes a single-precision floating point value in its shortest float form, so 0.1f is written as 0.1 rather than as the double it widens to.
+   * @param value The value to write.
+   * @return The writer, for method chaining.
+   * @throws IOException If draining the buffer fails.
+   * @throws IllegalArgumentException If the value is NaN or infinite, which JSON cannot represent.
+   */
+  public JsonWriter value(final float value) throws IOException {
+    Preconditions.checkArgument(!Float.isNaN(value) && !Float.isInfinite(value), "JSON cannot represent %s", value);
+    beforeValue();
+    writeAscii(Float.toString(value));
+    return this;
+  }
+
+  /**
+   * Writes a pre-formatted JSON number, such as the toString() of a BigDecimal.
+   * @param number The number's JSON text.
+   * @return The writer, for method chaining.
+   * @throws IOException If draining the buffer fails.
+   */
+  public JsonWriter numberValue(final String number) throws IOException {
+    beforeValue();
+    writeAscii(number);
+    return this;
+  }
+
+  /**
+   * Writes a pre-encoded JSON value by copying its bytes. The bytes are not checked, so they must hold exactly one complete value.
+   * @param json The UTF-8 encoded value.
+   * @return The writer, for method chaining.
+   * @throws IOException If draining the buffer fails.
+   */
+  public JsonWriter rawValue(final byte[] json) throws IOException {
+    beforeValue();
+    writeRaw(json, 0, json.length);
+    return this;
+  }
+
+  /**
+   * Writes the separator for a value whose bytes are written to the target by other means, such as ParallelJsonEncoder's chunks.
+   */
+  void beginExternalValue() throws IOException {
+    beforeValue();
+  }
+
+  public JsonWriter nullValue() throws IOException {
+    beforeValue();
+    writeRaw(NULL, 0, NULL.length);
+    return this;
+  }
+
+  /**
+   * Drains the buffer to the target and flushes the target. Does nothing for in-memory writers.
+   * @throws IOException If writing to the target fails.
+   */
+  public void flush() throws IOException {
+    if( stream != null || channel != null ) {
+      drain();
+      if( stream != null ) {
+        stream.flush();
+      }
+    }
+  }
+
+  /**
+   * Returns the size of the buffer, which an in-memory writer grows to hold its whole output.
+   */
+  int capacity() {
+    return buffer.length;
+  }
+
+  /**
+   * Returns the number of bytes currently buffered.
+   * @return The number of bytes currently buffered.
+   */
+  public int size() {
+    return position;
+  }
+
+  /**
+   * Returns a copy of the buffered output.
+   * @return A copy of the buffered output.
+   */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(buffer, position);
+  }
+
+  void writeRaw(final byte b) throws IOException {
+    ensure(1);
+    buffer[position++] = b;
+  }
+
+  void writeRaw(final byte[] bytes, final int offset, final int length) throws IOException {
+    if( length > buffer.length - position ) {
+      if( stream != null && length > buffer.length ) {
+        drain();
+        stream.write(bytes, offset, length);
+        return;
+      }
+      ensure(length);
+    }
+    System.arraycopy(bytes, offset, buffer, position, length);
+    position += length;
+  }
+
+  /**
+   * Writes a quoted, escaped string as UTF-8 without allocating an intermediate byte array.
+   */
+  void writeString(final String value) throws IOException {
+    ensure(1);
+    buffer[position++] = '"';
+    final int length = value.length();
+    for( int i = 0; i < length; i++ ) {
+      if( buffer.length - position < 6 ) {
+        ensure(6);
+      }
+      final char c = value.charAt(i);
+      if( c < 0x80 ) {
+        if( c >= 0x20 && c != '"' && c != '\\' ) {
+          buffer[position++] = (byte) c;
+        } else {
+          writeEscape(c);
+        }
+      } else if( c < 0x800 ) {
+        buffer[position++] = (byte) (0xc0 | c >> 6);
+        buffer[position++] = (byte) (0x80 | c & 0x3f);
+      } else if( Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)) ) {
+        final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[position++] = (byte) (0xf0 | codePoint >> 18);
+        buffer[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        buffer[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        buffer[position++] = (byte) (0x80 | codePoint & 0x3f);
+      } else if( c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE ) {
+        // unpaired surrogate, which UTF-8 cannot carry
+        writeEscape(c);
+      } else {
+        buffer[position++] = (byte) (0xe0 | c >> 12);
+        buffer[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+        buffer[position++] = (byte) (0x80 | c & 0x3f);
+      }
+    }
+    ensure(1);
+    buffer[position++] = '"';
+  }
+
+  private void writeEscape(final char c) {
+    buffer[position++] = '\\';
+    switch( c ) {
+    case '"':
+      buffer[position++] = '"';
+      break;
+    case '\\':
+      buffer[position++] = '\\';
+      break;
+    case '\n':
+      buffer[position++] = 'n';
+      break;
+    case '\r':
+      buffer[position++] = 'r';
+      break;
+    case '\t':
+      buffer[position++] = 't';
+      break;
+    case '\b':
+      buffer[position++] = 'b';
+      break;
+    case '\f':
+      buffer[position++] = 'f';
+      break;
+    default:
+      buffer[position++] = 'u';
+      buffer[position++] = HEX[c >> 12 & 0xf];
+      buffer[position++] = HEX[c >> 8 & 0xf];
+      buffer[position++] = HEX[c >> 4 & 0xf];
+      buffer[position++] = HEX[c & 0xf];
+    }
+  }
+
+  private void writeAscii(final String value) throws IOException {
+    final int length = value.length();
+    ensure(length);
+    for( int i = 0; i < length; i++ ) {
+      buffer[position++] = (byte) value.charAt(i);
+    }
+  }
+
+  private void beforeName() throws IOException {
+    Preconditions.checkState(objects[depth] && !afterName, "a name is only allowed directly inside an object");
+    separate();
+    afterName = true;
+  }
+
+  private void beforeValue() throws IOException {
+    if( afterName ) {
+      afterName = false;
+    } else {
+      separate();
+    }
+  }
+
+  private void separate() throws IOException {
+    if( started[depth] ) {
+      writeRaw((byte) ',');
+    } else {
+      started[depth] = true;
+    }
+  }
+
+  private void push(final boolean object) {
+    depth++;
+    if( depth == started.length ) {
+      started = Arrays.copyOf(started, depth * 2);
+      objects = Arrays.copyOf(objects, depth * 2);
+    }
+    started[depth] = false;
+    objects[depth] = object;
+  }
+
+  private void pop(final boolean object) {
+    Preconditions.checkState(depth > 0 && objects[depth] == object && !afterName, "no open %s to close", object ? "object" : "array");
+    depth--;
+  }
+
+  /**
+   * Makes room for at least the given number of bytes, draining to the target or growing the buffer.
+   */
+  private void ensure(final int length) throws IOException {
+    if( buffer.length - position >= length ) {
+      return;
+    }
+    if( stream != null || channel != null ) {
+      drain();
+    }
+    if( buffer.length - position < length ) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      channelView = null;
+    }
+  }
+
+  private void drain() throws IOException {
+    if( position == 0 ) {
+      return;
+    }
+    if( stream != null ) {
+      stream.write(buffer, 0, position);
+    } else {
+      if( channelView == null ) {
+        channelView = ByteBuffer.wrap(buffer);
+      }
+      channelView.clear();
+      channelView.limit(position);
+      while( channelView.hasRemaining() ) {
+        channel.write(channelView);
+      }
+    }
+    position = 0;
+  }
+
+  private static int digits(final long value) {
+    long limit = 10;
+    for( int digits = 1; digits < 19; digits++ ) {
+      if( value < limit ) {
+        return digits;
+      }
+      limit *= 10;
+    }
+    return 19;
+  }
+}
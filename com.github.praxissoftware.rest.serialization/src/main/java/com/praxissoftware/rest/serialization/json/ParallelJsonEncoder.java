@@ -0,0 +1,237 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.praxissoftware.rest.core.SnapshotList;
+
+/**
+ * Encodes large Representations as JSON on several threads. The calling thread encodes the tree, but hands each chunk of every list longer than the chunk
+ * size, such as a links list or a list of embedded entities, to the executor to encode into a buffer of its own.
+ * <p>
+ * Written to a stream, output goes out in order as soon as it can: what the calling thread encodes is written straight through, and only held back while an
+ * earlier chunk is still being encoded, and each chunk is written once it's done and everything before it has been. Written to a channel, the whole document
+ * is buffered first and then written in gathering writes, so memory grows with the document, Streamed values included.
+ * <p>
+ * Values without a long list are encoded on the calling thread only, as JsonEncoder would, so the chunk size doubles as the threshold below which the encoder
+ * stays single-threaded. Lists are only split if they're RandomAccess; Streamed values are encoded on the calling thread as they're pulled. The output is
+ * byte for byte the same as JsonEncoder's. The executor must not run tasks on the calling thread unless it has other threads, or encoding degrades to
+ * sequential. Encoders are thread-safe.
+ * @author Jason Rose
+ */
+public class ParallelJsonEncoder {
+
+  private final JsonEncoder encoder = new JsonEncoder();
+  private final ExecutorService executor;
+  private final int chunkSize;
+
+  /**
+   * Creates the encoder.
+   * @param executor The executor that encodes chunks, such as a ForkJoinPool or a fixed thread pool.
+   * @param chunkSize The number of list elements in each chunk; shorter lists aren't split.
+   */
+  public ParallelJsonEncoder(final ExecutorService executor, final int chunkSize) {
+    Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive: %s", chunkSize);
+    this.executor = Preconditions.checkNotNull(executor);
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Encodes the value to the stream and flushes it.
+   * @param value The value to encode.
+   * @param stream The stream to write to.
+   * @throws IOException If writing to the stream fails, or the thread is interrupted while waiting for a chunk.
+   */
+  public void encode(final Object value, final OutputStream stream) throws IOException {
+    final Splitter splitter = new Splitter(stream);
+    try {
+      splitter.encode(value, splitter.skeleton);
+      splitter.skeleton.flush();
+      splitter.writeReady(true);
+      stream.flush();
+    } finally {
+      cancel(splitter.segments);
+    }
+  }
+
+  /**
+   * Encodes the value to the channel. The whole document is buffered first; gathering channels, such as SocketChannels and FileChannels, are then written all
+   * the buffers at once.
+   * @param value The value to encode.
+   * @param channel The channel to write to.
+   * @throws IOException If writing to the channel fails, or the thread is interrupted while waiting for a chunk.
+   */
+  public void encode(final Object value, final WritableByteChannel channel) throws IOException {
+    final Splitter splitter = new Splitter(null);
+    try {
+      splitter.encode(value, splitter.skeleton);
+      splitter.skeleton.flush();
+      final ByteBuffer[] buffers = new ByteBuffer[splitter.segments.size()];
+      int count = 0;
+      for( final Object segment : splitter.segments ) {
+        buffers[count++] = await(segment);
+      }
+      if( channel instanceof GatheringByteChannel ) {
+        final GatheringByteChannel gathering = (GatheringByteChannel) channel;
+        int first = 0;
+        while( first < buffers.length ) {
+          gathering.write(buffers, first, buffers.length - first);
+          while( first < buffers.length && !buffers[first].hasRemaining() ) {
+            first++;
+          }
+        }
+      } else {
+        for( final ByteBuffer buffer : buffers ) {
+          while( buffer.hasRemaining() ) {
+            channel.write(buffer);
+          }
+        }
+      }
+    } finally {
+      cancel(splitter.segments);
+    }
+  }
+
+  private static ByteBuffer await(final Object segment) throws IOException {
+    if( segment instanceof ByteBuffer ) {
+      return (ByteBuffer) segment;
+    }
+    try {
+      return (ByteBuffer) ((Future<?>) segment).get();
+    } catch( final InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for a chunk");
+    } catch( final ExecutionException e ) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private static void cancel(final Collection<Object> segments) {
+    for( final Object segment : segments ) {
+      if( segment instanceof Future ) {
+        ((Future<?>) segment).cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Encodes the tree on the calling thread, submitting the chunks of long lists as it goes.
+   */
+  private final class Splitter extends JsonEncoder {
+    /** The output not yet written to the target, in order: ByteBuffers for what the calling thread wrote and Futures of ByteBuffers for the chunks. */
+    final Deque<Object> segments = new ArrayDeque<Object>();
+    /** The stream that output is written to as soon as it's ready, or null to keep all of it in segments. */
+    private final OutputStream target;
+    final JsonWriter skeleton = new JsonWriter(new OutputStream() {
+      @Override
+      public void write(final int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) throws IOException {
+        if( target != null ) {
+          writeReady(false);
+        }
+        if( target != null && segments.isEmpty() ) {
+          target.write(b, off, len);
+        } else {
+          segments.add(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+        }
+      }
+    });
+
+    Splitter(final OutputStream target) {
+      this.target = target;
+    }
+
+    /**
+     * Writes the leading segments to the target, stopping at a chunk that isn't done yet unless wait is set.
+     */
+    void writeReady(final boolean wait) throws IOException {
+      while( !segments.isEmpty() && (wait || !(segments.peek() instanceof Future) || ((Future<?>) segments.peek()).isDone()) ) {
+        final ByteBuffer buffer = await(segments.peek());
+        target.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        segments.poll();
+      }
+    }
+
+    @Override
+    public void encode(final Object value, final JsonWriter writer) throws IOException {
+      if( writer == skeleton && value instanceof List && value instanceof RandomAccess && ((List<?>) value).size() > chunkSize ) {
+        writer.beginArray();
+        // the chunks are read on other threads, so they're cut from a snapshot if the list can take one
+        final List<?> list = value instanceof SnapshotList ? ((SnapshotList<?>) value).snapshot() : (List<?>) value;
+        for( final List<?> chunk : Lists.partition(list, chunkSize) ) {
+          writer.beginExternalValue();
+          writer.flush();
+          segments.add(executor.submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws IOException {
+              return encodeChunk(chunk);
+            }
+          }));
+          if( target != null ) {
+            writeReady(false);
+          }
+        }
+        writer.endArray();
+      } else {
+        super.encode(value, writer);
+      }
+    }
+
+    @Override
+    Object formatKey() {
+      // the output is JsonEncoder's, so share its cached forms
+      return JsonEncoder.class;
+    }
+  }
+
+  /**
+   * Encodes the elements as a comma-separated run, by encoding them as an array and leaving the brackets out.
+   */
+  private ByteBuffer encodeChunk(final List<?> chunk) throws IOException {
+    final JsonWriter writer = new JsonWriter(chunk.size() * 64);
+    writer.beginArray();
+    for( final Object element : chunk ) {
+      encoder.encode(element, writer);
+    }
+    writer.endArray();
+    final byte[] bytes = writer.toByteArray();
+    return ByteBuffer.wrap(bytes, 1, bytes.length - 2);
+  }
+}
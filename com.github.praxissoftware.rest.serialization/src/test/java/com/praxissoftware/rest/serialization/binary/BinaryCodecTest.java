@@ -0,0 +1,152 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.LinkList;
+import com.praxissoftware.rest.serialization.json.JsonEncoder;
+
+public class BinaryCodecTest {
+
+  private final BinaryCodec codec = new BinaryCodec();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.put("title", "\"quoted\" caf\u00e9 \ud83d\ude00");
+    rep.getLinks().add(new Link.Builder(ImmutableMap.of("profile", "urn:x", "custom", "y")).href(URI.create("/a")).rel("self").type("application/json").build());
+    rep.getLinks().add(new Link.Builder().href("/b?q=1").rel("next").title("Next").hrefLang("en").length("10").build());
+    final BasicRepresentation parsed = codec.decode(codec.encode(rep), new BasicRepresentation());
+    Assert.assertEquals(rep, parsed);
+    Assert.assertEquals("/b?q=1", parsed.getLinks().get(1).getRawHref());
+    Assert.assertTrue(parsed.getLinks() instanceof LinkList);
+    Assert.assertEquals("/b?q=1", parsed.getLink("next").getRawHref());
+  }
+
+  @Test
+  public void testLinksHoldingOtherValuesStayAList() throws IOException {
+    final Map<String, Object> map = Maps.newHashMap();
+    map.put("links", Arrays.<Object> asList(new Link.Builder().href("/a").rel("self").build(), "text"));
+    final Map<String, Object> parsed = codec.decode(codec.encode(map), Maps.<String, Object> newHashMap());
+    Assert.assertEquals(map, parsed);
+    Assert.assertFalse(parsed.get("links") instanceof LinkList);
+  }
+
+  @Test
+  public void testValues() throws IOException {
+    final Map<String, Object> map = Maps.newLinkedHashMap();
+    map.put("int", Integer.valueOf(-7));
+    map.put("long", Long.valueOf(Long.MIN_VALUE));
+    map.put("double", Double.valueOf(-1.5e200));
+    map.put("decimal", new BigDecimal("3.14159265358979323846"));
+    map.put("big", new BigInteger("92233720368547758080"));
+    map.put("true", Boolean.TRUE);
+    map.put("false", Boolean.FALSE);
+    map.put("list", Arrays.<Object> asList("a", null, Integer.valueOf(1)));
+    map.put("nested", ImmutableMap.of("x", "y"));
+    map.put("gone", null);
+    final Map<String, Object> parsed = codec.decode(new ByteArrayInputStream(codec.encode(map)), Maps.<String, Object> newHashMap());
+    map.remove("gone");
+    Assert.assertEquals(map, parsed);
+  }
+
+  @Test
+  public void testRepeatedKeysAreShared() throws IOException {
+    final List<Object> items = Lists.newArrayList();
+    for( int i = 0; i < 3; i++ ) {
+      items.add(ImmutableMap.of("custom key", Integer.valueOf(i)));
+    }
+    final Map<String, Object> parsed = codec.decode(codec.encode(ImmutableMap.of("items", items)), Maps.<String, Object> newHashMap());
+    final List<?> list = (List<?>) parsed.get("items");
+    final Object first = ((Map<?, ?>) list.get(0)).keySet().iterator().next();
+    final Object last = ((Map<?, ?>) list.get(2)).keySet().iterator().next();
+    Assert.assertEquals("custom key", first);
+    Assert.assertSame(first, last);
+  }
+
+  @Test
+  public void testRepeatedLinksAreSplicedWithTheirSymbols() throws IOException {
+    final Link link = new Link.Builder(ImmutableMap.of("custom", "x")).href("/a").rel("urn:rel:a").build();
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.put("custom", "before");
+    for( int i = 0; i < 3; i++ ) {
+      rep.getLinks().add(link);
+      rep.getLinks().add(new Link.Builder(ImmutableMap.of("custom", Integer.valueOf(i))).rel("urn:rel:a").build());
+    }
+    for( int i = 0; i < 2; i++ ) {
+      Assert.assertEquals(rep, codec.decode(codec.encode(rep), new BasicRepresentation()));
+    }
+    Assert.assertNotNull(link.getEncodedForm(BinaryEncoder.class));
+  }
+
+  @Test
+  public void testSmallerThanJson() throws IOException {
+    final BasicRepresentation rep = new BasicRepresentation();
+    for( int i = 0; i < 100; i++ ) {
+      rep.getLinks().add(new Link.Builder().href("/items/" + i).rel("item").type("application/json").build());
+    }
+    final ByteArrayOutputStream json = new ByteArrayOutputStream();
+    new JsonEncoder().encode(rep, json);
+    final byte[] binary = codec.encode(rep);
+    Assert.assertTrue(binary.length + " vs " + json.size(), binary.length * 2 < json.size());
+  }
+
+  @Test
+  public void testMalformed() {
+    final byte[] valid = codec.encode(ImmutableMap.of("a", "b"));
+    assertMalformed(new byte[0]);
+    assertMalformed("{}".getBytes());
+    assertMalformed(Arrays.copyOf(valid, valid.length - 1));
+    assertMalformed(Arrays.copyOf(valid, valid.length + 1));
+    final byte[] hugeCount = Arrays.copyOf(BinaryFormat.MAGIC, 10);
+    hugeCount[4] = BinaryFormat.MAP;
+    Arrays.fill(hugeCount, 5, 9, (byte) 0xff);
+    hugeCount[9] = 0x0f;
+    assertMalformed(hugeCount);
+    final byte[] badSymbol = Arrays.copyOf(BinaryFormat.MAGIC, 8);
+    badSymbol[4] = BinaryFormat.MAP;
+    badSymbol[5] = 1;
+    badSymbol[6] = 0x7f;
+    badSymbol[7] = BinaryFormat.NULL;
+    assertMalformed(badSymbol);
+  }
+
+  private void assertMalformed(final byte[] bytes) {
+    try {
+      codec.decode(bytes, Maps.<String, Object> newHashMap());
+      Assert.fail(Arrays.toString(bytes));
+    } catch( final IOException e ) {
+      Assert.assertTrue(e instanceof BinaryParseException);
+    }
+  }
+}
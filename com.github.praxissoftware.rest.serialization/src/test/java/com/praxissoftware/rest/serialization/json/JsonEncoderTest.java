@@ -0,0 +1,138 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Functions;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.CursorPage;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.StreamingRepresentation;
+import com.praxissoftware.rest.core.UriTemplate;
+
+public class JsonEncoderTest {
+
+  private final JsonEncoder encoder = new JsonEncoder();
+
+  @Test
+  public void testLink() {
+    final Link link = new Link.Builder().href(URI.create("/a?b=c")).rel("self").type("text/foo").title("T\u00e9").hrefLang("en").length("10").build();
+    Assert.assertEquals("{\"href\":\"/a?b=c\",\"rel\":\"self\",\"type\":\"text/foo\",\"title\":\"T\u00e9\",\"hrefLang\":\"en\",\"length\":\"10\"}", text(link));
+  }
+
+  @Test
+  public void testLinkWithExtraMembers() {
+    final Link link = new Link.Builder(ImmutableMap.of("profile", "urn:x")).rel("self").build();
+    Assert.assertEquals("{\"rel\":\"self\",\"profile\":\"urn:x\"}", text(link));
+  }
+
+  @Test
+  public void testRawHrefIsWrittenUnparsed() {
+    final Link link = new Link.Builder(ImmutableMap.of("profile", "urn:x")).href("/a b").rel("self").build();
+    Assert.assertEquals("{\"href\":\"/a b\",\"rel\":\"self\",\"profile\":\"urn:x\"}", text(link));
+  }
+
+  @Test
+  public void testRepeatedLinkIsCachedAsBytes() {
+    final Link link = new Link.Builder(ImmutableMap.of("profile", "urn:x")).href("/a").rel("self").build();
+    final String expected = "{\"href\":\"/a\",\"rel\":\"self\",\"profile\":\"urn:x\"}";
+    Assert.assertEquals(expected, text(link));
+    Assert.assertFalse(link.getEncodedForm(JsonEncoder.class) instanceof byte[]);
+    Assert.assertEquals("[" + expected + "," + expected + "]", text(ImmutableList.of(link, link)));
+    Assert.assertTrue(link.getEncodedForm(JsonEncoder.class) instanceof byte[]);
+    Assert.assertEquals(expected, text(link));
+  }
+
+  @Test
+  public void testRepresentation() {
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.getLinks().add(new Link.Builder().href(URI.create("/1")).rel("item").build());
+    rep.getLinks().add(new Link.Builder().href(URI.create("/2")).rel("item").build());
+    Assert.assertEquals("{\"links\":[{\"href\":\"/1\",\"rel\":\"item\"},{\"href\":\"/2\",\"rel\":\"item\"}]}", text(rep));
+  }
+
+  @Test
+  public void testValues() {
+    final Map<String, Object> map = Maps.newLinkedHashMap();
+    map.put("int", Integer.valueOf(3));
+    map.put("double", Double.valueOf(2.5));
+    map.put("float", Float.valueOf(0.1f));
+    map.put("decimal", new BigDecimal("1.10"));
+    map.put("bool", Boolean.FALSE);
+    map.put("null", null);
+    map.put("list", Lists.newArrayList("a", Long.valueOf(1)));
+    map.put("array", new Object[] { "b" });
+    map.put("uri", URI.create("/x"));
+    Assert.assertEquals("{\"int\":3,\"double\":2.5,\"float\":0.1,\"decimal\":1.10,\"bool\":false,\"null\":null,\"list\":[\"a\",1],\"array\":[\"b\"],\"uri\":\"/x\"}", text(map));
+  }
+
+  @Test
+  public void testStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.encode(new BasicRepresentation(), out);
+    Assert.assertEquals("{\"links\":[]}", new String(out.toByteArray(), Charsets.UTF_8));
+  }
+
+  @Test
+  public void testStreamingRepresentation() throws IOException {
+    final StreamingRepresentation rep = new StreamingRepresentation();
+    rep.getLinks().add(new Link.Builder().href("/widgets").rel("self").build());
+    rep.page("items", new CursorPage<Integer>(ImmutableList.of(1, 2, 3).iterator(), 2, Functions.toStringFunction()).nextLink(UriTemplate.compile("/widgets{?after}")));
+    rep.put("total", 3);
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.encode(rep, out);
+    Assert.assertEquals("{\"total\":3,\"items\":[1,2],\"links\":[{\"href\":\"/widgets\",\"rel\":\"self\"},{\"href\":\"/widgets?after=2\",\"rel\":\"next\"}]}",
+        new String(out.toByteArray(), Charsets.UTF_8));
+  }
+
+  @Test
+  public void testStreamedLinksAreWrittenAsTheyArePulled() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final Iterator<Link> links = new AbstractIterator<Link>() {
+      private int count;
+
+      @Override
+      protected Link computeNext() {
+        if( count == 100000 ) {
+          Assert.assertTrue(out.size() > 0);
+          return endOfData();
+        }
+        return new Link.Builder().href("/widgets/" + count++).rel("item").build();
+      }
+    };
+    encoder.encode(new StreamingRepresentation(links), out);
+    Assert.assertTrue(out.size() > 100000 * 30);
+  }
+
+  private String text(final Object value) {
+    return new String(encoder.encode(value), Charsets.UTF_8);
+  }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.LinkList;
+
+public class JsonParserTest {
+
+  private static final String DOCUMENT = "{\"name\":\"caf\u00e9 \ud83d\ude00\",\"count\":42,\"ratio\":-1.5e2,\"ok\":true,\"gone\":null,"
+      + "\"tags\":[\"a\",null,false],\"nested\":{\"x\":\"\\u00e9\\n\"},"
+      + "\"links\":[{\"href\":\"/1\",\"rel\":\"item\",\"length\":\"10\"},{\"rel\":\"next\",\"profile\":\"urn:x\"}]}";
+
+  @Test
+  public void testParsesIntoEntity() throws IOException {
+    final BasicRepresentation rep = JsonParser.parse(bytes(DOCUMENT), new BasicRepresentation());
+    assertDocument(rep);
+  }
+
+  @Test
+  public void testParsesByteByByte() throws IOException {
+    final byte[] bytes = bytes(DOCUMENT);
+    final JsonParser<BasicRepresentation> parser = new JsonParser<BasicRepresentation>(new BasicRepresentation());
+    for( final byte b : bytes ) {
+      parser.feed(ByteBuffer.wrap(new byte[] { b }));
+    }
+    assertDocument(parser.finish());
+  }
+
+  @Test
+  public void testParsesStream() throws IOException {
+    assertDocument(JsonParser.parse(new ByteArrayInputStream(bytes(DOCUMENT)), new BasicRepresentation()));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    final BasicRepresentation rep = new BasicRepresentation();
+    rep.put("title", "\"quoted\" \u2603");
+    rep.getLinks().add(new Link.Builder(ImmutableMap.of("profile", "urn:x")).href(URI.create("/a")).rel("self").build());
+    final BasicRepresentation parsed = JsonParser.parse(new JsonEncoder().encode(rep), new BasicRepresentation());
+    Assert.assertEquals(rep, parsed);
+    Assert.assertTrue(parsed.getLinks() instanceof LinkList);
+    Assert.assertEquals("/a", parsed.getLink("self").getRawHref());
+  }
+
+  @Test
+  public void testNumbers() throws IOException {
+    final Map<String, Object> map = JsonParser.parse(bytes("{\"a\":0,\"b\":-9223372036854775808,\"c\":9223372036854775808,\"d\":1e3,\"e\":7}"),
+        Maps.<String, Object> newHashMap());
+    Assert.assertEquals(Long.valueOf(0), map.get("a"));
+    Assert.assertEquals(Long.valueOf(Long.MIN_VALUE), map.get("b"));
+    Assert.assertEquals(new BigInteger("9223372036854775808"), map.get("c"));
+    Assert.assertEquals(Double.valueOf(1000), map.get("d"));
+    Assert.assertEquals(Long.valueOf(7), map.get("e"));
+  }
+
+  @Test
+  public void testReuse() throws IOException {
+    final JsonParser<Map<String, Object>> parser = new JsonParser<Map<String, Object>>(Maps.<String, Object> newHashMap());
+    parser.feed(ByteBuffer.wrap(bytes("{\"a\":1}")));
+    parser.finish();
+    final Map<String, Object> second = Maps.newHashMap();
+    parser.reset(second).feed(ByteBuffer.wrap(bytes("{\"b\":2}")));
+    Assert.assertEquals(ImmutableMap.of("b", Long.valueOf(2)), parser.finish());
+  }
+
+  @Test
+  public void testMalformed() {
+    for( final String document : new String[] { "", "[]", "{", "{\"a\"}", "{\"a\":}", "{\"a\":1,}", "{\"a\":01}", "{\"a\":1.}", "{\"a\":tru}", "{\"a\":\"\\x\"}",
+        "{} {}", "{\"links\":[1]}", "{\"a\":1]" } ) {
+      try {
+        JsonParser.parse(bytes(document), Maps.<String, Object> newHashMap());
+        Assert.fail(document);
+      } catch( final JsonParseException e ) {
+        // pass
+      }
+    }
+  }
+
+  @Test
+  public void testMalformedUtf8() {
+    try {
+      JsonParser.parse(new byte[] { '{', '"', (byte) 0xc0, (byte) 0x80, '"', ':', '1', '}' }, Maps.<String, Object> newHashMap());
+      Assert.fail();
+    } catch( final JsonParseException e ) {
+      Assert.assertEquals(3, e.getOffset());
+    }
+  }
+
+  private void assertDocument(final BasicRepresentation rep) {
+    Assert.assertEquals("caf\u00e9 \ud83d\ude00", rep.get("name"));
+    Assert.assertEquals(Long.valueOf(42), rep.get("count"));
+    Assert.assertEquals(Double.valueOf(-150), rep.get("ratio"));
+    Assert.assertEquals(Boolean.TRUE, rep.get("ok"));
+    Assert.assertFalse(rep.containsKey("gone"));
+    Assert.assertEquals(Lists.newArrayList("a", null, Boolean.FALSE), rep.get("tags"));
+    Assert.assertEquals(ImmutableMap.of("x", "\u00e9\n"), rep.get("nested"));
+    final List<Link> links = rep.getLinks();
+    Assert.assertEquals(2, links.size());
+    Assert.assertEquals(URI.create("/1"), links.get(0).getHref());
+    Assert.assertEquals("item", links.get(0).getRel());
+    Assert.assertEquals("10", links.get(0).getLength());
+    Assert.assertEquals("next", links.get(1).getRel());
+    Assert.assertEquals("urn:x", links.get(1).get("profile"));
+  }
+
+  private static byte[] bytes(final String text) {
+    return text.getBytes(Charsets.UTF_8);
+  }
+}
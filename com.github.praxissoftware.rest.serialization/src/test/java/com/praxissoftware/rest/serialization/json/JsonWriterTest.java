@@ -0,0 +1,108 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+
+public class JsonWriterTest {
+
+  @Test
+  public void testNesting() throws IOException {
+    final JsonWriter writer = new JsonWriter();
+    writer.beginObject().name("a").beginArray().value(1).value(true).nullValue().beginObject().endObject().endArray().name(JsonName.of("b")).value("c").endObject();
+    Assert.assertEquals("{\"a\":[1,true,null,{}],\"b\":\"c\"}", text(writer));
+  }
+
+  @Test
+  public void testEscaping() throws IOException {
+    final JsonWriter writer = new JsonWriter();
+    writer.value("\"\\\n\r\t\b\f\u0001/");
+    Assert.assertEquals("\"\\\"\\\\\\n\\r\\t\\b\\f\\u0001/\"", text(writer));
+  }
+
+  @Test
+  public void testUtf8() throws IOException {
+    final String value = "caf\u00e9 \u20ac \ud83d\ude00";
+    final JsonWriter writer = new JsonWriter();
+    writer.value(value);
+    Assert.assertArrayEquals(("\"" + value + "\"").getBytes(Charsets.UTF_8), writer.toByteArray());
+  }
+
+  @Test
+  public void testUnpairedSurrogateIsEscaped() throws IOException {
+    final JsonWriter writer = new JsonWriter();
+    writer.value("\ud83d");
+    Assert.assertEquals("\"\\ud83d\"", text(writer));
+  }
+
+  @Test
+  public void testNumbers() throws IOException {
+    final JsonWriter writer = new JsonWriter();
+    writer.beginArray().value(0).value(-7).value(Long.MAX_VALUE).value(Long.MIN_VALUE).value(1.5).numberValue("1E+3").endArray();
+    Assert.assertEquals("[0,-7,9223372036854775807,-9223372036854775808,1.5,1E+3]", text(writer));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNaNIsRejected() throws IOException {
+    new JsonWriter().value(Double.NaN);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNameOutsideObjectIsRejected() throws IOException {
+    new JsonWriter().beginArray().name("a");
+  }
+
+  @Test
+  public void testDrainsToStream() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final JsonWriter writer = new JsonWriter(out);
+    writer.beginArray();
+    final StringBuilder expected = new StringBuilder("[");
+    for( int i = 0; i < 5000; i++ ) {
+      writer.value("value" + i);
+      expected.append(i == 0 ? "" : ",").append("\"value").append(i).append('"');
+    }
+    writer.endArray().flush();
+    Assert.assertEquals(expected.append(']').toString(), new String(out.toByteArray(), Charsets.UTF_8));
+  }
+
+  @Test
+  public void testDrainsToChannel() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final JsonWriter writer = new JsonWriter(Channels.newChannel(out));
+    writer.beginObject().name("a").value("b").endObject().flush();
+    Assert.assertEquals("{\"a\":\"b\"}", new String(out.toByteArray(), Charsets.UTF_8));
+  }
+
+  @Test
+  public void testReset() throws IOException {
+    final JsonWriter writer = new JsonWriter();
+    writer.beginObject().name("a");
+    writer.reset().value("b");
+    Assert.assertEquals("\"b\"", text(writer));
+  }
+
+  private String text(final JsonWriter writer) {
+    return new String(writer.toByteArray(), Charsets.UTF_8);
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2012 Jason Rose <jasoncrose@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.praxissoftware.rest.serialization.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.praxissoftware.rest.core.BasicRepresentation;
+import com.praxissoftware.rest.core.Link;
+import com.praxissoftware.rest.core.Streamed;
+
+public class ParallelJsonEncoderTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(3);
+  private final ParallelJsonEncoder encoder = new ParallelJsonEncoder(executor, 10);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testMatchesSequentialOutput() throws IOException {
+    final BasicRepresentation rep = representation(95);
+    final byte[] expected = new JsonEncoder().encode(rep);
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    encoder.encode(rep, stream);
+    Assert.assertArrayEquals(expected, stream.toByteArray());
+    final ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+    encoder.encode(rep, Channels.newChannel(channelStream));
+    Assert.assertArrayEquals(expected, channelStream.toByteArray());
+  }
+
+  @Test
+  public void testGatheringWrite() throws IOException {
+    final BasicRepresentation rep = representation(1000);
+    final File file = File.createTempFile("parallel", ".json");
+    try {
+      final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        final FileChannel channel = raf.getChannel();
+        encoder.encode(rep, channel);
+      } finally {
+        raf.close();
+      }
+      Assert.assertArrayEquals(new JsonEncoder().encode(rep), Files.toByteArray(file));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testSmallAndEmptyLists() throws IOException {
+    for( final int size : new int[] { 0, 1, 10, 11, 20 } ) {
+      final BasicRepresentation rep = representation(size);
+      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      encoder.encode(rep, stream);
+      Assert.assertArrayEquals(new JsonEncoder().encode(rep), stream.toByteArray());
+    }
+  }
+
+  @Test
+  public void testStreamedValuesAreWrittenAsTheyArePulled() throws IOException {
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    final Iterator<String> source = new AbstractIterator<String>() {
+      private int count;
+
+      @Override
+      protected String computeNext() {
+        if( count == 5000 ) {
+          // by now the earlier elements have filled the writer's buffer more than once
+          Assert.assertTrue(stream.size() > 8192);
+          return endOfData();
+        }
+        return "element " + count++;
+      }
+    };
+    final Map<String, Object> map = ImmutableMap.<String, Object> of("items", Streamed.of(source));
+    encoder.encode(map, stream);
+    Assert.assertArrayEquals(new JsonEncoder().encode(ImmutableMap.of("items", elements())), stream.toByteArray());
+  }
+
+  @Test
+  public void testChunkFailureIsReported() throws IOException {
+    final List<Object> items = Lists.newArrayList();
+    for( int i = 0; i < 30; i++ ) {
+      items.add(i == 25 ? Double.valueOf(Double.NaN) : Integer.valueOf(i));
+    }
+    final Map<String, Object> map = ImmutableMap.<String, Object> of("items", items);
+    try {
+      encoder.encode(map, new ByteArrayOutputStream());
+      Assert.fail();
+    } catch( final IllegalArgumentException e ) {
+      // pass
+    }
+  }
+
+  private static List<String> elements() {
+    final List<String> elements = Lists.newArrayList();
+    for( int i = 0; i < 5000; i++ ) {
+      elements.add("element " + i);
+    }
+    return elements;
+  }
+
+  private static BasicRepresentation representation(final int links) {
+    final BasicRepresentation rep = new BasicRepresentation();
+    final List<Object> items = Lists.newArrayList();
+    for( int i = 0; i < links; i++ ) {
+      rep.getLinks().add(new Link.Builder().href("/widgets/" + i).rel("item").build());
+      items.add(ImmutableMap.of("id", i, "tags", Lists.newArrayList("a", "b")));
+    }
+    rep.put("items", items);
+    rep.put("count", links);
+    return rep;
+  }
+}